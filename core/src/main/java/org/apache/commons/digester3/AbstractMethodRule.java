@@ -20,8 +20,6 @@ package org.apache.commons.digester3;
  */
 
 import static java.lang.String.format;
-import static org.apache.commons.beanutils.MethodUtils.invokeExactMethod;
-import static org.apache.commons.beanutils.MethodUtils.invokeMethod;
 
 import org.xml.sax.Attributes;
 
@@ -55,6 +53,11 @@ public abstract class AbstractMethodRule
      */
     protected boolean useExactMatch = false;
 
+    /**
+     * The method resolved by the last invocation.
+     */
+    private ResolvedMethod resolvedMethod;
+
     /**
      * Should this rule be invoked when {@link #begin(String, String, Attributes)} (true)
      * or {@link #end(String, String)} (false) methods are invoked, false by default.
@@ -236,14 +239,11 @@ public abstract class AbstractMethodRule
             paramTypes[0] = child.getClass();
         }
 
-        if ( useExactMatch )
-        {
-            invokeExactMethod( parent, methodName, new Object[] { child }, paramTypes );
-        }
-        else
-        {
-            invokeMethod( parent, methodName, new Object[] { child }, paramTypes );
-        }
+        // resolve the method again only if the parent or child class changed
+        final ResolvedMethod method =
+            ResolvedMethod.resolve( resolvedMethod, parent.getClass(), methodName, paramTypes, useExactMatch );
+        resolvedMethod = method;
+        method.invoke( parent, new Object[] { child } );
     }
 
     /**
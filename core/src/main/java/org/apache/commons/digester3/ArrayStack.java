@@ -0,0 +1,130 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.EmptyStackException;
+
+/**
+ * An unsynchronized, {@code ArrayList} based implementation of a stack.
+ * <p>
+ * It offers the same stack operations than {@link java.util.Stack}, which {@code Digester} used to rely on, without
+ * the cost of the synchronization every {@code Vector} method pays for: a {@code Digester} is only ever used by one
+ * thread at a time. Elements are indexed from the bottom of the stack, so that {@code get(size() - 1)} is the top.
+ *
+ * @param <E> the type of elements in this stack
+ * @since 3.3
+ */
+public class ArrayStack<E>
+    extends ArrayList<E>
+{
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Construct a new empty stack.
+     */
+    public ArrayStack()
+    {
+        super();
+    }
+
+    /**
+     * Construct a new empty stack with the given initial capacity.
+     *
+     * @param initialCapacity the initial capacity of the stack
+     */
+    public ArrayStack( final int initialCapacity )
+    {
+        super( initialCapacity );
+    }
+
+    /**
+     * Return true if this stack is currently empty.
+     *
+     * @return true if this stack is currently empty
+     */
+    public boolean empty()
+    {
+        return isEmpty();
+    }
+
+    /**
+     * Return the top item off of this stack without removing it.
+     *
+     * @return the top item on the stack
+     * @throws EmptyStackException if the stack is empty
+     */
+    public E peek()
+    {
+        final int size = size();
+        if ( size == 0 )
+        {
+            throw new EmptyStackException();
+        }
+        return get( size - 1 );
+    }
+
+    /**
+     * Return the n'th item down (zero-relative) from the top of this stack without removing it.
+     *
+     * @param n the number of items down to go
+     * @return the n'th item on the stack, zero relative
+     * @throws EmptyStackException if there are not enough items on the stack to satisfy this request
+     */
+    public E peek( final int n )
+    {
+        final int index = ( size() - 1 ) - n;
+        if ( n < 0 || index < 0 )
+        {
+            throw new EmptyStackException();
+        }
+        return get( index );
+    }
+
+    /**
+     * Pop the top item off of this stack and return it.
+     *
+     * @return the top item on the stack
+     * @throws EmptyStackException if the stack is empty
+     */
+    public E pop()
+    {
+        final int size = size();
+        if ( size == 0 )
+        {
+            throw new EmptyStackException();
+        }
+        return remove( size - 1 );
+    }
+
+    /**
+     * Push a new item onto the top of this stack. The pushed item is also returned.
+     *
+     * @param item the item to be added
+     * @return the item just pushed
+     */
+    public E push( final E item )
+    {
+        add( item );
+        return item;
+    }
+
+}
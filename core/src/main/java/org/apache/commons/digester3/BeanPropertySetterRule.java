@@ -20,7 +20,6 @@ package org.apache.commons.digester3;
  */
 
 import static java.lang.String.format;
-import static org.apache.commons.beanutils.BeanUtils.setProperty;
 import static org.apache.commons.beanutils.PropertyUtils.getPropertyDescriptor;
 
 import java.beans.PropertyDescriptor;
@@ -91,6 +90,11 @@ public class BeanPropertySetterRule
      */
     private String bodyText = null;
 
+    /**
+     * The resolved writers of the properties set by this rule.
+     */
+    private final PropertyWriter.Cache writers = new PropertyWriter.Cache();
+
     // --------------------------------------------------------- Public Methods
 
     /**
@@ -114,6 +118,24 @@ public class BeanPropertySetterRule
         this.propertyNameFromAttribute = propertyNameFromAttribute;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * This rule can be copied, unless it is subclassed.
+     */
+    @Override
+    public BeanPropertySetterRule copy()
+    {
+        if ( getClass() != BeanPropertySetterRule.class )
+        {
+            return null;
+        }
+        final BeanPropertySetterRule copy = new BeanPropertySetterRule( propertyName );
+        copy.setPropertyNameFromAttribute( propertyNameFromAttribute );
+        copy.setNamespaceURI( getNamespaceURI() );
+        return copy;
+    }
+
     /**
      * Returns the body text used to set the property.
      *
@@ -175,7 +197,7 @@ public class BeanPropertySetterRule
         }
 
         // Get a reference to the top object
-        final Object top = getDigester().peek();
+        final Object top = getDigester().peekPending();
 
         // log some debugging information
         if ( getDigester().getLogger().isDebugEnabled() )
@@ -187,28 +209,34 @@ public class BeanPropertySetterRule
                                                      bodyText ) );
         }
 
+        final PropertyWriter writer =
+            top == null ? null : writers.get( getDigester().getIntrospectionCache(), top.getClass(), property );
+
         // Force an exception if the property does not exist
         // (BeanUtils.setProperty() silently returns in this case)
-        if ( top instanceof DynaBean )
+        if ( writer == null || !writer.isDescribed() )
         {
-            final DynaProperty desc = ( (DynaBean) top ).getDynaClass().getDynaProperty( property );
-            if ( desc == null )
+            if ( top instanceof DynaBean )
             {
-                throw new NoSuchMethodException( "Bean has no property named " + property );
+                final DynaProperty desc = ( (DynaBean) top ).getDynaClass().getDynaProperty( property );
+                if ( desc == null )
+                {
+                    throw new NoSuchMethodException( "Bean has no property named " + property );
+                }
             }
-        }
-        else
-        /* this is a standard JavaBean */
-        {
-            final PropertyDescriptor desc = getPropertyDescriptor( top, property );
-            if ( desc == null )
+            else
+            /* this is a standard JavaBean */
             {
-                throw new NoSuchMethodException( "Bean has no property named " + property );
+                final PropertyDescriptor desc = getPropertyDescriptor( top, property );
+                if ( desc == null )
+                {
+                    throw new NoSuchMethodException( "Bean has no property named " + property );
+                }
             }
         }
 
         // Set the property (with conversion as necessary)
-        setProperty( top, property, bodyText );
+        writer.write( getDigester().getBeanUtils(), top, property, bodyText );
     }
 
     /**
@@ -21,12 +21,10 @@ package org.apache.commons.digester3;
 
 import static java.lang.String.format;
 import static java.util.Arrays.fill;
-import static org.apache.commons.beanutils.ConvertUtils.convert;
-import static org.apache.commons.beanutils.MethodUtils.invokeExactMethod;
-import static org.apache.commons.beanutils.MethodUtils.invokeMethod;
 
 import java.util.Formatter;
 
+import org.apache.commons.beanutils.ConvertUtilsBean;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 
@@ -39,7 +37,8 @@ import org.xml.sax.SAXException;
  * By using {@link #CallMethodRule(String methodName)} a method call can be made to a method which accepts no arguments.
  * </p>
  * <p>
- * Incompatible method parameter types are converted using {@code org.apache.commons.beanutils.ConvertUtils}.
+ * Incompatible method parameter types are converted using the registry returned by
+ * {@link Digester#getConvertUtils()}, by default the one of {@code org.apache.commons.beanutils.ConvertUtils}.
  * </p>
  * <p>
  * This rule now uses {@link org.apache.commons.beanutils.MethodUtils#invokeMethod} by default.
@@ -285,6 +284,11 @@ public class CallMethodRule
      */
     private boolean useExactMatch = false;
 
+    /**
+     * The method resolved by the last invocation.
+     */
+    private ResolvedMethod resolvedMethod;
+
     // --------------------------------------------------------- Public Methods
 
     /**
@@ -308,6 +312,33 @@ public class CallMethodRule
         this.useExactMatch = useExactMatch;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * The copy reuses the parameter types and the target method resolved by this rule, unless it is subclassed.
+     */
+    @Override
+    public CallMethodRule copy()
+    {
+        if ( getClass() != CallMethodRule.class )
+        {
+            return null;
+        }
+        final CallMethodRule copy;
+        if ( paramClassNames != null )
+        {
+            copy = new CallMethodRule( targetOffset, methodName, paramCount, paramClassNames );
+        }
+        else
+        {
+            copy = new CallMethodRule( targetOffset, methodName, paramCount, paramTypes );
+        }
+        copy.setUseExactMatch( useExactMatch );
+        copy.setNamespaceURI( getNamespaceURI() );
+        copy.resolvedMethod = resolvedMethod;
+        return copy;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -364,6 +395,21 @@ public class CallMethodRule
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * The body text is only used when the method has no parameters.
+     */
+    @Override
+    public boolean requires( final RuleCallback callback )
+    {
+        if ( callback == RuleCallback.BODY && getCallbackDeclaringClass( callback ) == CallMethodRule.class )
+        {
+            return paramCount == 0;
+        }
+        return super.requires( callback );
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -436,6 +482,7 @@ public class CallMethodRule
         // We only do the conversion if the param value is a String and
         // the specified paramType is not String.
         final Object[] paramValues = new Object[paramTypes.length];
+        final ConvertUtilsBean convertUtils = getDigester().getConvertUtils();
         for ( int i = 0; i < paramTypes.length; i++ )
         {
             // convert nulls and convert stringy parameters
@@ -443,7 +490,7 @@ public class CallMethodRule
             if ( parameters[i] == null
                 || ( parameters[i] instanceof String && !String.class.isAssignableFrom( paramTypes[i] ) ) )
             {
-                paramValues[i] = convert( (String) parameters[i], paramTypes[i] );
+                paramValues[i] = convertUtils.convert( (String) parameters[i], paramTypes[i] );
             }
             else
             {
@@ -484,18 +531,11 @@ public class CallMethodRule
             getDigester().getLogger().debug( formatter.toString() );
         }
 
-        Object result = null;
-        if ( useExactMatch )
-        {
-            // invoke using exact match
-            result = invokeExactMethod( target, methodName, paramValues, paramTypes );
-
-        }
-        else
-        {
-            // invoke using fuzzier match
-            result = invokeMethod( target, methodName, paramValues, paramTypes );
-        }
+        // resolve the method again only if the target class changed
+        final ResolvedMethod method =
+            ResolvedMethod.resolve( resolvedMethod, target.getClass(), methodName, paramTypes, useExactMatch );
+        resolvedMethod = method;
+        final Object result = method.invoke( target, paramValues );
 
         processMethodCallResult( result );
     }
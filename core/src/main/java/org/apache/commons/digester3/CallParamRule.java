@@ -188,6 +188,15 @@ public class CallParamRule
     {
         if ( attributeName == null && !fromStack )
         {
+            // The constructor arguments of an object created without proxy
+            // are needed before the end of the rules ending before this one
+            final Object parameters[] = getDigester().peekPendingArguments();
+            if ( parameters != null )
+            {
+                parameters[paramIndex] = text.trim();
+                return;
+            }
+
             // We must wait to set the parameter until end
             // so that we can make sure that the right set of parameters
             // is at the top of the stack
@@ -199,6 +208,21 @@ public class CallParamRule
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * The body text is only used when the parameter is not taken from an attribute or from the stack.
+     */
+    @Override
+    public boolean requires( final RuleCallback callback )
+    {
+        if ( callback == RuleCallback.BODY && getCallbackDeclaringClass( callback ) == CallParamRule.class )
+        {
+            return attributeName == null && !fromStack;
+        }
+        return super.requires( callback );
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -213,6 +237,16 @@ public class CallParamRule
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void finish()
+    {
+        // left over if the document did not end normally
+        bodyTextStack = null;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,220 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the bytes of a channel for the XML reader, without copying them through intermediate heap buffers.
+ * <p>
+ * File channels are mapped in memory, one large window at a time, so that the XML reader copies the bytes straight
+ * from the page cache into its own buffer, whatever the size of the file. Other channels are read through a large
+ * direct buffer. The encoding of the document is still detected and decoded by the XML reader.
+ *
+ * @since 3.3
+ */
+final class ChannelInputStream
+    extends InputStream
+{
+
+    /**
+     * The maximum number of bytes of a file mapped at once.
+     */
+    static final int MAPPED_WINDOW_SIZE = 1 << 28;
+
+    /**
+     * The size of the direct buffer other channels are read through.
+     */
+    static final int BUFFER_SIZE = 1 << 18;
+
+    private final ReadableByteChannel channel;
+
+    /**
+     * The channel, if it is a file channel read through mapped windows.
+     */
+    private final FileChannel file;
+
+    /**
+     * Whether the channel is closed with this stream, that is whether it has been opened by this stream.
+     */
+    private final boolean ownsChannel;
+
+    /**
+     * The size of the file, when the stream has been created.
+     */
+    private final long size;
+
+    /**
+     * The position of the next window of the file.
+     */
+    private long position;
+
+    /**
+     * The window of the file, or the buffer of the channel, being read.
+     */
+    private ByteBuffer buffer;
+
+    private boolean closed;
+
+    private ChannelInputStream( final ReadableByteChannel channel, final boolean ownsChannel )
+        throws IOException
+    {
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+        if ( channel instanceof FileChannel )
+        {
+            this.file = (FileChannel) channel;
+            this.position = file.position();
+            this.size = file.size();
+            this.buffer = ByteBuffer.allocate( 0 );
+        }
+        else
+        {
+            this.file = null;
+            this.size = -1;
+            this.buffer = ByteBuffer.allocateDirect( BUFFER_SIZE );
+            this.buffer.flip();
+        }
+    }
+
+    /**
+     * Opens a stream reading the given file through mapped windows, that closes the file once closed.
+     *
+     * @param path the file to read
+     * @return a stream reading the given file
+     * @throws IOException if the file cannot be opened
+     */
+    static ChannelInputStream open( final Path path )
+        throws IOException
+    {
+        return new ChannelInputStream( FileChannel.open( path, StandardOpenOption.READ ), true );
+    }
+
+    /**
+     * Creates a stream reading the given channel from its current position, that leaves the channel open once closed.
+     * A file channel is positioned after the bytes read when the stream is closed.
+     *
+     * @param channel the channel to read, in blocking mode
+     * @return a stream reading the given channel
+     * @throws IOException if the position of a file channel cannot be read
+     */
+    static ChannelInputStream wrap( final ReadableByteChannel channel )
+        throws IOException
+    {
+        return new ChannelInputStream( channel, false );
+    }
+
+    @Override
+    public int read()
+        throws IOException
+    {
+        if ( !buffer.hasRemaining() && !fill() )
+        {
+            return -1;
+        }
+        return buffer.get() & 0xFF;
+    }
+
+    @Override
+    public int read( final byte[] b, final int off, final int len )
+        throws IOException
+    {
+        if ( off < 0 || len < 0 || len > b.length - off )
+        {
+            throw new IndexOutOfBoundsException();
+        }
+        if ( len == 0 )
+        {
+            return 0;
+        }
+        if ( !buffer.hasRemaining() && !fill() )
+        {
+            return -1;
+        }
+        final int n = Math.min( len, buffer.remaining() );
+        buffer.get( b, off, n );
+        return n;
+    }
+
+    @Override
+    public int available()
+    {
+        return buffer.remaining();
+    }
+
+    /**
+     * Maps the next window of the file, or reads the next bytes of the channel.
+     *
+     * @return false, if the end of the file or of the channel has been reached
+     */
+    private boolean fill()
+        throws IOException
+    {
+        if ( file != null )
+        {
+            if ( position >= size )
+            {
+                return false;
+            }
+            final long length = Math.min( MAPPED_WINDOW_SIZE, size - position );
+            buffer = file.map( FileChannel.MapMode.READ_ONLY, position, length );
+            position += length;
+            return true;
+        }
+
+        buffer.clear();
+        int n;
+        do
+        {
+            n = channel.read( buffer );
+        }
+        while ( n == 0 );
+        buffer.flip();
+        return n > 0;
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        if ( closed )
+        {
+            return;
+        }
+        closed = true;
+        if ( ownsChannel )
+        {
+            channel.close();
+        }
+        else if ( file != null && file.isOpen() )
+        {
+            file.position( position - buffer.remaining() );
+        }
+        // the mapped windows are released once garbage collected
+        buffer = ByteBuffer.allocate( 0 );
+    }
+
+}
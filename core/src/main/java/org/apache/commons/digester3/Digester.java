@@ -30,13 +30,15 @@ import java.lang.reflect.InvocationTargetException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EmptyStackException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -44,8 +46,12 @@ import java.util.concurrent.Future;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.validation.Schema;
 
+import org.apache.commons.beanutils.BeanUtilsBean;
+import org.apache.commons.beanutils.ConvertUtilsBean;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.xml.sax.Attributes;
@@ -132,14 +138,15 @@ public class Digester
     // --------------------------------------------------- Instance Variables
 
     /**
-     * The body text of the current element.
+     * The body text of the current element, {@code null} if none of the rules matching the current element requires
+     * {@link RuleCallback#BODY}.
      */
     private StringBuilder bodyText = new StringBuilder();
 
     /**
      * The stack of body text string buffers for surrounding elements.
      */
-    private final Stack<StringBuilder> bodyTexts = new Stack<StringBuilder>();
+    private final ArrayStack<StringBuilder> bodyTexts = new ArrayStack<StringBuilder>();
 
     /**
      * Stack whose elements are List objects, each containing a list of Rule objects as returned from Rules.getMatch().
@@ -149,7 +156,80 @@ public class Digester
      *
      * @since 1.6
      */
-    private final Stack<List<Rule>> matches = new Stack<List<Rule>>();
+    private final ArrayStack<List<Rule>> matches = new ArrayStack<List<Rule>>();
+
+    /**
+     * The states of the currently open elements, indexed by nesting level, when the current {@code Rules} are
+     * {@link IncrementalRules}. The state of an element is obtained from the state of its parent with a single
+     * transition, instead of matching the whole path again.
+     *
+     * @since 3.3
+     */
+    private int[] matchStates = new int[16];
+
+    /**
+     * The {@link IncrementalRules} the {@code matchStates} were obtained from.
+     *
+     * @since 3.3
+     */
+    private IncrementalRules matchStatesRules = null;
+
+    /**
+     * The nesting level of the current element within the subtree being skipped, or {@code -1} when not skipping. A
+     * subtree is skipped when the {@link SkippableRules} tell that only wildcard patterns starting below its root
+     * element can match in it: the names of its open descendants are then only recorded in the {@code path}, after the
+     * current {@code depth}, until one of them starts such a wildcard pattern. The text directly contained in its root
+     * element is still accumulated.
+     *
+     * @since 3.3
+     */
+    private int skipLevel = -1;
+
+    /**
+     * The {@link SkippableRules} the subtree being skipped was skipped for.
+     *
+     * @since 3.3
+     */
+    private SkippableRules skippingRules;
+
+    /**
+     * Whether {@link #stop()} has been called since the current parse started, or since the Digester has been prepared
+     * for a parse started by another thread.
+     *
+     * @since 3.3
+     */
+    private volatile boolean stopped;
+
+    /**
+     * Whether the XML reader runs on its own thread, handing the SAX events over to the thread firing the rules.
+     *
+     * @since 3.3
+     */
+    private boolean pipelined;
+
+    /**
+     * The number of outermost elements whose rules are not fired, because they are only replayed to restore the
+     * context of a record digested apart from its document.
+     *
+     * @since 3.3
+     */
+    private int contextDepth;
+
+    /**
+     * The rules installed when the current document started, restored if a rule that temporarily replaced them did
+     * not get the chance to put them back.
+     *
+     * @since 3.3
+     */
+    private Rules documentRules;
+
+    /**
+     * The actions to run if the current document does not end normally, because the parse failed or another document
+     * started before it ended.
+     *
+     * @since 3.3
+     */
+    private final List<Runnable> abortActions = new ArrayList<Runnable>();
 
     /**
      * The class loader to use for instantiating application objects. If not specified, the context class loader, or the
@@ -189,9 +269,34 @@ public class Digester
     private Locator locator = null;
 
     /**
-     * The current match pattern for nested element processing.
+     * The names of the currently open elements, indexed by nesting level. They make up the current match pattern for
+     * nested element processing, whose string form is only built when requested through {@link #getMatch()}.
+     *
+     * @since 3.3
+     */
+    private String[] path = new String[16];
+
+    /**
+     * The number of currently open elements.
+     *
+     * @since 3.3
+     */
+    private int depth = 0;
+
+    /**
+     * The string form of the match pattern of each open element, indexed by nesting level. Only the first
+     * {@code builtMatchPatterns} entries are up to date.
+     *
+     * @since 3.3
+     */
+    private String[] matchPatterns = new String[16];
+
+    /**
+     * The number of up to date entries in {@code matchPatterns}.
+     *
+     * @since 3.3
      */
-    private String match = "";
+    private int builtMatchPatterns = 0;
 
     /**
      * Do we want a "namespace aware" parser.
@@ -210,7 +315,7 @@ public class Digester
      * the most current one. (This architecture is required because documents can declare nested uses of the same prefix
      * for different Namespace URIs).
      */
-    private final HashMap<String, Stack<String>> namespaces = new HashMap<String, Stack<String>>();
+    private final HashMap<String, ArrayStack<String>> namespaces = new HashMap<String, ArrayStack<String>>();
 
     /**
      * Do we want a "XInclude aware" parser.
@@ -222,7 +327,7 @@ public class Digester
      *
      * @since 2.0
      */
-    private final Stack<Object[]> params = new Stack<Object[]>();
+    private final ArrayStack<Object[]> params = new ArrayStack<Object[]>();
 
     /**
      * The SAXParser we will use to parse the input stream.
@@ -260,7 +365,7 @@ public class Digester
     /**
      * The object stack being constructed.
      */
-    private final Stack<Object> stack = new Stack<Object>();
+    private final ArrayStack<Object> stack = new ArrayStack<Object>();
 
     /**
      * Do we want to use the Context ClassLoader when loading classes for instantiating new objects. Default is
@@ -295,7 +400,7 @@ public class Digester
     private Substitutor substitutor;
 
     /** Stacks used for interrule communication, indexed by name String */
-    private final HashMap<String, Stack<Object>> stacksByName = new HashMap<String, Stack<Object>>();
+    private final HashMap<String, ArrayStack<Object>> stacksByName = new HashMap<String, ArrayStack<Object>>();
 
     /**
      * If not null, then calls by the parser to this object's characters, startElement, endElement and
@@ -311,6 +416,21 @@ public class Digester
      */
     private StackAction stackAction = null;
 
+    /**
+     * The registry used by the rules to convert strings, null to use the one of BeanUtils.
+     */
+    private ConvertUtilsBean convertUtils = null;
+
+    /**
+     * The BeanUtils instance used by the rules to set properties, resolved once per parse.
+     */
+    private BeanUtilsBean beanUtils = null;
+
+    /**
+     * The properties of the bean classes the rules set values to.
+     */
+    private IntrospectionCache introspectionCache = IntrospectionCache.getDefault();
+
     // ------------------------------------------------------------- Properties
 
     /**
@@ -322,7 +442,7 @@ public class Digester
      */
     public String findNamespaceURI( final String prefix )
     {
-        final Stack<String> nsStack = namespaces.get( prefix );
+        final ArrayStack<String> nsStack = namespaces.get( prefix );
         if ( nsStack == null )
         {
             return null;
@@ -376,6 +496,84 @@ public class Digester
         this.classLoader = classLoader;
     }
 
+    /**
+     * Return the registry used by the rules to convert strings to the types of constructor arguments, method
+     * parameters and properties. This is the registry set by {@code setConvertUtils()} if any, the one of the
+     * {@code BeanUtils} instance of the thread context class loader otherwise.
+     *
+     * @return the registry used by the rules to convert strings
+     * @since 3.3
+     */
+    public ConvertUtilsBean getConvertUtils()
+    {
+        return getBeanUtils().getConvertUtils();
+    }
+
+    /**
+     * Set the registry used by the rules to convert strings. Converters registered in a dedicated registry only apply
+     * to the rules of this Digester, and conversions do not contend on the JVM-wide {@code ConvertUtils} singleton.
+     * Like any other configuration property, the registry must not be modified while a document is parsed.
+     *
+     * @param convertUtils The registry used by the rules to convert strings, or {@code null} to revert to the one of
+     *        {@code BeanUtils}
+     * @since 3.3
+     */
+    public void setConvertUtils( final ConvertUtilsBean convertUtils )
+    {
+        this.convertUtils = convertUtils;
+        this.beanUtils = null;
+    }
+
+    /**
+     * Return the cache of the bean properties the rules set values to.
+     *
+     * @return the cache of the bean properties the rules set values to
+     * @since 3.3
+     */
+    public IntrospectionCache getIntrospectionCache()
+    {
+        return introspectionCache;
+    }
+
+    /**
+     * Set the cache of the bean properties the rules set values to. By default, Digester instances share
+     * {@link IntrospectionCache#getDefault() the default cache}.
+     *
+     * @param introspectionCache The cache of the bean properties the rules set values to
+     * @since 3.3
+     */
+    public void setIntrospectionCache( final IntrospectionCache introspectionCache )
+    {
+        if ( introspectionCache == null )
+        {
+            throw new IllegalArgumentException( "Parameter 'introspectionCache' cannot be null" );
+        }
+        this.introspectionCache = introspectionCache;
+    }
+
+    /**
+     * Return the BeanUtils instance used by the rules to set properties, converting values with the registry returned
+     * by {@link #getConvertUtils()}.
+     *
+     * @return the BeanUtils instance used by the rules to set properties
+     */
+    BeanUtilsBean getBeanUtils()
+    {
+        if ( beanUtils == null )
+        {
+            final BeanUtilsBean shared = BeanUtilsBean.getInstance();
+            if ( convertUtils == null || convertUtils == shared.getConvertUtils() )
+            {
+                beanUtils = shared;
+            }
+            else
+            {
+                beanUtils = new BeanUtilsBean( convertUtils, shared.getPropertyUtils() );
+            }
+        }
+        return beanUtils;
+    }
+
     /**
      * Return the current depth of the element stack.
      *
@@ -393,13 +591,11 @@ public class Digester
      */
     public String getCurrentElementName()
     {
-        String elementName = match;
-        final int lastSlash = elementName.lastIndexOf( '/' );
-        if ( lastSlash >= 0 )
+        if ( depth == 0 )
         {
-            elementName = elementName.substring( lastSlash + 1 );
+            return "";
         }
-        return ( elementName );
+        return ( path[depth - 1] );
     }
 
     /**
@@ -526,7 +722,24 @@ public class Digester
      */
     public String getMatch()
     {
-        return match;
+        if ( depth == 0 )
+        {
+            return "";
+        }
+        // only the patterns of the elements opened since the last call need to be built
+        for ( ; builtMatchPatterns < depth; builtMatchPatterns++ )
+        {
+            if ( builtMatchPatterns == 0 )
+            {
+                matchPatterns[0] = path[0];
+            }
+            else
+            {
+                matchPatterns[builtMatchPatterns] =
+                    matchPatterns[builtMatchPatterns - 1] + '/' + path[builtMatchPatterns];
+            }
+        }
+        return matchPatterns[depth - 1];
     }
 
     /**
@@ -537,7 +750,7 @@ public class Digester
      *         Rule objects as returned from Rules.getMatch().
      * @since 3.0
      */
-    public Stack<List<Rule>> getMatches()
+    public ArrayStack<List<Rule>> getMatches()
     {
         return matches;
     }
@@ -936,7 +1149,7 @@ public class Digester
             log.warn( "Digester is not namespace aware" );
         }
         final Map<String, String> currentNamespaces = new HashMap<String, String>();
-        for ( final Map.Entry<String, Stack<String>> nsEntry : namespaces.entrySet() )
+        for ( final Map.Entry<String, ArrayStack<String>> nsEntry : namespaces.entrySet() )
         {
             try
             {
@@ -983,6 +1196,8 @@ public class Digester
     public void characters( final char buffer[], final int start, final int length )
         throws SAXException
     {
+        checkStopped();
+
         if ( customContentHandler != null )
         {
             // forward calls instead of handling them here
@@ -990,12 +1205,21 @@ public class Digester
             return;
         }
 
+        if ( skipLevel > 0 )
+        {
+            // text of an element in a skipped subtree
+            return;
+        }
+
         if ( saxLog.isDebugEnabled() )
         {
             saxLog.debug( "characters(" + new String( buffer, start, length ) + ")" );
         }
 
-        bodyText.append( buffer, start, length );
+        if ( bodyText != null )
+        {
+            bodyText.append( buffer, start, length );
+        }
     }
 
     /**
@@ -1017,9 +1241,15 @@ public class Digester
             }
         }
 
+        restoreDocumentRules();
+
         // Fire "finish" events for all defined rules
         for ( final Rule rule : getRules().rules() )
         {
+            if ( !rule.requires( RuleCallback.FINISH ) )
+            {
+                continue;
+            }
             try
             {
                 rule.finish();
@@ -1035,6 +1265,7 @@ public class Digester
                 throw e;
             }
         }
+        abortActions.clear();
 
         // Perform final cleanup
         clear();
@@ -1047,6 +1278,8 @@ public class Digester
     public void endElement( final String namespaceURI, final String localName, final String qName )
         throws SAXException
     {
+        checkStopped();
+
         if ( customContentHandler != null )
         {
             // forward calls instead of handling them here
@@ -1054,6 +1287,15 @@ public class Digester
             return;
         }
 
+        if ( skipLevel > 0 )
+        {
+            path[depth + --skipLevel] = null;
+            return;
+        }
+        // either not skipping, or leaving the root of the skipped subtree
+        skipLevel = -1;
+        skippingRules = null;
+
         final boolean debug = log.isDebugEnabled();
 
         if ( debug )
@@ -1062,7 +1304,7 @@ public class Digester
             {
                 saxLog.debug( "endElement(" + namespaceURI + "," + localName + "," + qName + ")" );
             }
-            log.debug( "  match='" + match + "'" );
+            log.debug( "  match='" + getMatch() + "'" );
             log.debug( "  bodyText='" + bodyText + "'" );
         }
 
@@ -1078,13 +1320,22 @@ public class Digester
         final List<Rule> rules = matches.pop();
         if ( ( rules != null ) && ( !rules.isEmpty() ) )
         {
-            String bodyText = this.bodyText.toString();
-            final Substitutor substitutor = getSubstitutor();
-            if ( substitutor != null )
-            {
-                bodyText = substitutor.substitute( bodyText );
-            }
+            // the body text is only materialized if a rule uses it
+            String bodyText = null;
             for (final Rule rule : rules) {
+                if ( !rule.requires( RuleCallback.BODY ) )
+                {
+                    continue;
+                }
+                if ( bodyText == null )
+                {
+                    bodyText = this.bodyText == null ? "" : this.bodyText.toString();
+                    final Substitutor substitutor = getSubstitutor();
+                    if ( substitutor != null )
+                    {
+                        bodyText = substitutor.substitute( bodyText );
+                    }
+                }
                 try
                 {
                     if ( debug )
@@ -1109,7 +1360,7 @@ public class Digester
         {
             if ( debug )
             {
-                log.debug( "  No rules found matching '" + match + "'." );
+                log.debug( "  No rules found matching '" + getMatch() + "'." );
             }
         }
 
@@ -1117,7 +1368,7 @@ public class Digester
         bodyText = bodyTexts.pop();
         if ( debug )
         {
-            log.debug( "  Popping body text '" + bodyText.toString() + "'" );
+            log.debug( "  Popping body text '" + bodyText + "'" );
         }
 
         // Fire "end" events for all relevant rules in reverse order
@@ -1149,14 +1400,10 @@ public class Digester
         }
 
         // Recover the previous match expression
-        final int slash = match.lastIndexOf( '/' );
-        if ( slash >= 0 )
-        {
-            match = match.substring( 0, slash );
-        }
-        else
+        path[--depth] = null;
+        if ( builtMatchPatterns > depth )
         {
-            match = "";
+            builtMatchPatterns = depth;
         }
     }
 
@@ -1173,7 +1420,7 @@ public class Digester
         }
 
         // Deregister this prefix mapping
-        final Stack<String> stack = namespaces.get( prefix );
+        final ArrayStack<String> stack = namespaces.get( prefix );
         if ( stack == null )
         {
             return;
@@ -1280,6 +1527,16 @@ public class Digester
             saxLog.debug( "startDocument()" );
         }
 
+        // the previous document did not end, e.g. when the Digester is the content handler of a reader that failed
+        abortDocument();
+        documentRules = rules;
+
+        // the BeanUtils instance of the context class loader may change between parses
+        if ( convertUtils == null )
+        {
+            beanUtils = null;
+        }
+
         // ensure that the digester is properly configured, as
         // the digester could be used as a SAX ContentHandler
         // rather than via the parse() methods.
@@ -1293,6 +1550,8 @@ public class Digester
     public void startElement( final String namespaceURI, final String localName, final String qName, Attributes list )
         throws SAXException
     {
+        checkStopped();
+
         final boolean debug = log.isDebugEnabled();
 
         if ( customContentHandler != null )
@@ -1302,6 +1561,25 @@ public class Digester
             return;
         }
 
+        // the actual element name is either in localName or qName, depending
+        // on whether the parser is namespace aware
+        String name = localName;
+        if ( ( name == null ) || ( name.length() < 1 ) )
+        {
+            name = qName;
+        }
+
+        if ( skipLevel >= 0 )
+        {
+            if ( !skippingRules.startsWildcardPattern( name ) )
+            {
+                ensurePathCapacity( depth + skipLevel + 1 );
+                path[depth + skipLevel++] = name;
+                return;
+            }
+            resumeSkippedElements();
+        }
+
         if ( saxLog.isDebugEnabled() )
         {
             saxLog.debug( "startElement(" + namespaceURI + "," + localName + "," + qName + ")" );
@@ -1311,34 +1589,38 @@ public class Digester
         bodyTexts.push( bodyText );
         if ( debug )
         {
-            log.debug( "  Pushing body text '" + bodyText.toString() + "'" );
-        }
-        bodyText = new StringBuilder();
-
-        // the actual element name is either in localName or qName, depending
-        // on whether the parser is namespace aware
-        String name = localName;
-        if ( ( name == null ) || ( name.length() < 1 ) )
-        {
-            name = qName;
+            log.debug( "  Pushing body text '" + bodyText + "'" );
         }
 
         // Compute the current matching rule
-        final StringBuilder sb = new StringBuilder( match );
-        if ( !match.isEmpty() )
-        {
-            sb.append( '/' );
-        }
-        sb.append( name );
-        match = sb.toString();
+        ensurePathCapacity( depth + 1 );
+        path[depth++] = name;
         if ( debug )
         {
-            log.debug( "  New match='" + match + "'" );
+            log.debug( "  New match='" + getMatch() + "'" );
         }
 
         // Fire "begin" events for all relevant rules
-        final List<Rule> rules = getRules().match( namespaceURI, match, localName, list );
+        List<Rule> rules = matchRules( namespaceURI, name, localName, list );
+        if ( depth <= contextDepth )
+        {
+            rules = Collections.emptyList();
+        }
         matches.push( rules );
+
+        // Accumulate the body text only if a rule is going to use it
+        bodyText = null;
+        if ( rules != null )
+        {
+            for ( final Rule rule : rules )
+            {
+                if ( rule.requires( RuleCallback.BODY ) )
+                {
+                    bodyText = new StringBuilder();
+                    break;
+                }
+            }
+        }
         if ( ( rules != null ) && ( !rules.isEmpty() ) )
         {
             final Substitutor substitutor = getSubstitutor();
@@ -1371,11 +1653,76 @@ public class Digester
         {
             if ( debug )
             {
-                log.debug( "  No rules found matching '" + match + "'." );
+                log.debug( "  No rules found matching '" + getMatch() + "'." );
+            }
+        }
+
+        // Skip the content of this element if nothing can match in it, unless a rule took control of the events
+        final Rules currentRules = getRules();
+        if ( customContentHandler == null && currentRules instanceof SkippableRules )
+        {
+            final SkippableRules skippableRules = (SkippableRules) currentRules;
+            final boolean matchesBelow;
+            if ( currentRules == matchStatesRules && matchStates[depth - 1] != IncrementalRules.UNKNOWN_STATE )
+            {
+                matchesBelow = matchStatesRules.hasMatchesBelow( matchStates[depth - 1] );
+            }
+            else
+            {
+                matchesBelow = skippableRules.hasMatchesBelow( getMatch() );
+            }
+            if ( !matchesBelow )
+            {
+                if ( debug )
+                {
+                    log.debug( "  No rules can match below '" + getMatch() + "', skipping its content." );
+                }
+                skippingRules = skippableRules;
+                skipLevel = 0;
             }
         }
     }
 
+    /**
+     * Grows the arrays indexed by nesting level, if needed, so that they can hold the given number of levels.
+     *
+     * @param levels the number of nesting levels to hold
+     */
+    private void ensurePathCapacity( final int levels )
+    {
+        if ( levels > path.length )
+        {
+            final int length = Math.max( levels, path.length * 2 );
+            path = Arrays.copyOf( path, length );
+            matchPatterns = Arrays.copyOf( matchPatterns, length );
+            matchStates = Arrays.copyOf( matchStates, length );
+        }
+    }
+
+    /**
+     * Stops skipping the current subtree because a nested element may start a wildcard pattern: the elements opened
+     * since the subtree started being skipped are entered as elements without matching rules.
+     */
+    private void resumeSkippedElements()
+    {
+        if ( log.isDebugEnabled() )
+        {
+            log.debug( "  A wildcard pattern may start at depth " + ( depth + skipLevel + 1 )
+                + ", no longer skipping." );
+        }
+        final int skipped = skipLevel;
+        skipLevel = -1;
+        skippingRules = null;
+        for ( int i = 0; i < skipped; i++ )
+        {
+            bodyTexts.push( bodyText );
+            bodyText = null;
+            // the states along the path are computed again when the next element is matched
+            matchStates[depth++] = IncrementalRules.UNKNOWN_STATE;
+            matches.push( Collections.<Rule>emptyList() );
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1389,15 +1736,64 @@ public class Digester
         }
 
         // Register this prefix mapping
-        Stack<String> stack = namespaces.get( prefix );
+        ArrayStack<String> stack = namespaces.get( prefix );
         if ( stack == null )
         {
-            stack = new Stack<String>();
+            stack = new ArrayStack<String>();
             namespaces.put( prefix, stack );
         }
         stack.push( namespaceURI );
     }
 
+    /**
+     * Return the rules matching the element that has just been entered, at the top of the current {@code path}.
+     *
+     * @param namespaceURI The Namespace URI of the element
+     * @param name the local name if the parser is namespace aware, or just the element name otherwise
+     * @param localName The local name of the element, as reported by the parser
+     * @param list The attribute list of the element
+     * @return the rules matching the element
+     */
+    private List<Rule> matchRules( final String namespaceURI, final String name, final String localName,
+                                   final Attributes list )
+    {
+        final Rules rules = getRules();
+        final int level = depth - 1;
+
+        if ( !( rules instanceof IncrementalRules ) )
+        {
+            matchStates[level] = IncrementalRules.UNKNOWN_STATE;
+            return rules.match( namespaceURI, getMatch(), localName, list );
+        }
+
+        final IncrementalRules incrementalRules = (IncrementalRules) rules;
+        int state = IncrementalRules.UNKNOWN_STATE;
+        if ( incrementalRules == matchStatesRules )
+        {
+            final int parentState = level == 0 ? incrementalRules.getInitialState() : matchStates[level - 1];
+            if ( parentState != IncrementalRules.UNKNOWN_STATE )
+            {
+                state = incrementalRules.nextState( parentState, name );
+            }
+        }
+
+        if ( state == IncrementalRules.UNKNOWN_STATE )
+        {
+            // the states of the surrounding elements are missing or stale, compute them again along the path
+            matchStatesRules = incrementalRules;
+            state = incrementalRules.getInitialState();
+            for ( int i = 0; i < level; i++ )
+            {
+                state = incrementalRules.nextState( state, path[i] );
+                matchStates[i] = state;
+            }
+            state = incrementalRules.nextState( state, name );
+        }
+
+        matchStates[level] = state;
+        return incrementalRules.match( namespaceURI, state );
+    }
+
     // ----------------------------------------------------- DTDHandler Methods
 
     /**
@@ -1581,6 +1977,191 @@ public class Digester
         return ( this.<T> parse( input ) );
     }
 
+    /**
+     * Parse the content of the specified file using this Digester. Returns the root element from the object stack (if
+     * any).
+     * <p>
+     * The file is mapped in memory, one large window at a time, rather than read through a stream: the XML reader
+     * copies the bytes of the document straight from the mapped windows, which saves copies on large local files.
+     *
+     * @param <T> the type used to auto-cast the returned object to the assigned variable type
+     * @param path File containing the XML data to be parsed
+     * @return the root element from the object stack (if any)
+     * @throws IOException if an input/output error occurs
+     * @throws SAXException if a parsing exception occurs
+     * @since 3.3
+     */
+    public <T> T parse( final Path path )
+        throws IOException, SAXException
+    {
+        if ( path == null )
+        {
+            throw new IllegalArgumentException( "Path to parse is null" );
+        }
+
+        final InputStream stream = ChannelInputStream.open( path );
+        try
+        {
+            final InputSource input = new InputSource( stream );
+            input.setSystemId( path.toUri().toString() );
+            return ( this.<T> parse( input ) );
+        }
+        finally
+        {
+            stream.close();
+        }
+    }
+
+    /**
+     * Creates a Callable instance that parse the content of the specified file using this Digester.
+     *
+     * @param <T> The result type returned by the returned Future's {@code get} method
+     * @param path File containing the XML data to be parsed
+     * @return a Future that can be used to track when the parse has been fully processed.
+     * @see Digester#parse(Path)
+     * @since 3.3
+     */
+    public <T> Future<T> asyncParse( final Path path )
+    {
+        return asyncParse( new Callable<T>()
+        {
+
+            @Override
+            public T call()
+                throws Exception
+            {
+                return Digester.this.<T> parse( path );
+            }
+
+        } );
+    }
+
+    /**
+     * Parse the content of the specified channel using this Digester. Returns the root element from the object stack
+     * (if any).
+     * <p>
+     * The channel is read from its current position, in blocking mode, and is left open. A file channel is mapped in
+     * memory, one large window at a time, and positioned after the bytes read by the XML reader; other channels are
+     * read through a large direct buffer.
+     *
+     * @param <T> the type used to auto-cast the returned object to the assigned variable type
+     * @param channel Channel containing the XML data to be parsed
+     * @return the root element from the object stack (if any)
+     * @throws IOException if an input/output error occurs
+     * @throws SAXException if a parsing exception occurs
+     * @since 3.3
+     */
+    public <T> T parse( final ReadableByteChannel channel )
+        throws IOException, SAXException
+    {
+        if ( channel == null )
+        {
+            throw new IllegalArgumentException( "ReadableByteChannel to parse is null" );
+        }
+
+        final InputStream stream = ChannelInputStream.wrap( channel );
+        try
+        {
+            return ( this.<T> parse( new InputSource( stream ) ) );
+        }
+        finally
+        {
+            stream.close();
+        }
+    }
+
+    /**
+     * Stops the current parse, once the SAX event being processed has been processed by all its rules. The rest of
+     * the document is neither read nor digested, but the {@code finish} event is still fired on all the rules, and the
+     * {@code parse} method returns the root object as if the document ended there.
+     * <p>
+     * This method is usually called by a rule, once the data needed from a document has been captured, for instance
+     * in its header. It can also be called by another thread: the parse then stops at the next SAX event. The request
+     * is cleared when the next {@code parse} method is called, or when the Digester is {@link #reset()}; a Digester
+     * used directly as the {@code ContentHandler} of an XML reader stays stopped until then.
+     *
+     * @since 3.3
+     */
+    public void stop()
+    {
+        stopped = true;
+    }
+
+    /**
+     * Clears a previous {@link #stop()} request, before a parse that may be started by another thread, so that a
+     * request made in the meantime is not lost.
+     */
+    void resetStopped()
+    {
+        stopped = false;
+    }
+
+    /**
+     * Checks whether {@link #stop()} has been called since the current, or the last, parse started.
+     *
+     * @return true, if the current or last parse has been stopped
+     * @since 3.3
+     */
+    public boolean isStopped()
+    {
+        return stopped;
+    }
+
+    /**
+     * Checks whether the documents are parsed on a thread of their own, while the rules are fired on the thread
+     * calling {@code parse}.
+     *
+     * @return true, if the documents are parsed on a thread of their own
+     * @since 3.3
+     */
+    public boolean isPipelined()
+    {
+        return pipelined;
+    }
+
+    /**
+     * Sets whether the documents given as an {@code InputSource}, or as any source read through one, are parsed on a
+     * thread of their own, while the rules are fired on the thread calling {@code parse}. The parser hands the SAX
+     * events over to the rules through a bounded buffer, so that reading and tokenizing a large document overlaps with
+     * digesting it.
+     * <p>
+     * The rules are fired in the same order and with the same arguments as when the document is parsed on a single
+     * thread. However, the {@link #getDocumentLocator() locator} reports the position of the parser, which may be
+     * ahead of the element being digested. The default is {@code false}.
+     *
+     * @param pipelined true, if the documents are parsed on a thread of their own
+     * @since 3.3
+     */
+    public void setPipelined( final boolean pipelined )
+    {
+        this.pipelined = pipelined;
+    }
+
+    /**
+     * Sets the number of outermost elements whose rules are not fired, because they are only replayed to restore the
+     * context of a record digested apart from its document.
+     *
+     * @param contextDepth the number of outermost elements whose rules are not fired
+     */
+    void setContextDepth( final int contextDepth )
+    {
+        this.contextDepth = contextDepth;
+    }
+
+    /**
+     * Throws the exception that makes the XML reader give up the rest of the document, if the parse has been stopped.
+     *
+     * @throws ParseStoppedException if the parse has been stopped
+     */
+    private void checkStopped()
+        throws ParseStoppedException
+    {
+        if ( stopped )
+        {
+            throw new ParseStoppedException();
+        }
+    }
+
     /**
      * Creates a Callable instance that parse the content of the specified reader using this Digester.
      *
@@ -1623,6 +2204,23 @@ public class Digester
             throw new IllegalArgumentException( "InputSource to parse is null" );
         }
 
+        resetStopped();
+        return this.<T> parsePrepared( input );
+    }
+
+    /**
+     * Parses the content of the specified input source, without clearing a {@link #stop()} request made since
+     * {@link #resetStopped()} has been called.
+     *
+     * @param <T> the type used to auto-cast the returned object to the assigned variable type
+     * @param input Input source containing the XML data to be parsed
+     * @return the root element from the object stack (if any)
+     * @throws IOException if an input/output error occurs
+     * @throws SAXException if a parsing exception occurs
+     */
+    <T> T parsePrepared( final InputSource input )
+        throws IOException, SAXException
+    {
         configure();
 
         String systemId = input.getSystemId();
@@ -1631,9 +2229,18 @@ public class Digester
             systemId = "(already loaded from stream)";
         }
 
+        boolean parsed = false;
         try
         {
-            getXMLReader().parse( input );
+            if ( pipelined )
+            {
+                new EventPipeline( this ).parse( getXMLReader(), input );
+            }
+            else
+            {
+                getXMLReader().parse( input );
+            }
+            parsed = true;
         }
         catch ( final IOException e )
         {
@@ -1641,6 +2248,19 @@ public class Digester
                        e );
             throw e;
         }
+        catch ( final ParseStoppedException e )
+        {
+            // the reader gave up the rest of the document, fire the "finish" events it did not trigger
+            endDocument();
+            parsed = true;
+        }
+        finally
+        {
+            if ( !parsed )
+            {
+                abort();
+            }
+        }
         cleanup();
         return this.<T> getRoot();
     }
@@ -1826,6 +2446,29 @@ public class Digester
         return ( this.<T> parse( createInputSourceFromURL( url ) ) );
     }
 
+    /**
+     * Parse the content of the specified StAX reader using this Digester. Returns the root element from the object
+     * stack (if any).
+     *
+     * @param <T> the type used to auto-cast the returned object to the assigned variable type
+     * @param reader StAX reader containing the XML data to be parsed
+     * @return the root element from the object stack (if any)
+     * @throws XMLStreamException if the reader fails to read the document
+     * @throws SAXException if a parsing exception occurs
+     * @see StreamReaderDriver
+     * @since 3.3
+     */
+    public <T> T parse( final XMLStreamReader reader )
+        throws XMLStreamException, SAXException
+    {
+        if ( reader == null )
+        {
+            throw new IllegalArgumentException( "XMLStreamReader to parse is null" );
+        }
+
+        return new StreamReaderDriver( this, reader ).<T> parse();
+    }
+
     /**
      * Creates a Callable instance that parse the content of the specified reader using this Digester.
      *
@@ -2005,6 +2648,54 @@ public class Digester
         return createInputSourceFromURL( new URL( url ) );
     }
 
+    /**
+     * Parses the given document lazily, returning the records built at the given pattern as they are iterated over.
+     * <p>
+     * A {@link RecordRule} matching the given pattern, after the rules already registered, and a {@link StackAction}
+     * chained to the current one are installed for the iteration. The rules and the stack action of this Digester are
+     * restored once the document has been parsed or the iterator closed, so it can parse other documents afterwards.
+     *
+     * @param <T> the type of the records
+     * @param pattern Element matching pattern of the records
+     * @param recordType the type of the records
+     * @param input Input source containing the XML data to be parsed
+     * @return the iterator over the records, that should be closed if not iterated to the end
+     * @see RecordIterator
+     * @since 3.3
+     */
+    public <T> RecordIterator<T> iterate( final String pattern, final Class<T> recordType, final InputSource input )
+    {
+        if ( input == null )
+        {
+            throw new IllegalArgumentException( "InputSource to parse is null" );
+        }
+        return new RecordIterator<T>( this, pattern, recordType, input );
+    }
+
+    /**
+     * Parses the given document lazily, returning the records built at the given pattern as they are iterated over.
+     * <p>
+     * Unlike {@link #iterate(String, Class, InputSource)}, no other thread is involved: the events of the reader are
+     * dispatched by the iterating thread, just until the next record has been built.
+     *
+     * @param <T> the type of the records
+     * @param pattern Element matching pattern of the records
+     * @param recordType the type of the records
+     * @param reader StAX reader containing the XML data to be parsed
+     * @return the iterator over the records
+     * @see RecordIterator
+     * @since 3.3
+     */
+    public <T> RecordIterator<T> iterate( final String pattern, final Class<T> recordType,
+                                          final XMLStreamReader reader )
+    {
+        if ( reader == null )
+        {
+            throw new IllegalArgumentException( "XMLStreamReader to parse is null" );
+        }
+        return new RecordIterator<T>( this, pattern, recordType, new StreamReaderDriver( this, reader ) );
+    }
+
     // --------------------------------------------------------- Rule Methods
 
     /**
@@ -2502,6 +3193,22 @@ public class Digester
         addRule( pattern, new SetRootRule( methodName, paramType ) );
     }
 
+    /**
+     * Add a {@link RecordRule} with the specified parameters.
+     *
+     * @param <T> the type of the records
+     * @param pattern Element matching pattern
+     * @param recordType the type of the records
+     * @param consumer the consumer the records are handed to
+     * @see RecordRule
+     * @since 3.3
+     */
+    public <T> void addRecord( final String pattern, final Class<T> recordType,
+                               final RecordConsumer<? super T> consumer )
+    {
+        addRule( pattern, new RecordRule<T>( recordType, consumer ) );
+    }
+
     /**
      * Add a "set properties" rule for the specified parameters.
      *
@@ -2597,7 +3304,12 @@ public class Digester
      */
     public void clear()
     {
-        match = "";
+        Arrays.fill( path, 0, depth + Math.max( skipLevel, 0 ), null );
+        depth = 0;
+        builtMatchPatterns = 0;
+        matchStatesRules = null;
+        skipLevel = -1;
+        skippingRules = null;
         bodyTexts.clear();
         params.clear();
         publicId = null;
@@ -2618,7 +3330,7 @@ public class Digester
     {
         try
         {
-            return this.<T> npeSafeCast( stack.peek() );
+            return this.<T> npeSafeCast( created( stack.peek(), stack.size() - 1 ) );
         }
         catch ( final EmptyStackException e )
         {
@@ -2645,7 +3357,7 @@ public class Digester
         }
         try
         {
-            return this.<T> npeSafeCast( stack.get( index ) );
+            return this.<T> npeSafeCast( created( stack.get( index ), index ) );
         }
         catch ( final EmptyStackException e )
         {
@@ -2665,7 +3377,8 @@ public class Digester
     {
         try
         {
-            T popped = this.<T> npeSafeCast( stack.pop() );
+            T popped = this.<T> npeSafeCast( created( stack.peek(), stack.size() - 1 ) );
+            stack.pop();
             if ( stackAction != null )
             {
                 popped = stackAction.onPop( this, null, popped );
@@ -2679,6 +3392,102 @@ public class Digester
         }
     }
 
+    /**
+     * Return the top object on the stack without removing it, without creating it if it is a {@link PendingObject}.
+     * Only the rules setting the properties of the top object, which a {@code PendingObject} collects until the object
+     * is created, use this method.
+     *
+     * @param <T> the type used to auto-cast the returned object to the assigned variable type
+     * @return the top object on the stack without removing it.
+     * @since 3.3
+     */
+    <T> T peekPending()
+    {
+        try
+        {
+            return this.<T> npeSafeCast( stack.peek() );
+        }
+        catch ( final EmptyStackException e )
+        {
+            log.warn( "Empty stack (returning null)" );
+            return ( null );
+        }
+    }
+
+    /**
+     * Creates, if need be, the n'th object down the stack: a {@link PendingObject} is replaced by the object it stands
+     * for, as the root object as well if need be.
+     *
+     * @param n Index of the desired element, where 0 is the top of the stack, 1 is the next element down, and so on.
+     * @return the n'th object down the stack, created
+     * @throws Exception if the object cannot be created
+     * @since 3.3
+     */
+    Object createPending( final int n )
+        throws Exception
+    {
+        final int index = ( stack.size() - 1 ) - n;
+        final Object object = stack.get( index );
+        if ( !( object instanceof PendingObject ) )
+        {
+            return object;
+        }
+        final Object created = ( (PendingObject) object ).create();
+        stack.set( index, created );
+        if ( root == object )
+        {
+            root = created;
+        }
+        return created;
+    }
+
+    /**
+     * Return the parameters on top of the parameters stack if they are the constructor arguments of the
+     * {@link PendingObject} on top of the object stack.
+     *
+     * @return the constructor arguments of the object on top of the stack, null if it is not pending or if they are
+     *         not on top of the parameters stack
+     * @since 3.3
+     */
+    Object[] peekPendingArguments()
+    {
+        if ( stack.isEmpty() || params.isEmpty() )
+        {
+            return null;
+        }
+        final Object top = stack.peek();
+        final Object[] parameters = params.peek();
+        if ( top instanceof PendingObject && ( (PendingObject) top ).isCreatedWith( parameters ) )
+        {
+            return parameters;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the given object of the stack, after creating it if it is a {@link PendingObject}.
+     */
+    private Object created( final Object object, final int index )
+    {
+        if ( !( object instanceof PendingObject ) )
+        {
+            return object;
+        }
+        try
+        {
+            return createPending( ( stack.size() - 1 ) - index );
+        }
+        catch ( final RuntimeException e )
+        {
+            throw e;
+        }
+        catch ( final Exception e )
+        {
+            throw new IllegalStateException( "The object standing at index " + index + " of the stack cannot be "
+                + "created", e );
+        }
+    }
+
     /**
      * Push a new object onto the top of the object stack.
      *
@@ -2715,10 +3524,10 @@ public class Digester
             value = stackAction.onPush( this, stackName, value );
         }
 
-        Stack<Object> namedStack = stacksByName.get( stackName );
+        ArrayStack<Object> namedStack = stacksByName.get( stackName );
         if ( namedStack == null )
         {
-            namedStack = new Stack<Object>();
+            namedStack = new ArrayStack<Object>();
             stacksByName.put( stackName, namedStack );
         }
         namedStack.push( value );
@@ -2740,7 +3549,7 @@ public class Digester
      */
     public <T> T pop( final String stackName )
     {
-        final Stack<Object> namedStack = stacksByName.get( stackName );
+        final ArrayStack<Object> namedStack = stacksByName.get( stackName );
         if ( namedStack == null )
         {
             if ( log.isDebugEnabled() )
@@ -2795,7 +3604,7 @@ public class Digester
     public <T> T peek( final String stackName, final int n )
     {
         T result;
-        final Stack<Object> namedStack = stacksByName.get( stackName );
+        final ArrayStack<Object> namedStack = stacksByName.get( stackName );
         if ( namedStack == null )
         {
             if ( log.isDebugEnabled() )
@@ -2830,7 +3639,7 @@ public class Digester
     public boolean isEmpty( final String stackName )
     {
         boolean result = true;
-        final Stack<Object> namedStack = stacksByName.get( stackName );
+        final ArrayStack<Object> namedStack = stacksByName.get( stackName );
         if ( namedStack != null )
         {
             result = namedStack.isEmpty();
@@ -2864,6 +3673,101 @@ public class Digester
         return this.<T> npeSafeCast( root );
     }
 
+    /**
+     * Reset this Digester to the state it had before its first parse, so that it can be reused to parse another
+     * document with the same configuration and rules.
+     * <p>
+     * Unlike {@link #clear()}, this method also discards the state left over by a parse that failed (pending rule
+     * matches, namespace mappings, body text and rules temporarily installed by a rule), closes the input streams
+     * opened by the Digester itself and resets the root object. If the last document started but did not end, the
+     * {@link Rule#finish()} events it missed are fired, so that the rules remove their temporary data as well. The
+     * rules, the XMLReader and all the configuration properties are retained.
+     *
+     * @since 3.3
+     */
+    public void reset()
+    {
+        cleanup();
+        clear();
+        bodyText = new StringBuilder();
+        matches.clear();
+        namespaces.clear();
+        abortDocument();
+        resetStopped();
+        resetRoot();
+    }
+
+    /**
+     * Registers an action to run if the current document does not end normally, i.e. if the parse fails, or if the
+     * Digester is reset or starts another document before the {@code finish} events of the current one have been
+     * fired. The actions are discarded once the current document ends normally.
+     *
+     * @param action the action to run if the current document does not end normally
+     */
+    void onAbort( final Runnable action )
+    {
+        abortActions.add( action );
+    }
+
+    /**
+     * Runs, then discards, the actions registered for a document that did not end normally.
+     */
+    void abort()
+    {
+        if ( abortActions.isEmpty() )
+        {
+            return;
+        }
+        final List<Runnable> actions = new ArrayList<Runnable>( abortActions );
+        abortActions.clear();
+        for ( final Runnable action : actions )
+        {
+            action.run();
+        }
+    }
+
+    /**
+     * Discards the state of a document that started but did not end normally: puts back the rules installed when it
+     * started, fires their {@code finish} events so that they remove their temporary data, then runs the actions
+     * registered for it. Exceptions thrown by the {@code finish} events are logged and ignored.
+     */
+    private void abortDocument()
+    {
+        if ( documentRules != null )
+        {
+            restoreDocumentRules();
+            for ( final Rule rule : getRules().rules() )
+            {
+                if ( !rule.requires( RuleCallback.FINISH ) )
+                {
+                    continue;
+                }
+                try
+                {
+                    rule.finish();
+                }
+                catch ( final Exception e )
+                {
+                    log.error( "Finish event of an aborted document threw exception", e );
+                }
+            }
+        }
+        abort();
+    }
+
+    /**
+     * Puts back the rules installed when the current document started, in case a rule replaced them, as
+     * {@link SetNestedPropertiesRule} does, and the document ended before that rule restored them.
+     */
+    private void restoreDocumentRules()
+    {
+        if ( documentRules != null && documentRules != rules )
+        {
+            setRules( documentRules );
+        }
+        documentRules = null;
+    }
+
     /**
      * This method allows the "root" variable to be reset to null.
      * <p>
@@ -3170,4 +4074,20 @@ public class Digester
         return result;
     }
 
+    /**
+     * Thrown from the SAX callbacks to make the XML reader give up the rest of a document after {@link #stop()}.
+     */
+    private static final class ParseStoppedException
+        extends SAXException
+    {
+
+        private static final long serialVersionUID = 1L;
+
+        ParseStoppedException()
+        {
+            super( "The parse has been stopped" );
+        }
+
+    }
+
 }
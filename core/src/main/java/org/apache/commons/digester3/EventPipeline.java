@@ -0,0 +1,532 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Runs the SAX parser and the rules of a {@link Digester} on two threads, connected by a bounded ring buffer of
+ * events.
+ * <p>
+ * The parser runs on a dedicated thread, and copies each SAX event into a preallocated slot of the ring: the slots,
+ * their attributes and their character buffers are reused from an event to the other, so the parser does not
+ * allocate per event. The thread that called {@code parse} dispatches the events to the {@code ContentHandler}
+ * methods of the Digester, so the rules are fired exactly as if the document was parsed on a single thread. Each side
+ * only waits when the ring is full, or empty.
+ *
+ * @since 3.3
+ */
+final class EventPipeline
+    extends DefaultHandler
+{
+
+    /**
+     * The number of slots of the ring, a power of two.
+     */
+    static final int CAPACITY = 1024;
+
+    private static final byte START_DOCUMENT = 0;
+
+    private static final byte END_DOCUMENT = 1;
+
+    private static final byte START_PREFIX_MAPPING = 2;
+
+    private static final byte END_PREFIX_MAPPING = 3;
+
+    private static final byte START_ELEMENT = 4;
+
+    private static final byte END_ELEMENT = 5;
+
+    private static final byte CHARACTERS = 6;
+
+    private static final byte IGNORABLE_WHITESPACE = 7;
+
+    private static final byte PROCESSING_INSTRUCTION = 8;
+
+    private static final byte SKIPPED_ENTITY = 9;
+
+    /**
+     * Published once the parser is done with the document.
+     */
+    private static final byte DONE = 10;
+
+    /**
+     * Published if the parser failed.
+     */
+    private static final byte FAILURE = 11;
+
+    private final Digester digester;
+
+    private final Slot[] slots = new Slot[CAPACITY];
+
+    /**
+     * The number of events published by the parser thread.
+     */
+    private volatile long written;
+
+    /**
+     * The number of events dispatched by the rules thread.
+     */
+    private volatile long read;
+
+    private volatile boolean producerWaiting;
+
+    private volatile boolean consumerWaiting;
+
+    /**
+     * Set by the rules thread when it gives up the document, to abort the parser.
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * The error the parser failed with, published with a {@link #FAILURE} event.
+     */
+    private Throwable failure;
+
+    private final CountDownLatch parserDone = new CountDownLatch( 1 );
+
+    EventPipeline( final Digester digester )
+    {
+        this.digester = digester;
+        for ( int i = 0; i < slots.length; i++ )
+        {
+            slots[i] = new Slot();
+        }
+    }
+
+    /**
+     * Parses the given document with the given reader on a new thread, and dispatches its events to the Digester on
+     * the current thread.
+     *
+     * @param reader the reader parsing the document, configured by the Digester
+     * @param input the document
+     * @throws IOException if the parser failed to read the document
+     * @throws SAXException if the parser or a rule failed
+     */
+    void parse( final XMLReader reader, final InputSource input )
+        throws IOException, SAXException
+    {
+        reader.setContentHandler( this );
+        final Thread parser = new Thread( new Runnable()
+        {
+
+            @Override
+            public void run()
+            {
+                try
+                {
+                    reader.parse( input );
+                    publish( claim(), DONE );
+                }
+                catch ( final Throwable t )
+                {
+                    if ( !cancelled )
+                    {
+                        failure = t;
+                        try
+                        {
+                            publish( claim(), FAILURE );
+                        }
+                        catch ( final SAXException e )
+                        {
+                            // cancelled in the meantime
+                        }
+                    }
+                }
+                finally
+                {
+                    parserDone.countDown();
+                }
+            }
+
+        }, "Digester SAX pipeline" );
+        parser.setDaemon( true );
+        parser.start();
+
+        boolean done = false;
+        try
+        {
+            dispatch();
+            done = true;
+        }
+        finally
+        {
+            if ( !done )
+            {
+                cancel();
+            }
+            awaitParser();
+        }
+    }
+
+    private void dispatch()
+        throws IOException, SAXException
+    {
+        while ( true )
+        {
+            final Slot slot = take();
+            switch ( slot.type )
+            {
+                case START_DOCUMENT:
+                    digester.startDocument();
+                    break;
+
+                case END_DOCUMENT:
+                    digester.endDocument();
+                    break;
+
+                case START_PREFIX_MAPPING:
+                    digester.startPrefixMapping( slot.first, slot.second );
+                    break;
+
+                case END_PREFIX_MAPPING:
+                    digester.endPrefixMapping( slot.first );
+                    break;
+
+                case START_ELEMENT:
+                    digester.startElement( slot.first, slot.second, slot.third, slot.attributes );
+                    break;
+
+                case END_ELEMENT:
+                    digester.endElement( slot.first, slot.second, slot.third );
+                    break;
+
+                case CHARACTERS:
+                    digester.characters( slot.chars, 0, slot.length );
+                    break;
+
+                case IGNORABLE_WHITESPACE:
+                    digester.ignorableWhitespace( slot.chars, 0, slot.length );
+                    break;
+
+                case PROCESSING_INSTRUCTION:
+                    digester.processingInstruction( slot.first, slot.second );
+                    break;
+
+                case SKIPPED_ENTITY:
+                    digester.skippedEntity( slot.first );
+                    break;
+
+                case DONE:
+                    return;
+
+                default:
+                    rethrowFailure();
+            }
+            release();
+        }
+    }
+
+    private void rethrowFailure()
+        throws IOException, SAXException
+    {
+        if ( failure instanceof IOException )
+        {
+            throw (IOException) failure;
+        }
+        if ( failure instanceof SAXException )
+        {
+            throw (SAXException) failure;
+        }
+        if ( failure instanceof RuntimeException )
+        {
+            throw (RuntimeException) failure;
+        }
+        throw (Error) failure;
+    }
+
+    // ------------------------------------------------------- parser thread
+
+    /**
+     * Returns the next free slot, waiting for the rules thread to release one if the ring is full.
+     */
+    private Slot claim()
+        throws SAXException
+    {
+        final long sequence = written;
+        while ( sequence - read >= slots.length && !cancelled )
+        {
+            synchronized ( this )
+            {
+                producerWaiting = true;
+                try
+                {
+                    if ( sequence - read >= slots.length && !cancelled )
+                    {
+                        wait();
+                    }
+                }
+                catch ( final InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    throw new SAXException( "Interrupted while waiting for the rules", e );
+                }
+                finally
+                {
+                    producerWaiting = false;
+                }
+            }
+        }
+        if ( cancelled )
+        {
+            throw new SAXException( "The rules gave up the document" );
+        }
+        return slots[(int) sequence & ( slots.length - 1 )];
+    }
+
+    private void publish( final Slot slot, final byte type )
+    {
+        slot.type = type;
+        written = written + 1;
+        if ( consumerWaiting )
+        {
+            synchronized ( this )
+            {
+                notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public void setDocumentLocator( final Locator locator )
+    {
+        // the locator reports the position of the parser, that may be ahead of the rules
+        digester.setDocumentLocator( locator );
+    }
+
+    @Override
+    public void startDocument()
+        throws SAXException
+    {
+        publish( claim(), START_DOCUMENT );
+    }
+
+    @Override
+    public void endDocument()
+        throws SAXException
+    {
+        publish( claim(), END_DOCUMENT );
+    }
+
+    @Override
+    public void startPrefixMapping( final String prefix, final String uri )
+        throws SAXException
+    {
+        final Slot slot = claim();
+        slot.first = prefix;
+        slot.second = uri;
+        publish( slot, START_PREFIX_MAPPING );
+    }
+
+    @Override
+    public void endPrefixMapping( final String prefix )
+        throws SAXException
+    {
+        final Slot slot = claim();
+        slot.first = prefix;
+        publish( slot, END_PREFIX_MAPPING );
+    }
+
+    @Override
+    public void startElement( final String uri, final String localName, final String qName,
+                              final Attributes attributes )
+        throws SAXException
+    {
+        final Slot slot = claim();
+        slot.first = uri;
+        slot.second = localName;
+        slot.third = qName;
+        slot.attributes.clear();
+        for ( int i = 0; i < attributes.getLength(); i++ )
+        {
+            slot.attributes.addAttribute( attributes.getURI( i ), attributes.getLocalName( i ),
+                                          attributes.getQName( i ), attributes.getType( i ),
+                                          attributes.getValue( i ) );
+        }
+        publish( slot, START_ELEMENT );
+    }
+
+    @Override
+    public void endElement( final String uri, final String localName, final String qName )
+        throws SAXException
+    {
+        final Slot slot = claim();
+        slot.first = uri;
+        slot.second = localName;
+        slot.third = qName;
+        publish( slot, END_ELEMENT );
+    }
+
+    @Override
+    public void characters( final char[] ch, final int start, final int length )
+        throws SAXException
+    {
+        publish( claim().setChars( ch, start, length ), CHARACTERS );
+    }
+
+    @Override
+    public void ignorableWhitespace( final char[] ch, final int start, final int length )
+        throws SAXException
+    {
+        publish( claim().setChars( ch, start, length ), IGNORABLE_WHITESPACE );
+    }
+
+    @Override
+    public void processingInstruction( final String target, final String data )
+        throws SAXException
+    {
+        final Slot slot = claim();
+        slot.first = target;
+        slot.second = data;
+        publish( slot, PROCESSING_INSTRUCTION );
+    }
+
+    @Override
+    public void skippedEntity( final String name )
+        throws SAXException
+    {
+        final Slot slot = claim();
+        slot.first = name;
+        publish( slot, SKIPPED_ENTITY );
+    }
+
+    // -------------------------------------------------------- rules thread
+
+    /**
+     * Returns the next published slot, waiting for the parser thread to publish one if the ring is empty.
+     */
+    private Slot take()
+        throws SAXException
+    {
+        final long sequence = read;
+        while ( written == sequence )
+        {
+            synchronized ( this )
+            {
+                consumerWaiting = true;
+                try
+                {
+                    if ( written == sequence )
+                    {
+                        wait();
+                    }
+                }
+                catch ( final InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    throw new SAXException( "Interrupted while waiting for the parser", e );
+                }
+                finally
+                {
+                    consumerWaiting = false;
+                }
+            }
+        }
+        return slots[(int) sequence & ( slots.length - 1 )];
+    }
+
+    private void release()
+    {
+        read = read + 1;
+        if ( producerWaiting )
+        {
+            synchronized ( this )
+            {
+                notifyAll();
+            }
+        }
+    }
+
+    private void cancel()
+    {
+        cancelled = true;
+        synchronized ( this )
+        {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Waits for the parser thread to be done, so that the reader can be reused by the Digester.
+     */
+    private void awaitParser()
+    {
+        boolean interrupted = false;
+        while ( true )
+        {
+            try
+            {
+                parserDone.await();
+                break;
+            }
+            catch ( final InterruptedException e )
+            {
+                interrupted = true;
+            }
+        }
+        if ( interrupted )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * An event of the ring, reused once dispatched.
+     */
+    private static final class Slot
+    {
+
+        byte type;
+
+        String first;
+
+        String second;
+
+        String third;
+
+        final AttributesImpl attributes = new AttributesImpl();
+
+        char[] chars = new char[64];
+
+        int length;
+
+        Slot setChars( final char[] ch, final int start, final int length )
+        {
+            if ( chars.length < length )
+            {
+                chars = new char[Math.max( length, chars.length * 2 )];
+            }
+            System.arraycopy( ch, start, chars, 0, length );
+            this.length = length;
+            return this;
+        }
+
+    }
+
+}
@@ -22,7 +22,6 @@ package org.apache.commons.digester3;
 import static java.lang.String.format;
 
 import java.util.Formatter;
-import java.util.Stack;
 
 import org.xml.sax.Attributes;
 
@@ -46,7 +45,7 @@ public class FactoryCreateRule
     private final boolean ignoreCreateExceptions;
 
     /** Stock to manage */
-    private Stack<Boolean> exceptionIgnoredStack;
+    private ArrayStack<Boolean> exceptionIgnoredStack;
 
     // ----------------------------------------------------------- Constructors
 
@@ -222,6 +221,11 @@ public class FactoryCreateRule
      */
     protected ObjectCreationFactory<?> creationFactory = null;
 
+    /**
+     * The factory classes named by the attribute or the class name of this rule.
+     */
+    private final ResolvedClass.Cache factoryClasses = new ResolvedClass.Cache();
+
     // --------------------------------------------------------- Public Methods
 
     /**
@@ -235,7 +239,7 @@ public class FactoryCreateRule
         {
             if ( exceptionIgnoredStack == null )
             {
-                exceptionIgnoredStack = new Stack<Boolean>();
+                exceptionIgnoredStack = new ArrayStack<Boolean>();
             }
 
             try
@@ -330,6 +334,8 @@ public class FactoryCreateRule
         {
             creationFactory = null;
         }
+        // left over if the document did not end normally
+        exceptionIgnoredStack = null;
     }
 
     /**
@@ -376,8 +382,8 @@ public class FactoryCreateRule
                 getDigester().getLogger().debug( format( "[FactoryCreateRule]{%s} New factory %s",
                                                          getDigester().getMatch(), realClassName ) );
             }
-            final Class<?> clazz = getDigester().getClassLoader().loadClass( realClassName );
-            creationFactory = (ObjectCreationFactory<?>) clazz.newInstance();
+            final ResolvedClass factoryClass = factoryClasses.get( getDigester().getClassLoader(), realClassName );
+            creationFactory = (ObjectCreationFactory<?>) factoryClass.newInstance();
             creationFactory.setDigester( getDigester() );
         }
         return ( creationFactory );
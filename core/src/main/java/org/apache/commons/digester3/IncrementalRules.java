@@ -0,0 +1,87 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.List;
+
+/**
+ * Optional extension of {@link Rules} for implementations that are able to match element paths incrementally.
+ * <p>
+ * Instead of matching the whole slash-separated path on every element, the {@link Digester} keeps an opaque integer
+ * state for each open element and asks the implementation for the state of a child element given the state of its
+ * parent and the child's name. The rules matching an element are then selected from its state alone.
+ * <p>
+ * States are only meaningful to the {@code IncrementalRules} instance that produced them, and are invalidated when
+ * rules are added or cleared.
+ *
+ * @since 3.3
+ */
+public interface IncrementalRules
+    extends SkippableRules
+{
+
+    /**
+     * Marker state meaning that the state of an element is not known, for example because its parent was matched by
+     * a different {@link Rules} instance. The {@link Digester} falls back to
+     * {@link Rules#match(String, String, String, org.xml.sax.Attributes)} for children of such elements.
+     */
+    int UNKNOWN_STATE = -1;
+
+    /**
+     * Return the state of the (empty) path above the document root element.
+     *
+     * @return the state of the empty path
+     */
+    int getInitialState();
+
+    /**
+     * Return the state reached by entering a child element with the given name from the given parent state.
+     *
+     * @param state the state of the parent element, as returned by {@link #getInitialState()} or by a previous call
+     *            to this method
+     * @param name the local name if the parser is namespace aware, or just the element name otherwise
+     * @return the state of the child element
+     */
+    int nextState( int state, String name );
+
+    /**
+     * Return a List of all registered Rule instances that match the element in the given state, or a zero-length List
+     * if there are no matches. If more than one Rule instance matches, they <strong>must</strong> be returned in the
+     * order originally registered through the {@code add()} method.
+     *
+     * @param namespaceURI Namespace URI for which to select matching rules, or {@code null} to match regardless of
+     *            namespace URI
+     * @param state the state of the current matching element
+     * @return a List of all registered Rule instances that match the element in the given state
+     */
+    List<Rule> match( String namespaceURI, int state );
+
+    /**
+     * Return whether a registered Rule instance may match an element nested, at any depth, below an element in the
+     * given state, other than through a wildcard pattern whose first element name is the name of such a nested
+     * element. This is the incremental counterpart of {@link #hasMatchesBelow(String)}.
+     *
+     * @param state the state of the element
+     * @return false, if the only registered Rule instances that can match below an element in the given state are
+     *         those of wildcard patterns starting at a nested element
+     */
+    boolean hasMatchesBelow( int state );
+
+}
@@ -0,0 +1,125 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.apache.commons.beanutils.PropertyUtils.getPropertyDescriptors;
+
+import java.beans.PropertyDescriptor;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The properties of the bean classes the rules of a Digester set values to.
+ * <p>
+ * Each bean class is introspected once with {@code PropertyUtils}, and the writer of each of its properties is resolved
+ * once as well. Once a class has been introspected, its properties are read without any locking, so that Digester
+ * instances parsing documents in different threads do not contend on the synchronized {@code PropertyUtils}
+ * singleton. Introspection results are attached to the classes with a {@link ClassValue}, and do not prevent them from
+ * being unloaded.
+ * <p>
+ * The {@link org.apache.commons.digester3.binder.DigesterLoader} shares one instance with all the Digester instances it
+ * creates, other Digester instances share {@link #getDefault() the default instance}.
+ *
+ * @since 3.3
+ */
+public final class IntrospectionCache
+{
+
+    private static final IntrospectionCache DEFAULT = new IntrospectionCache();
+
+    private final ClassValue<BeanProperties> properties = new ClassValue<BeanProperties>()
+    {
+
+        @Override
+        protected BeanProperties computeValue( final Class<?> type )
+        {
+            return new BeanProperties( type );
+        }
+
+    };
+
+    /**
+     * Returns the instance shared by the Digester instances that have not been given a dedicated one.
+     *
+     * @return the instance shared by the Digester instances that have not been given a dedicated one
+     */
+    public static IntrospectionCache getDefault()
+    {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the descriptor of the given simple property of the given bean class.
+     *
+     * @param beanType the class of the bean
+     * @param name the name of the property, without any nested, indexed or mapped property expression
+     * @return the descriptor of the given property, or null if the bean class has no such property
+     */
+    public PropertyDescriptor getPropertyDescriptor( final Class<?> beanType, final String name )
+    {
+        return properties.get( beanType ).descriptors.get( name );
+    }
+
+    /**
+     * Returns the writer of the given property of the given bean class, resolving it if needed.
+     *
+     * @param beanType the class of the bean
+     * @param name the name of the property
+     * @return the writer of the given property
+     */
+    PropertyWriter getWriter( final Class<?> beanType, final String name )
+    {
+        final BeanProperties bean = properties.get( beanType );
+        PropertyWriter writer = bean.writers.get( name );
+        if ( writer == null )
+        {
+            // writers are immutable, resolving one twice is harmless
+            writer = PropertyWriter.forProperty( beanType, name, bean.descriptors.get( name ) );
+            bean.writers.putIfAbsent( name, writer );
+        }
+        return writer;
+    }
+
+    /**
+     * The introspected properties of a bean class.
+     */
+    private static final class BeanProperties
+    {
+
+        /**
+         * The descriptors of the properties, never modified once introspected.
+         */
+        final Map<String, PropertyDescriptor> descriptors = new HashMap<String, PropertyDescriptor>();
+
+        final ConcurrentMap<String, PropertyWriter> writers = new ConcurrentHashMap<String, PropertyWriter>();
+
+        BeanProperties( final Class<?> type )
+        {
+            for ( final PropertyDescriptor descriptor : getPropertyDescriptors( type ) )
+            {
+                descriptors.put( descriptor.getName(), descriptor );
+            }
+        }
+
+    }
+
+}
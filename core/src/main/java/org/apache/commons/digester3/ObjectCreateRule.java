@@ -22,12 +22,14 @@ package org.apache.commons.digester3;
 import static java.lang.System.arraycopy;
 import static java.lang.String.format;
 import static org.apache.commons.beanutils.ConstructorUtils.getAccessibleConstructor;
-import static org.apache.commons.beanutils.ConvertUtils.convert;
 
+import java.beans.PropertyDescriptor;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 
 import net.sf.cglib.proxy.Callback;
 import net.sf.cglib.proxy.Enhancer;
@@ -35,6 +37,12 @@ import net.sf.cglib.proxy.Factory;
 import net.sf.cglib.proxy.MethodInterceptor;
 import net.sf.cglib.proxy.MethodProxy;
 
+import org.apache.commons.beanutils.BeanUtilsBean;
+import org.apache.commons.beanutils.ConvertUtilsBean;
+import org.apache.commons.beanutils.DynaProperty;
+import org.apache.commons.beanutils.LazyDynaBean;
+import org.apache.commons.beanutils.LazyDynaClass;
+import org.apache.commons.beanutils.PropertyUtilsBean;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 
@@ -51,11 +59,14 @@ public class ObjectCreateRule
         Object[] constructorArgs;
         ArrayList<RecordedInvocation> invocations = new ArrayList<RecordedInvocation>();
         Object delegate;
+        final ConvertUtilsBean convertUtils;
 
-        DeferredConstructionCallback( final Constructor<?> constructor, final Object[] constructorArgs )
+        DeferredConstructionCallback( final Constructor<?> constructor, final Object[] constructorArgs,
+                                      final ConvertUtilsBean convertUtils )
         {
             this.constructor = constructor;
             this.constructorArgs = constructorArgs;
+            this.convertUtils = convertUtils;
         }
 
         @Override
@@ -77,7 +88,7 @@ public class ObjectCreateRule
         void establishDelegate()
             throws Exception
         {
-            convertTo( constructor.getParameterTypes(), constructorArgs );
+            convertTo( convertUtils, constructor.getParameterTypes(), constructorArgs );
             delegate = constructor.newInstance( constructorArgs );
             for ( final RecordedInvocation invocation : invocations )
             {
@@ -103,36 +114,8 @@ public class ObjectCreateRule
             this.clazz = clazz;
             hasDefaultConstructor = getAccessibleConstructor( clazz, new Class[0] ) != null;
             this.constructor = constructor;
-            final Class<?>[] argTypes = constructor.getParameterTypes();
-            templateConstructorArguments = new Object[argTypes.length];
-            if ( constructorArguments == null )
-            {
-                for ( int i = 0; i < templateConstructorArguments.length; i++ )
-                {
-                    if ( argTypes[i].equals( boolean.class ) )
-                    {
-                        templateConstructorArguments[i] = Boolean.FALSE;
-                        continue;
-                    }
-                    if ( argTypes[i].isPrimitive() )
-                    {
-                        templateConstructorArguments[i] = convert( "0", argTypes[i] );
-                        continue;
-                    }
-                    templateConstructorArguments[i] = null;
-                }
-            }
-            else
-            {
-                if ( constructorArguments.length != argTypes.length )
-                {
-                    throw new IllegalArgumentException(
-                        format( "wrong number of constructor arguments specified: %s instead of %s",
-                        constructorArguments.length, argTypes.length ) );
-                }
-                arraycopy( constructorArguments, 0, templateConstructorArguments, 0, constructorArguments.length );
-            }
-            convertTo( argTypes, templateConstructorArguments );
+            templateConstructorArguments =
+                createTemplateArguments( constructor, constructorArguments, digester.getConvertUtils() );
             this.digester = digester;
         }
 
@@ -142,7 +125,7 @@ public class ObjectCreateRule
             digester.pushParams( constructorArguments );
 
             final DeferredConstructionCallback callback =
-                new DeferredConstructionCallback( constructor, constructorArguments );
+                new DeferredConstructionCallback( constructor, constructorArguments, digester.getConvertUtils() );
 
             Object result;
 
@@ -185,6 +168,92 @@ public class ObjectCreateRule
         }
     }
 
+    /**
+     * Collects the constructor arguments and the properties of an object until it is created, in place of a proxy.
+     * Only the writable properties of the object class can be set, the rules setting a missing property behave as if
+     * they were setting it on the object itself.
+     */
+    private static final class PendingInstance
+        extends LazyDynaBean
+        implements PendingObject
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Constructor<?> constructor;
+
+        private final transient Object[] constructorArguments;
+
+        private final transient BeanUtilsBean beanUtils;
+
+        /**
+         * The constructor arguments the object is created with, null until it is created.
+         */
+        private transient Object[] createdArguments;
+
+        private transient Object instance;
+
+        PendingInstance( final LazyDynaClass dynaClass, final Constructor<?> constructor,
+                         final Object[] constructorArguments, final BeanUtilsBean beanUtils )
+        {
+            super( dynaClass );
+            this.constructor = constructor;
+            this.constructorArguments = constructorArguments;
+            this.beanUtils = beanUtils;
+        }
+
+        /**
+         * Returns the class of the instances collecting the properties of the given class, i.e. its writable ones.
+         */
+        static LazyDynaClass dynaClassOf( final Class<?> clazz, final PropertyUtilsBean propertyUtils )
+        {
+            final List<DynaProperty> properties = new ArrayList<DynaProperty>();
+            for ( final PropertyDescriptor descriptor : propertyUtils.getPropertyDescriptors( clazz ) )
+            {
+                if ( descriptor.getWriteMethod() != null && descriptor.getPropertyType() != null )
+                {
+                    properties.add( new DynaProperty( descriptor.getName(), descriptor.getPropertyType() ) );
+                }
+            }
+            final LazyDynaClass dynaClass =
+                new LazyDynaClass( clazz.getName(), properties.toArray( new DynaProperty[properties.size()] ) );
+            // report the missing properties, and reject them
+            dynaClass.setReturnNull( true );
+            dynaClass.setRestricted( true );
+            return dynaClass;
+        }
+
+        public Object create()
+            throws Exception
+        {
+            if ( instance == null )
+            {
+                createdArguments = constructorArguments.clone();
+                final Object[] arguments = constructorArguments.clone();
+                convertTo( beanUtils.getConvertUtils(), constructor.getParameterTypes(), arguments );
+                final Object created = constructor.newInstance( arguments );
+                for ( final Map.Entry<String, Object> property : values.entrySet() )
+                {
+                    beanUtils.setProperty( created, property.getKey(), property.getValue() );
+                }
+                instance = created;
+            }
+            return instance;
+        }
+
+        public boolean isCreatedWith( final Object[] arguments )
+        {
+            return constructorArguments == arguments;
+        }
+
+        /**
+         * Returns true if the constructor arguments have been supplied after the object was created.
+         */
+        boolean isSuppliedLate()
+        {
+            return !Arrays.equals( createdArguments, constructorArguments );
+        }
+    }
+
     // ----------------------------------------------------------- Constructors
 
     /**
@@ -271,6 +340,41 @@ public class ObjectCreateRule
      */
     private ProxyManager proxyManager;
 
+    /**
+     * Whether a proxy stands for the object until its constructor arguments are known.
+     */
+    private boolean useProxy = true;
+
+    /**
+     * The constructor invoked without proxy.
+     */
+    private Constructor<?> pendingConstructor;
+
+    /**
+     * The arguments of {@link #pendingConstructor} which are not supplied by a {@link CallParamRule}.
+     */
+    private Object[] pendingTemplateArguments;
+
+    /**
+     * The class of the instances standing for the objects created by {@link #pendingConstructor}.
+     */
+    private LazyDynaClass pendingDynaClass;
+
+    /**
+     * The instances standing for the objects created without proxy, for the elements being parsed.
+     */
+    private final ArrayStack<PendingInstance> pendingInstances = new ArrayStack<PendingInstance>();
+
+    /**
+     * The class of {@link #clazz}, with its constructor bound.
+     */
+    private ResolvedClass resolvedClass;
+
+    /**
+     * The classes named by the attribute or the class name of this rule.
+     */
+    private final ResolvedClass.Cache resolvedClasses = new ResolvedClass.Cache();
+
     // --------------------------------------------------------- Public Methods
 
     /**
@@ -308,6 +412,41 @@ public class ObjectCreateRule
         this.defaultConstructorArguments = constructorArguments;
     }
 
+    /**
+     * Returns whether a proxy stands for the object until its constructor arguments are known.
+     *
+     * @return true, if a proxy stands for the object until its constructor arguments are known
+     * @since 3.3
+     */
+    public boolean getUseProxy()
+    {
+        return useProxy;
+    }
+
+    /**
+     * Sets whether a proxy stands for the object until its constructor arguments are known, when constructor argument
+     * types are specified.
+     * <p>
+     * By default, a subclass of the object class is generated, and its instance is pushed onto the object stack in
+     * place of the object: the methods invoked on it are recorded and invoked again on the actual object once it is
+     * created, at the end of the element. Without proxy, no class is generated: a {@code DynaBean} collecting the
+     * writable properties set by the rules setting properties, such as {@link SetPropertiesRule} or
+     * {@link BeanPropertySetterRule}, is pushed onto the object stack instead. The object is created, with the
+     * constructor arguments supplied so far by the {@link CallParamRule}s and then the properties collected, as soon as
+     * another rule retrieves it from the stack, such as a {@link SetNextRule} of the same element or a
+     * {@link CallMethodRule} of a child element, and at the latest at the end of the element. A {@link CallParamRule}
+     * taking the body of the element supplies its argument as soon as the body is read, before any rule ends. This is
+     * lighter, but the constructor arguments must be supplied before the object is retrieved: an argument supplied
+     * afterwards, by a later child element for instance, is rejected with an error.
+     *
+     * @param useProxy true, if a proxy should stand for the object until its constructor arguments are known
+     * @since 3.3
+     */
+    public void setUseProxy( final boolean useProxy )
+    {
+        this.useProxy = useProxy;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -315,9 +454,9 @@ public class ObjectCreateRule
     public void begin( final String namespace, final String name, final Attributes attributes )
         throws Exception
     {
-        Class<?> clazz = this.clazz;
+        ResolvedClass resolved;
 
-        if ( clazz == null )
+        if ( this.clazz == null )
         {
             // Identify the name of the class to instantiate
             String realClassName = className;
@@ -337,8 +476,18 @@ public class ObjectCreateRule
             }
 
             // Instantiate the new object and push it on the context stack
-            clazz = getDigester().getClassLoader().loadClass( realClassName );
+            resolved = resolvedClasses.get( getDigester().getClassLoader(), realClassName );
+        }
+        else
+        {
+            resolved = resolvedClass;
+            if ( resolved == null || resolved.getType() != this.clazz )
+            {
+                resolved = ResolvedClass.forClass( this.clazz );
+                resolvedClass = resolved;
+            }
         }
+        final Class<?> clazz = resolved.getType();
         Object instance;
         if ( constructorArgumentTypes == null || constructorArgumentTypes.length == 0 )
         {
@@ -351,22 +500,31 @@ public class ObjectCreateRule
                                     clazz.getName() ) );
             }
 
-            instance = clazz.newInstance();
+            instance = resolved.newInstance();
+        }
+        else if ( !useProxy )
+        {
+            if ( pendingConstructor == null || pendingConstructor.getDeclaringClass() != clazz )
+            {
+                final Constructor<?> constructor = findConstructor( clazz );
+                pendingTemplateArguments = createTemplateArguments( constructor, defaultConstructorArguments,
+                                                                    getDigester().getConvertUtils() );
+                pendingDynaClass =
+                    PendingInstance.dynaClassOf( clazz, getDigester().getBeanUtils().getPropertyUtils() );
+                pendingConstructor = constructor;
+            }
+            final Object[] constructorArguments = pendingTemplateArguments.clone();
+            getDigester().pushParams( constructorArguments );
+            final PendingInstance pending = new PendingInstance( pendingDynaClass, pendingConstructor,
+                                                                 constructorArguments, getDigester().getBeanUtils() );
+            pendingInstances.push( pending );
+            instance = pending;
         }
         else
         {
-            if ( proxyManager == null )
+            if ( proxyManager == null || proxyManager.clazz != clazz )
             {
-                final Constructor<?> constructor = getAccessibleConstructor( clazz, constructorArgumentTypes );
-
-                if ( constructor == null )
-                {
-                    throw new SAXException(
-                                   format( "[ObjectCreateRule]{%s} Class '%s' does not have a construcor with types %s",
-                                           getDigester().getMatch(),
-                                           clazz.getName(),
-                                           Arrays.toString( constructorArgumentTypes ) ) );
-                }
+                final Constructor<?> constructor = findConstructor( clazz );
                 proxyManager = new ProxyManager( clazz, constructor, defaultConstructorArguments, getDigester() );
             }
             instance = proxyManager.createProxy();
@@ -381,6 +539,21 @@ public class ObjectCreateRule
     public void end( final String namespace, final String name )
         throws Exception
     {
+        if ( isPending() )
+        {
+            // the object takes the place of the instance standing for it, unless a rule has retrieved it already
+            final PendingInstance pending = pendingInstances.pop();
+            getDigester().popParams();
+            getDigester().createPending( 0 );
+            pending.create();
+            if ( pending.isSuppliedLate() )
+            {
+                throw new SAXException( format( "[ObjectCreateRule]{%s} Constructor arguments of '%s' supplied after "
+                                                    + "the object was created", getDigester().getMatch(),
+                                                pending.constructor.getDeclaringClass().getName() ) );
+            }
+        }
+
         final Object top = getDigester().pop();
 
         if ( proxyManager != null )
@@ -396,6 +569,16 @@ public class ObjectCreateRule
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void finish()
+        throws Exception
+    {
+        pendingInstances.clear();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -405,7 +588,71 @@ public class ObjectCreateRule
         return format( "ObjectCreateRule[className=%s, attributeName=%s]", className, attributeName );
     }
 
-    private static void convertTo( final Class<?>[] types, final Object[] array )
+    /**
+     * Returns true if objects are created without proxy once their constructor arguments are known.
+     */
+    private boolean isPending()
+    {
+        return !useProxy && constructorArgumentTypes != null && constructorArgumentTypes.length > 0;
+    }
+
+    private Constructor<?> findConstructor( final Class<?> clazz )
+        throws SAXException
+    {
+        final Constructor<?> constructor = getAccessibleConstructor( clazz, constructorArgumentTypes );
+
+        if ( constructor == null )
+        {
+            throw new SAXException(
+                           format( "[ObjectCreateRule]{%s} Class '%s' does not have a construcor with types %s",
+                                   getDigester().getMatch(),
+                                   clazz.getName(),
+                                   Arrays.toString( constructorArgumentTypes ) ) );
+        }
+        return constructor;
+    }
+
+    /**
+     * Returns the constructor arguments used when they are not supplied by a {@link CallParamRule}.
+     */
+    private static Object[] createTemplateArguments( final Constructor<?> constructor,
+                                                     final Object[] constructorArguments,
+                                                     final ConvertUtilsBean convertUtils )
+    {
+        final Class<?>[] argTypes = constructor.getParameterTypes();
+        final Object[] templateConstructorArguments = new Object[argTypes.length];
+        if ( constructorArguments == null )
+        {
+            for ( int i = 0; i < templateConstructorArguments.length; i++ )
+            {
+                if ( argTypes[i].equals( boolean.class ) )
+                {
+                    templateConstructorArguments[i] = Boolean.FALSE;
+                    continue;
+                }
+                if ( argTypes[i].isPrimitive() )
+                {
+                    templateConstructorArguments[i] = convertUtils.convert( "0", argTypes[i] );
+                    continue;
+                }
+                templateConstructorArguments[i] = null;
+            }
+        }
+        else
+        {
+            if ( constructorArguments.length != argTypes.length )
+            {
+                throw new IllegalArgumentException(
+                    format( "wrong number of constructor arguments specified: %s instead of %s",
+                    constructorArguments.length, argTypes.length ) );
+            }
+            arraycopy( constructorArguments, 0, templateConstructorArguments, 0, constructorArguments.length );
+        }
+        convertTo( convertUtils, argTypes, templateConstructorArguments );
+        return templateConstructorArguments;
+    }
+
+    private static void convertTo( final ConvertUtilsBean convertUtils, final Class<?>[] types, final Object[] array )
     {
         if ( array.length != types.length )
         {
@@ -418,7 +665,7 @@ public class ObjectCreateRule
             if ( array[i] == null
                     || ( array[i] instanceof String && !String.class.isAssignableFrom( types[i] ) ) )
             {
-                array[i] = convert( (String) array[i], types[i] );
+                array[i] = convertUtils.convert( (String) array[i], types[i] );
             }
         }
     }
@@ -0,0 +1,556 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static java.lang.String.format;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import org.apache.commons.beanutils.ConvertUtilsBean;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * <p>
+ * Rule implementation that digests the records of a document in parallel, rather than on the parsing thread.
+ * </p>
+ * <p>
+ * The SAX events of the subtree of each element matched by this rule are captured compactly on the parsing thread,
+ * then handed to an {@link Executor}. Each worker thread replays the captured events to a Digester of its own while
+ * digesting the record, loaded with the given record rules and configured like the Digester this rule is added to,
+ * and the record built, i.e. the root object of that Digester, is handed to a {@link RecordConsumer}. The Digester
+ * instances of the workers are reused for the records of a document, and released once the document ends. The rules
+ * of the ancestors of the record are not fired by the workers, and the record rules must not refer to objects built
+ * outside the record. Conversely, the rules of the Digester this rule is added to are not fired within the records,
+ * so the rules building the records should only be given to this rule.
+ * </p>
+ * <p>
+ * Records are handed to the consumer one at a time, in document order unless {@link #setOrdered(boolean) ordering}
+ * has been disabled. The parsing thread blocks when {@link #getMaxPending() too many} records are pending, and the
+ * {@code finish} event of this rule waits for all the records of the document to be consumed. The first error raised
+ * while digesting or consuming a record {@link Digester#stop() stops} the parse, and is thrown by the parse method. If
+ * the parse fails otherwise, the records not consumed yet are given up: they are not handed to the consumer once the
+ * parse method has thrown.
+ * </p>
+ *
+ * @param <T> the type of the records
+ * @since 3.3
+ */
+public class ParallelRecordRule<T>
+    extends Rule
+{
+
+    /**
+     * Completes the records the worker rules did not build any object for.
+     */
+    private static final Object NO_RECORD = new Object();
+
+    private final Class<T> recordType;
+
+    private final RuleSet recordRules;
+
+    private final Executor executor;
+
+    private final RecordConsumer<? super T> consumer;
+
+    private boolean ordered = true;
+
+    private int maxPending = 64;
+
+    private Semaphore pending = new Semaphore( maxPending );
+
+    /**
+     * The records being captured, null if none.
+     */
+    private RecordBatch batch;
+
+    /**
+     * The records of the current document, null if no record of the current document has been captured yet.
+     */
+    private Records records;
+
+    /**
+     * Construct a rule digesting the records in parallel.
+     *
+     * @param recordType the type of the records
+     * @param recordRules the rules building the records, with patterns matching the whole path of the elements
+     * @param executor the executor the records are digested with
+     * @param consumer the consumer the records are handed to
+     */
+    public ParallelRecordRule( final Class<T> recordType, final RuleSet recordRules, final Executor executor,
+                               final RecordConsumer<? super T> consumer )
+    {
+        if ( recordType == null )
+        {
+            throw new IllegalArgumentException( "Parameter 'recordType' must not be null" );
+        }
+        if ( recordRules == null )
+        {
+            throw new IllegalArgumentException( "Parameter 'recordRules' must not be null" );
+        }
+        if ( executor == null )
+        {
+            throw new IllegalArgumentException( "Parameter 'executor' must not be null" );
+        }
+        if ( consumer == null )
+        {
+            throw new IllegalArgumentException( "Parameter 'consumer' must not be null" );
+        }
+        this.recordType = recordType;
+        this.recordRules = recordRules;
+        this.executor = executor;
+        this.consumer = consumer;
+    }
+
+    /**
+     * Returns true if the records are handed to the consumer in document order.
+     *
+     * @return true if the records are handed to the consumer in document order
+     */
+    public boolean isOrdered()
+    {
+        return ordered;
+    }
+
+    /**
+     * Sets whether the records are handed to the consumer in document order, or as soon as they are built.
+     *
+     * @param ordered true if the records are handed to the consumer in document order, the default
+     */
+    public void setOrdered( final boolean ordered )
+    {
+        this.ordered = ordered;
+    }
+
+    /**
+     * Returns the maximum number of records captured but not consumed yet.
+     *
+     * @return the maximum number of records captured but not consumed yet
+     */
+    public int getMaxPending()
+    {
+        return maxPending;
+    }
+
+    /**
+     * Sets the maximum number of records captured but not consumed yet, 64 by default. It should not be changed while
+     * a document is being parsed.
+     *
+     * @param maxPending the maximum number of records captured but not consumed yet
+     */
+    public void setMaxPending( final int maxPending )
+    {
+        if ( maxPending < 1 )
+        {
+            throw new IllegalArgumentException( "The maximum number of pending records must be positive, found "
+                + maxPending );
+        }
+        this.maxPending = maxPending;
+        this.pending = new Semaphore( maxPending );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void begin( final String namespace, final String name, final Attributes attributes )
+        throws Exception
+    {
+        final Digester digester = getDigester();
+        if ( records == null )
+        {
+            final Records started = new Records( digester );
+            records = started;
+            digester.onAbort( new Runnable()
+            {
+
+                @Override
+                public void run()
+                {
+                    cancel( started );
+                }
+
+            } );
+        }
+
+        final String match = digester.getMatch();
+        final int slash = match.lastIndexOf( '/' );
+        final String[] context = slash < 0 ? new String[0] : match.substring( 0, slash ).split( "/" );
+        final Map<String, String> namespaces =
+            digester.getNamespaceAware() ? digester.getCurrentNamespaces() : Collections.<String, String> emptyMap();
+
+        batch = new RecordBatch( context, namespaces );
+        // the qualified name of the record element is not known, its name is reported instead
+        batch.startElement( namespace, name, name, attributes );
+        digester.setCustomContentHandler( new Capture( batch, digester.getCustomContentHandler() ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void end( final String namespace, final String name )
+        throws Exception
+    {
+        final RecordBatch captured = batch;
+        batch = null;
+        if ( captured == null )
+        {
+            return;
+        }
+
+        final Records current = records;
+        pending.acquire();
+        final long sequence = current.submitted++;
+        try
+        {
+            executor.execute( new Runnable()
+            {
+
+                @Override
+                public void run()
+                {
+                    Object result;
+                    try
+                    {
+                        result = digest( current, captured );
+                    }
+                    catch ( final Throwable t )
+                    {
+                        result = new Failure( t );
+                    }
+                    complete( current, sequence, result );
+                }
+
+            } );
+        }
+        catch ( final RejectedExecutionException e )
+        {
+            // the record has not been submitted
+            current.submitted--;
+            pending.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for all the records to be consumed, and throws the first error raised while digesting or consuming them.
+     */
+    @Override
+    public void finish()
+        throws Exception
+    {
+        final Records finished = records;
+        records = null;
+        if ( finished == null )
+        {
+            return;
+        }
+
+        pending.acquire( maxPending );
+        pending.release( maxPending );
+
+        final Throwable error;
+        synchronized ( finished )
+        {
+            error = finished.failure;
+            finished.workers.clear();
+        }
+        if ( error instanceof Error )
+        {
+            throw (Error) error;
+        }
+        if ( error != null )
+        {
+            throw (Exception) error;
+        }
+    }
+
+    /**
+     * Digests the given record of the given document with a Digester no other worker is using.
+     */
+    private Object digest( final Records owner, final RecordBatch captured )
+        throws SAXException
+    {
+        Digester worker;
+        synchronized ( owner )
+        {
+            worker = owner.workers.poll();
+        }
+        if ( worker == null )
+        {
+            worker = new Digester();
+            worker.setClassLoader( owner.classLoader );
+            worker.setConvertUtils( owner.convertUtils );
+            worker.setIntrospectionCache( owner.introspectionCache );
+            worker.setSubstitutor( owner.substitutor );
+            worker.addRuleSet( recordRules );
+        }
+
+        try
+        {
+            captured.replay( worker );
+        }
+        finally
+        {
+            worker.clear();
+        }
+        final Object record = worker.getRoot();
+        worker.resetRoot();
+        synchronized ( owner )
+        {
+            // the Digester is only reused if the record was digested, and the document did not end yet
+            if ( !owner.cancelled )
+            {
+                owner.workers.push( worker );
+            }
+        }
+
+        if ( record == null )
+        {
+            return NO_RECORD;
+        }
+        if ( !recordType.isInstance( record ) )
+        {
+            throw new SAXException( format( "[%s] Expected a record of type %s, found %s",
+                                            getClass().getSimpleName(), recordType.getName(), record ) );
+        }
+        return record;
+    }
+
+    /**
+     * Delivers the results of the records completed in order, or as soon as they are completed.
+     */
+    private void complete( final Records owner, final long sequence, final Object result )
+    {
+        synchronized ( owner )
+        {
+            if ( owner.cancelled )
+            {
+                pending.release();
+                return;
+            }
+
+            if ( !ordered )
+            {
+                owner.delivered++;
+                deliver( owner, result );
+                return;
+            }
+
+            owner.completed.put( sequence, result );
+            Object next;
+            while ( ( next = owner.completed.remove( owner.delivered ) ) != null )
+            {
+                owner.delivered++;
+                deliver( owner, next );
+            }
+        }
+    }
+
+    private void deliver( final Records owner, final Object result )
+    {
+        try
+        {
+            if ( owner.failure != null || result == NO_RECORD )
+            {
+                return;
+            }
+            if ( result instanceof Failure )
+            {
+                owner.failure = ( (Failure) result ).cause;
+                getDigester().stop();
+                return;
+            }
+            consumer.consume( recordType.cast( result ) );
+        }
+        catch ( final Exception e )
+        {
+            owner.failure = e;
+            getDigester().stop();
+        }
+        finally
+        {
+            pending.release();
+        }
+    }
+
+    /**
+     * Gives up the records of a document that did not end normally: the records still being digested are not handed
+     * to the consumer, and the state of the rule is ready for the next document.
+     */
+    private void cancel( final Records cancelled )
+    {
+        synchronized ( cancelled )
+        {
+            cancelled.cancelled = true;
+            // the records completed out of order will never be delivered
+            pending.release( cancelled.completed.size() );
+            cancelled.completed.clear();
+            cancelled.workers.clear();
+        }
+        if ( records == cancelled )
+        {
+            records = null;
+            batch = null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return format( "ParallelRecordRule[recordType=%s, ordered=%s, maxPending=%s]", recordType.getName(), ordered,
+                       maxPending );
+    }
+
+    /**
+     * Captures the SAX events of the subtree of a record, then gives back the control to the Digester.
+     */
+    private final class Capture
+        extends DefaultHandler
+    {
+
+        private final RecordBatch batch;
+
+        private final ContentHandler oldContentHandler;
+
+        private int depth;
+
+        Capture( final RecordBatch batch, final ContentHandler oldContentHandler )
+        {
+            this.batch = batch;
+            this.oldContentHandler = oldContentHandler;
+        }
+
+        @Override
+        public void startElement( final String uri, final String localName, final String qName,
+                                  final Attributes attributes )
+        {
+            batch.startElement( uri, localName, qName, attributes );
+            depth++;
+        }
+
+        @Override
+        public void characters( final char[] ch, final int start, final int length )
+        {
+            batch.characters( ch, start, length );
+        }
+
+        @Override
+        public void endElement( final String uri, final String localName, final String qName )
+            throws SAXException
+        {
+            batch.endElement();
+            if ( depth-- == 0 )
+            {
+                // end of the record element, let the Digester fire the end of this rule
+                getDigester().setCustomContentHandler( oldContentHandler );
+                getDigester().endElement( uri, localName, qName );
+            }
+        }
+
+    }
+
+    /**
+     * The records of a document handed to the workers, guarded by itself except its immutable configuration and
+     * {@link #submitted}, only accessed by the parsing thread.
+     */
+    private static final class Records
+    {
+
+        /**
+         * The configuration of the Digester this rule was added to when the document started, copied to the Digester
+         * of the workers.
+         */
+        final ClassLoader classLoader;
+
+        final ConvertUtilsBean convertUtils;
+
+        final IntrospectionCache introspectionCache;
+
+        final Substitutor substitutor;
+
+        /**
+         * The Digester instances of the workers not digesting a record.
+         */
+        final ArrayDeque<Digester> workers = new ArrayDeque<Digester>();
+
+        /**
+         * The number of records submitted to the workers.
+         */
+        long submitted;
+
+        /**
+         * The results of the records completed by the workers but not delivered yet, keyed by submission number.
+         */
+        final Map<Long, Object> completed = new HashMap<Long, Object>();
+
+        /**
+         * The number of records delivered to the consumer.
+         */
+        long delivered;
+
+        /**
+         * The first error raised while digesting or consuming a record.
+         */
+        Throwable failure;
+
+        /**
+         * Whether the document did not end normally, so the remaining records must not be delivered.
+         */
+        boolean cancelled;
+
+        Records( final Digester digester )
+        {
+            classLoader = digester.getClassLoader();
+            convertUtils = digester.getConvertUtils();
+            introspectionCache = digester.getIntrospectionCache();
+            substitutor = digester.getSubstitutor();
+        }
+
+    }
+
+    /**
+     * Wraps the error raised while digesting a record.
+     */
+    private static final class Failure
+    {
+
+        final Throwable cause;
+
+        Failure( final Throwable cause )
+        {
+            this.cause = cause;
+        }
+
+    }
+
+}
@@ -0,0 +1,785 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.xml.sax.Attributes;
+
+/**
+ * <p>
+ * {@link Rules} implementation that supports the same matching policy as {@link RulesBase} (exact patterns plus
+ * leading {@code *&#47;} wildcards, the longest wildcard winning), but compiles the registered patterns into an
+ * automaton over element names.
+ * </p>
+ * <p>
+ * Exact patterns are stored in a trie of element names, wildcard patterns in an Aho-Corasick trie of their trailing
+ * element names. Each open element is described by a state (a pair of nodes, one in each trie) and the state of a
+ * child element is obtained from the state of its parent with a single transition lookup. Transitions are computed
+ * lazily and cached, so that the cost of matching an element no longer depends on the depth of the document nor on
+ * the number of registered wildcard patterns.
+ * </p>
+ * <p>
+ * The automaton is (re)compiled the first time it is used after rules have been added or cleared. States obtained
+ * before a recompilation are recognized as stale and rejected by {@link #nextState(int, String)}.
+ * </p>
+ * <p>
+ * The automaton refers to the rules by their registration order only, so it can be shared: an instance created with
+ * {@link #PathAutomatonRules(PathAutomatonRules)} reuses the automaton of its template, rather than compiling its own,
+ * as long as the same patterns and namespace URIs are registered in the same order. Shared automata are thread-safe,
+ * so many Digester instances parsing concurrently can match their own rule instances with a single automaton.
+ * </p>
+ *
+ * @since 3.3
+ */
+public class PathAutomatonRules
+    extends AbstractRulesImpl
+    implements IncrementalRules
+{
+
+    // ----------------------------------------------------- Constants
+
+    /**
+     * Number of bits of a state dedicated to the index of the state in the current automaton, the remaining bits
+     * identify the compilation the state belongs to.
+     */
+    private static final int STATE_INDEX_BITS = 24;
+
+    private static final int STATE_INDEX_MASK = ( 1 << STATE_INDEX_BITS ) - 1;
+
+    private static final int GENERATION_MASK = 0x7F;
+
+    /**
+     * The symbol all the element names that do not appear in any pattern are mapped to.
+     */
+    private static final int OTHER_SYMBOL = 0;
+
+    private static final int[] NO_RULES = new int[0];
+
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * The set of registered Rule instances, in the order that they were originally registered.
+     */
+    private final ArrayList<Rule> rules = new ArrayList<Rule>();
+
+    /**
+     * The patterns of the registered Rule instances, in the order that they were originally registered.
+     */
+    private final ArrayList<String> patterns = new ArrayList<String>();
+
+    /**
+     * The automaton compiled by the template this instance was created from, if any.
+     */
+    private final Automaton template;
+
+    /**
+     * The compiled automaton, {@code null} if the registered rules changed since the last compilation.
+     */
+    private Automaton automaton;
+
+    /**
+     * Counts the compilations, used to detect stale states.
+     */
+    private int generation = 0;
+
+    /**
+     * The rules matching each state of the current automaton regardless of namespace URI, indexed by state.
+     */
+    private final ArrayList<List<Rule>> matches = new ArrayList<List<Rule>>();
+
+    /**
+     * The rules matching a namespace URI, keyed by the indexes of the rules returned by the automaton.
+     */
+    private final IdentityHashMap<int[], List<Rule>> namespaceMatches = new IdentityHashMap<int[], List<Rule>>();
+
+    // ----------------------------------------------------------- Constructors
+
+    /**
+     * Creates an instance that compiles its own automaton.
+     */
+    public PathAutomatonRules()
+    {
+        this.template = null;
+    }
+
+    /**
+     * Creates an instance that reuses the automaton of the given template, provided that the same patterns are
+     * registered with the same namespace URIs in the same order than in the template, and compiles its own automaton
+     * otherwise.
+     * <p>
+     * The template automaton is compiled by this constructor if needed, so the first instance should be created before
+     * the template is shared between threads. Rules registered in the template afterwards are not taken into account.
+     *
+     * @param template the instance whose automaton is reused
+     */
+    public PathAutomatonRules( final PathAutomatonRules template )
+    {
+        this.template = template.getAutomaton();
+    }
+
+    // ------------------------------------------------------------- Properties
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDigester( final Digester digester )
+    {
+        super.setDigester( digester );
+        for ( final Rule rule : rules )
+        {
+            rule.setDigester( digester );
+        }
+    }
+
+    // --------------------------------------------------------- Public Methods
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void registerRule( String pattern, final Rule rule )
+    {
+        // to help users who accidently add '/' to the end of their patterns
+        final int patternLength = pattern.length();
+        if ( patternLength > 1 && pattern.endsWith( "/" ) )
+        {
+            pattern = pattern.substring( 0, patternLength - 1 );
+        }
+
+        patterns.add( pattern );
+        rules.add( rule );
+        automaton = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear()
+    {
+        patterns.clear();
+        rules.clear();
+        automaton = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Rule> match( final String namespaceURI, final String pattern, final String name,
+                             final Attributes attributes )
+    {
+        return match( namespaceURI, stateOf( pattern ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Rule> rules()
+    {
+        return ( this.rules );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getInitialState()
+    {
+        return toState( getAutomaton().initialState );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int nextState( final int state, final String name )
+    {
+        final Automaton current = getAutomaton();
+        if ( !owns( current, state ) )
+        {
+            return UNKNOWN_STATE;
+        }
+        return toState( current.nextState( state & STATE_INDEX_MASK, name ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Rule> match( final String namespaceURI, final int state )
+    {
+        final Automaton current = getAutomaton();
+        if ( !owns( current, state ) )
+        {
+            throw new IllegalArgumentException( "State " + state + " does not belong to the current automaton" );
+        }
+        final int index = state & STATE_INDEX_MASK;
+
+        if ( ( namespaceURI == null ) || ( namespaceURI.isEmpty() ) )
+        {
+            while ( matches.size() <= index )
+            {
+                matches.add( null );
+            }
+            List<Rule> matched = matches.get( index );
+            if ( matched == null )
+            {
+                matched = toRules( current.match( index, null ) );
+                matches.set( index, matched );
+            }
+            return matched;
+        }
+
+        final int[] indexes = current.match( index, namespaceURI );
+        List<Rule> matched = namespaceMatches.get( indexes );
+        if ( matched == null )
+        {
+            matched = toRules( indexes );
+            namespaceMatches.put( indexes, matched );
+        }
+        return matched;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasMatchesBelow( final int state )
+    {
+        final Automaton current = getAutomaton();
+        if ( !owns( current, state ) )
+        {
+            return true;
+        }
+        return current.hasMatchesBelow( state & STATE_INDEX_MASK );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasMatchesBelow( final String pattern )
+    {
+        return hasMatchesBelow( stateOf( pattern ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean startsWildcardPattern( final String name )
+    {
+        return getAutomaton().startsWildcardPattern( name );
+    }
+
+    // ------------------------------------------------------ Private Methods
+
+    /**
+     * Returns the state reached by entering, from the initial state, the elements of the given slash-separated path.
+     */
+    private int stateOf( final String pattern )
+    {
+        int state = getInitialState();
+        if ( !pattern.isEmpty() )
+        {
+            int start = 0;
+            int slash;
+            while ( ( slash = pattern.indexOf( '/', start ) ) >= 0 )
+            {
+                state = nextState( state, pattern.substring( start, slash ) );
+                start = slash + 1;
+            }
+            state = nextState( state, pattern.substring( start ) );
+        }
+        return state;
+    }
+
+    /**
+     * Returns the compiled automaton, reusing the template one or compiling the registered patterns if needed.
+     *
+     * @return the compiled automaton
+     */
+    private Automaton getAutomaton()
+    {
+        if ( automaton == null )
+        {
+            generation = ( generation + 1 ) & GENERATION_MASK;
+            matches.clear();
+            namespaceMatches.clear();
+            if ( template != null && template.accepts( patterns, rules ) )
+            {
+                automaton = template;
+            }
+            else
+            {
+                automaton = new Automaton( patterns, rules );
+            }
+        }
+        return automaton;
+    }
+
+    private boolean owns( final Automaton current, final int state )
+    {
+        return state >= 0 && ( state >>> STATE_INDEX_BITS ) == generation
+            && ( state & STATE_INDEX_MASK ) < current.stateCount;
+    }
+
+    private int toState( final int index )
+    {
+        return ( generation << STATE_INDEX_BITS ) | index;
+    }
+
+    private List<Rule> toRules( final int[] indexes )
+    {
+        if ( indexes.length == 0 )
+        {
+            return Collections.emptyList();
+        }
+        final ArrayList<Rule> results = new ArrayList<Rule>( indexes.length );
+        for ( final int index : indexes )
+        {
+            results.add( rules.get( index ) );
+        }
+        return results;
+    }
+
+    // ------------------------------------------------------ Automaton
+
+    /**
+     * The compiled form of the registered patterns, in which rules are identified by their registration order.
+     * <p>
+     * Everything but the states and their transitions is immutable once constructed. States are only added while
+     * holding the automaton lock, and are published through the volatile transition tables, so that matching is
+     * thread-safe without locking once the transitions used by a document have been computed.
+     */
+    private static final class Automaton
+    {
+
+        /**
+         * The registered patterns, indexed by rule.
+         */
+        private final String[] patterns;
+
+        /**
+         * The namespace URIs of the registered rules.
+         */
+        private final String[] namespaceURIs;
+
+        /**
+         * Maps each element name appearing in a pattern to a symbol greater than {@link #OTHER_SYMBOL}.
+         */
+        private final Map<String, Integer> symbols = new HashMap<String, Integer>();
+
+        private final TrieNode exactRoot = new TrieNode();
+
+        private final WildcardNode wildcardRoot = new WildcardNode();
+
+        private volatile State[] states = new State[16];
+
+        private volatile int stateCount = 0;
+
+        /**
+         * Index of the states, keyed by the ids of their nodes in the two tries. Guarded by the automaton lock.
+         */
+        private final Map<Long, Integer> stateIndex = new HashMap<Long, Integer>();
+
+        private final int initialState;
+
+        private int nodeCount = 0;
+
+        Automaton( final List<String> patterns, final List<Rule> rules )
+        {
+            this.patterns = patterns.toArray( new String[patterns.size()] );
+            this.namespaceURIs = new String[rules.size()];
+            final Map<String, List<Integer>> rulesByPattern = new HashMap<String, List<Integer>>();
+            for ( int i = 0; i < this.patterns.length; i++ )
+            {
+                namespaceURIs[i] = rules.get( i ).getNamespaceURI();
+                List<Integer> indexes = rulesByPattern.get( this.patterns[i] );
+                if ( indexes == null )
+                {
+                    indexes = new ArrayList<Integer>();
+                    rulesByPattern.put( this.patterns[i], indexes );
+                }
+                indexes.add( i );
+            }
+
+            exactRoot.id = nodeCount++;
+            wildcardRoot.id = nodeCount++;
+
+            for ( final Map.Entry<String, List<Integer>> entry : rulesByPattern.entrySet() )
+            {
+                final String pattern = entry.getKey();
+                final int[] indexes = new int[entry.getValue().size()];
+                for ( int i = 0; i < indexes.length; i++ )
+                {
+                    indexes[i] = entry.getValue().get( i );
+                }
+
+                // every pattern, wildcards included, is an exact pattern as well
+                TrieNode node = exactRoot;
+                if ( !pattern.isEmpty() )
+                {
+                    for ( final String name : pattern.split( "/", -1 ) )
+                    {
+                        node = node.child( name, this );
+                    }
+                }
+                node.rules = indexes;
+
+                if ( pattern.startsWith( "*/" ) && pattern.length() > 2 )
+                {
+                    WildcardNode wildcardNode = wildcardRoot;
+                    for ( final String name : pattern.substring( 2 ).split( "/", -1 ) )
+                    {
+                        wildcardNode = wildcardNode.child( name, this );
+                    }
+                    wildcardNode.rules = indexes;
+                }
+            }
+
+            linkWildcards();
+            synchronized ( this )
+            {
+                initialState = stateFor( exactRoot, wildcardRoot );
+            }
+        }
+
+        int symbol( final String name )
+        {
+            Integer symbol = symbols.get( name );
+            if ( symbol == null )
+            {
+                symbol = symbols.size() + 1;
+                symbols.put( name, symbol );
+            }
+            return symbol;
+        }
+
+        /**
+         * Checks whether the given rules are registered with the same patterns, in the same order, than the rules
+         * this automaton was compiled from.
+         */
+        boolean accepts( final List<String> registeredPatterns, final List<Rule> rules )
+        {
+            if ( registeredPatterns.size() != patterns.length )
+            {
+                return false;
+            }
+            for ( int i = 0; i < patterns.length; i++ )
+            {
+                final String namespaceURI = rules.get( i ).getNamespaceURI();
+                if ( !patterns[i].equals( registeredPatterns.get( i ) )
+                    || ( namespaceURI == null ? namespaceURIs[i] != null : !namespaceURI.equals( namespaceURIs[i] ) ) )
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int nextState( final int index, final String name )
+        {
+            final Integer symbol = symbols.get( name );
+            final int s = symbol == null ? OTHER_SYMBOL : symbol;
+
+            final State state = states[index];
+            // transitions are stored plus one, so that zero means not computed yet
+            final int next = state.next.get( s );
+            if ( next != 0 )
+            {
+                return next - 1;
+            }
+
+            synchronized ( this )
+            {
+                int computed = state.next.get( s );
+                if ( computed == 0 )
+                {
+                    final TrieNode exact = state.exact == null ? null : state.exact.children.get( name );
+                    WildcardNode wildcard = state.wildcard;
+                    while ( wildcard != wildcardRoot && !wildcard.children.containsKey( name ) )
+                    {
+                        wildcard = wildcard.failure;
+                    }
+                    final WildcardNode child = wildcard.children.get( name );
+                    computed = stateFor( exact, child == null ? wildcardRoot : child ) + 1;
+                    state.next.set( s, computed );
+                }
+                return computed - 1;
+            }
+        }
+
+        int[] match( final int index, final String namespaceURI )
+        {
+            final State state = states[index];
+            if ( ( namespaceURI == null ) || ( namespaceURI.isEmpty() ) )
+            {
+                return state.matches;
+            }
+
+            int[] matched = state.matchesByNamespace.get( namespaceURI );
+            if ( matched == null )
+            {
+                matched = NO_RULES;
+                if ( state.exact != null && state.exact.rules != null )
+                {
+                    matched = filter( namespaceURI, state.exact.rules );
+                }
+                if ( matched.length == 0 && state.wildcard.longest != null )
+                {
+                    matched = filter( namespaceURI, state.wildcard.longest );
+                }
+                state.matchesByNamespace.putIfAbsent( namespaceURI, matched );
+                matched = state.matchesByNamespace.get( namespaceURI );
+            }
+            return matched;
+        }
+
+        boolean hasMatchesBelow( final int index )
+        {
+            return states[index].matchesBelow;
+        }
+
+        boolean startsWildcardPattern( final String name )
+        {
+            return wildcardRoot.children.containsKey( name );
+        }
+
+        /**
+         * Selects only the rules that match on the specified namespace URI (if any).
+         *
+         * @param namespaceURI Namespace URI to match, not empty
+         * @param indexes the indexes of the rules to filter
+         * @return the indexes of the rules that match on the specified namespace URI
+         */
+        private int[] filter( final String namespaceURI, final int[] indexes )
+        {
+            final int[] results = new int[indexes.length];
+            int count = 0;
+            for ( final int index : indexes )
+            {
+                if ( ( namespaceURI.equals( namespaceURIs[index] ) ) || ( namespaceURIs[index] == null ) )
+                {
+                    results[count++] = index;
+                }
+            }
+            return count == 0 ? NO_RULES : Arrays.copyOf( results, count );
+        }
+
+        /**
+         * Computes the failure links of the wildcard trie, breadth first, and the longest wildcard pattern that
+         * matches on each node.
+         */
+        private void linkWildcards()
+        {
+            final LinkedList<WildcardNode> queue = new LinkedList<WildcardNode>();
+            for ( final WildcardNode child : wildcardRoot.children.values() )
+            {
+                child.failure = wildcardRoot;
+                queue.add( child );
+            }
+            while ( !queue.isEmpty() )
+            {
+                final WildcardNode node = queue.removeFirst();
+                // failure chains lead to shorter suffixes, so the node's own pattern is the longest
+                node.longest = node.rules != null ? node.rules : node.failure.longest;
+                for ( final Map.Entry<String, WildcardNode> entry : node.children.entrySet() )
+                {
+                    WildcardNode failure = node.failure;
+                    while ( failure != wildcardRoot && !failure.children.containsKey( entry.getKey() ) )
+                    {
+                        failure = failure.failure;
+                    }
+                    final WildcardNode target = failure.children.get( entry.getKey() );
+                    entry.getValue().failure = target == null ? wildcardRoot : target;
+                    queue.add( entry.getValue() );
+                }
+            }
+        }
+
+        /**
+         * Returns the index of the state for the given pair of nodes, creating it if needed. Must be called while
+         * holding the automaton lock.
+         */
+        private int stateFor( final TrieNode exact, final WildcardNode wildcard )
+        {
+            final long key = ( (long) ( exact == null ? -1 : exact.id ) << 32 ) | wildcard.id;
+            Integer index = stateIndex.get( key );
+            if ( index == null )
+            {
+                if ( stateCount > STATE_INDEX_MASK )
+                {
+                    throw new IllegalStateException( "Too many states in the path automaton" );
+                }
+                index = stateCount;
+                State[] current = states;
+                if ( index == current.length )
+                {
+                    current = Arrays.copyOf( current, index * 2 );
+                }
+                current[index] = new State( exact, wildcard, symbols.size() + 1 );
+                states = current;
+                stateCount = index + 1;
+                stateIndex.put( key, index );
+            }
+            return index;
+        }
+
+    }
+
+    /**
+     * A node of the trie of exact patterns.
+     */
+    private static final class TrieNode
+    {
+
+        private int id;
+
+        private final Map<String, TrieNode> children = new HashMap<String, TrieNode>();
+
+        private int[] rules;
+
+        TrieNode child( final String name, final Automaton automaton )
+        {
+            automaton.symbol( name );
+            TrieNode child = children.get( name );
+            if ( child == null )
+            {
+                child = new TrieNode();
+                child.id = automaton.nodeCount++;
+                children.put( name, child );
+            }
+            return child;
+        }
+
+    }
+
+    /**
+     * A node of the Aho-Corasick trie of wildcard patterns.
+     */
+    private static final class WildcardNode
+    {
+
+        private int id;
+
+        private final Map<String, WildcardNode> children = new HashMap<String, WildcardNode>();
+
+        private WildcardNode failure;
+
+        private int[] rules;
+
+        /**
+         * The rules of the longest wildcard pattern that matches when this node is reached.
+         */
+        private int[] longest;
+
+        WildcardNode child( final String name, final Automaton automaton )
+        {
+            automaton.symbol( name );
+            WildcardNode child = children.get( name );
+            if ( child == null )
+            {
+                child = new WildcardNode();
+                child.id = automaton.nodeCount++;
+                children.put( name, child );
+            }
+            return child;
+        }
+
+    }
+
+    /**
+     * A state of the automaton, that is the position reached in both tries.
+     */
+    private static final class State
+    {
+
+        /**
+         * The exact trie node, {@code null} if no exact pattern can match anymore.
+         */
+        private final TrieNode exact;
+
+        private final WildcardNode wildcard;
+
+        /**
+         * The cached transitions plus one, indexed by symbol.
+         */
+        private final AtomicIntegerArray next;
+
+        /**
+         * The rules matching regardless of namespace URI.
+         */
+        private final int[] matches;
+
+        /**
+         * The cached matches, keyed by namespace URI.
+         */
+        private final ConcurrentHashMap<String, int[]> matchesByNamespace = new ConcurrentHashMap<String, int[]>( 4 );
+
+        /**
+         * Whether an exact pattern continues below this state, or a wildcard pattern is partially matched by the
+         * trailing element names of this state and may complete below it.
+         */
+        private final boolean matchesBelow;
+
+        State( final TrieNode exact, final WildcardNode wildcard, final int symbolCount )
+        {
+            this.exact = exact;
+            this.wildcard = wildcard;
+            this.next = new AtomicIntegerArray( symbolCount );
+            if ( exact != null && exact.rules != null )
+            {
+                matches = exact.rules;
+            }
+            else if ( wildcard.longest != null )
+            {
+                matches = wildcard.longest;
+            }
+            else
+            {
+                matches = NO_RULES;
+            }
+
+            boolean below = exact != null && !exact.children.isEmpty();
+            // the failure chain lists every wildcard suffix partially matched by the trailing element names
+            for ( WildcardNode node = wildcard; !below && node.failure != null; node = node.failure )
+            {
+                below = !node.children.isEmpty();
+            }
+            matchesBelow = below;
+        }
+
+    }
+
+}
@@ -0,0 +1,51 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Stands on the object stack of a {@link Digester} for an object that is not created yet. The {@link Digester} creates
+ * the object, and puts it in place of this instance, as soon as it is retrieved from the stack through
+ * {@link Digester#peek()}, {@link Digester#peek(int)} or {@link Digester#pop()}. Until then, only the rules setting its
+ * properties get this instance, through {@link Digester#peekPending()}.
+ *
+ * @since 3.3
+ */
+interface PendingObject
+{
+
+    /**
+     * Creates the object this instance stands for, once.
+     *
+     * @return the created object
+     * @throws Exception if the object cannot be created
+     */
+    Object create()
+        throws Exception;
+
+    /**
+     * Return whether the object is created with the given constructor arguments, i.e. whether the parameters supplied
+     * by a {@link CallParamRule} into the given array are the constructor arguments of the object.
+     *
+     * @param arguments the parameters on top of the parameters stack
+     * @return true, if the object is created with the given array of arguments
+     */
+    boolean isCreatedWith( Object[] arguments );
+
+}
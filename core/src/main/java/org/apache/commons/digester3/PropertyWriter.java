@@ -0,0 +1,532 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.apache.commons.beanutils.PropertyUtils.getWriteMethod;
+
+import java.beans.IndexedPropertyDescriptor;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.beanutils.BeanUtilsBean;
+import org.apache.commons.beanutils.Converter;
+import org.apache.commons.beanutils.DynaBean;
+import org.apache.commons.beanutils.converters.BooleanConverter;
+import org.apache.commons.beanutils.converters.DoubleConverter;
+import org.apache.commons.beanutils.converters.IntegerConverter;
+import org.apache.commons.beanutils.converters.LongConverter;
+import org.apache.commons.beanutils.converters.NumberConverter;
+
+/**
+ * Writes a string value to a property of a bean, with the same semantics than {@code BeanUtils.setProperty}.
+ * <p>
+ * Writers are resolved once per bean class and property name by an {@link IntrospectionCache}: for simple properties
+ * with an accessible setter, the value is converted with the registry of the Digester and the setter is invoked
+ * directly, skipping the property name parsing and introspection {@code BeanUtils} performs on each call. Setters of
+ * {@code int}, {@code long}, {@code double} and {@code boolean} properties are invoked without boxing the value, as
+ * long as the standard converter is registered for the property type. Any other case (nested, indexed or mapped
+ * properties, {@code DynaBean} and {@code Map} beans, array properties) is delegated to the {@code BeanUtils} instance
+ * of the Digester.
+ *
+ * @since 3.3
+ */
+abstract class PropertyWriter
+{
+
+    /**
+     * Writer of read-only properties, silently ignored like {@code BeanUtils} does.
+     */
+    private static final PropertyWriter READ_ONLY = new PropertyWriter()
+    {
+
+        @Override
+        boolean isDescribed()
+        {
+            return true;
+        }
+
+        @Override
+        void write( final BeanUtilsBean beanUtils, final Object bean, final String name, final String value )
+        {
+            // nothing to do
+        }
+
+    };
+
+    /**
+     * Writer delegating to {@code BeanUtilsBean.setProperty}.
+     */
+    private static final PropertyWriter GENERIC = new PropertyWriter()
+    {
+
+        @Override
+        boolean isDescribed()
+        {
+            return false;
+        }
+
+        @Override
+        void write( final BeanUtilsBean beanUtils, final Object bean, final String name, final String value )
+            throws Exception
+        {
+            beanUtils.setProperty( bean, name, value );
+        }
+
+    };
+
+    /**
+     * Resolves the writer of the given property of the given bean class.
+     *
+     * @param beanType the class of the bean
+     * @param name the name of the property
+     * @param descriptor the descriptor of the property found by introspection of the bean class, may be null
+     * @return the writer of the given property
+     */
+    static PropertyWriter forProperty( final Class<?> beanType, final String name, final PropertyDescriptor descriptor )
+    {
+        if ( DynaBean.class.isAssignableFrom( beanType ) || Map.class.isAssignableFrom( beanType ) )
+        {
+            return GENERIC;
+        }
+        for ( int i = 0; i < name.length(); i++ )
+        {
+            final char c = name.charAt( i );
+            if ( c == '.' || c == '[' || c == ']' || c == '(' || c == ')' )
+            {
+                // nested, indexed or mapped property expression
+                return GENERIC;
+            }
+        }
+        if ( descriptor == null )
+        {
+            // may still be a mapped property
+            return GENERIC;
+        }
+
+        final Class<?> type = descriptor.getPropertyType();
+        if ( descriptor instanceof IndexedPropertyDescriptor || type == null || type.isArray() )
+        {
+            return GENERIC;
+        }
+        if ( descriptor.getWriteMethod() == null )
+        {
+            return READ_ONLY;
+        }
+        final Method writeMethod = getWriteMethod( descriptor );
+        if ( writeMethod == null )
+        {
+            return GENERIC;
+        }
+        if ( type == Integer.TYPE )
+        {
+            return new IntSetterWriter( writeMethod );
+        }
+        if ( type == Long.TYPE )
+        {
+            return new LongSetterWriter( writeMethod );
+        }
+        if ( type == Double.TYPE )
+        {
+            return new DoubleSetterWriter( writeMethod );
+        }
+        if ( type == Boolean.TYPE )
+        {
+            return new BooleanSetterWriter( writeMethod );
+        }
+        return new SetterWriter( writeMethod, type );
+    }
+
+    /**
+     * Returns whether the property has been found by introspection of the bean class. When it is not the case, it may
+     * still exist as a nested, indexed or mapped property, or as a property of a {@code DynaBean}.
+     *
+     * @return true, if the property has been found by introspection of the bean class
+     */
+    abstract boolean isDescribed();
+
+    /**
+     * Returns whether the property can be written, when it has been {@link #isDescribed() found by introspection}.
+     *
+     * @return true, if the property can be written
+     */
+    boolean isWriteable()
+    {
+        return this != READ_ONLY;
+    }
+
+    /**
+     * Writes the given value to the property of the given bean, converting it to the property type if needed.
+     *
+     * @param beanUtils the BeanUtils instance, and conversion registry, of the Digester
+     * @param bean the bean, an instance of the class the writer has been resolved for
+     * @param name the name of the property
+     * @param value the value to write
+     * @throws Exception if the property cannot be written
+     */
+    abstract void write( BeanUtilsBean beanUtils, Object bean, String name, String value )
+        throws Exception;
+
+    /**
+     * The writers used by a rule, for all the bean classes it sets properties on.
+     * <p>
+     * Like the rules owning them, caches are not thread-safe. Writers are resolved once by the introspection cache of
+     * the Digester, rules keep them at hand to skip even its lookups.
+     */
+    static final class Cache
+    {
+
+        private final Map<Class<?>, Map<String, PropertyWriter>> writersByType =
+            new HashMap<Class<?>, Map<String, PropertyWriter>>();
+
+        /**
+         * The class of the last bean a writer was returned for.
+         */
+        private Class<?> lastType;
+
+        /**
+         * The writers of {@link #lastType}, keyed by property name.
+         */
+        private Map<String, PropertyWriter> lastWriters;
+
+        /**
+         * Returns the writer of the given property of the given bean class, resolving it if needed.
+         *
+         * @param beanType the class of the bean
+         * @param name the name of the property
+         * @return the writer of the given property
+         */
+        PropertyWriter get( final IntrospectionCache introspection, final Class<?> beanType, final String name )
+        {
+            if ( beanType != lastType )
+            {
+                lastWriters = writersByType.get( beanType );
+                if ( lastWriters == null )
+                {
+                    lastWriters = new HashMap<String, PropertyWriter>();
+                    writersByType.put( beanType, lastWriters );
+                }
+                lastType = beanType;
+            }
+
+            PropertyWriter writer = lastWriters.get( name );
+            if ( writer == null )
+            {
+                writer = introspection.getWriter( beanType, name );
+                lastWriters.put( name, writer );
+            }
+            return writer;
+        }
+
+    }
+
+    /**
+     * Writer invoking directly the setter of a simple property.
+     */
+    private static class SetterWriter
+        extends PropertyWriter
+    {
+
+        private final Method writeMethod;
+
+        private final Class<?> type;
+
+        SetterWriter( final Method writeMethod, final Class<?> type )
+        {
+            this.writeMethod = writeMethod;
+            this.type = type;
+        }
+
+        @Override
+        final boolean isDescribed()
+        {
+            return true;
+        }
+
+        @Override
+        void write( final BeanUtilsBean beanUtils, final Object bean, final String name, final String value )
+            throws Exception
+        {
+            writeMethod.invoke( bean, beanUtils.getConvertUtils().convert( value, type ) );
+        }
+
+    }
+
+    /**
+     * Writer invoking directly the setter of a primitive property, without boxing values the standard converter of
+     * the property type would convert by just parsing them.
+     */
+    private abstract static class PrimitiveSetterWriter
+        extends SetterWriter
+    {
+
+        private final Class<?> type;
+
+        /**
+         * The setter, adapted to take any bean.
+         */
+        protected final MethodHandle setter;
+
+        /**
+         * The last converter found to be a standard one.
+         */
+        private volatile Converter trustedConverter;
+
+        PrimitiveSetterWriter( final Method writeMethod, final Class<?> type )
+        {
+            super( writeMethod, type );
+            this.type = type;
+            try
+            {
+                this.setter = MethodHandles.publicLookup().unreflect( writeMethod )
+                                .asType( MethodType.methodType( void.class, Object.class, type ) );
+            }
+            catch ( final IllegalAccessException e )
+            {
+                throw new IllegalStateException( "Accessible method " + writeMethod + " cannot be unreflected", e );
+            }
+        }
+
+        @Override
+        final void write( final BeanUtilsBean beanUtils, final Object bean, final String name, final String value )
+            throws Exception
+        {
+            if ( value != null && isStandardConverter( beanUtils ) )
+            {
+                try
+                {
+                    if ( writeParsed( bean, value ) )
+                    {
+                        return;
+                    }
+                }
+                catch ( final Throwable t )
+                {
+                    // like Method.invoke()
+                    throw new InvocationTargetException( t );
+                }
+            }
+            // let the converter handle the value, and its errors
+            super.write( beanUtils, bean, name, value );
+        }
+
+        private boolean isStandardConverter( final BeanUtilsBean beanUtils )
+        {
+            final Converter converter = beanUtils.getConvertUtils().lookup( type );
+            if ( converter == null )
+            {
+                return false;
+            }
+            if ( converter == trustedConverter )
+            {
+                return true;
+            }
+            if ( isStandardConverter( converter ) )
+            {
+                trustedConverter = converter;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Checks whether the given converter, registered for the property type, converts the values accepted by
+         * {@link #writeParsed(Object, String)} to the same values.
+         *
+         * @param converter the converter registered for the property type
+         * @return true, if the value can be parsed instead of being converted by the given converter
+         */
+        protected abstract boolean isStandardConverter( Converter converter );
+
+        /**
+         * Parses the given value and invokes the setter with the parsed value.
+         *
+         * @param bean the bean
+         * @param value the value to parse
+         * @return false, if the value cannot be parsed, in which case the setter has not been invoked
+         * @throws Throwable if the setter threw an exception, parsing errors are not thrown
+         */
+        protected abstract boolean writeParsed( Object bean, String value )
+            throws Throwable;
+
+        /**
+         * Checks that the given converter is a plain instance of the given standard number converter class.
+         */
+        static boolean isPlainNumberConverter( final Converter converter,
+                                               final Class<? extends NumberConverter> converterType )
+        {
+            if ( converter.getClass() != converterType )
+            {
+                return false;
+            }
+            final NumberConverter numberConverter = (NumberConverter) converter;
+            return numberConverter.getPattern() == null && numberConverter.getLocale() == null;
+        }
+
+    }
+
+    private static final class IntSetterWriter
+        extends PrimitiveSetterWriter
+    {
+
+        IntSetterWriter( final Method writeMethod )
+        {
+            super( writeMethod, Integer.TYPE );
+        }
+
+        @Override
+        protected boolean isStandardConverter( final Converter converter )
+        {
+            return isPlainNumberConverter( converter, IntegerConverter.class );
+        }
+
+        @Override
+        protected boolean writeParsed( final Object bean, final String value )
+            throws Throwable
+        {
+            final int parsed;
+            try
+            {
+                parsed = Integer.parseInt( value.trim() );
+            }
+            catch ( final NumberFormatException e )
+            {
+                return false;
+            }
+            setter.invokeExact( bean, parsed );
+            return true;
+        }
+
+    }
+
+    private static final class LongSetterWriter
+        extends PrimitiveSetterWriter
+    {
+
+        LongSetterWriter( final Method writeMethod )
+        {
+            super( writeMethod, Long.TYPE );
+        }
+
+        @Override
+        protected boolean isStandardConverter( final Converter converter )
+        {
+            return isPlainNumberConverter( converter, LongConverter.class );
+        }
+
+        @Override
+        protected boolean writeParsed( final Object bean, final String value )
+            throws Throwable
+        {
+            final long parsed;
+            try
+            {
+                parsed = Long.parseLong( value.trim() );
+            }
+            catch ( final NumberFormatException e )
+            {
+                return false;
+            }
+            setter.invokeExact( bean, parsed );
+            return true;
+        }
+
+    }
+
+    private static final class DoubleSetterWriter
+        extends PrimitiveSetterWriter
+    {
+
+        DoubleSetterWriter( final Method writeMethod )
+        {
+            super( writeMethod, Double.TYPE );
+        }
+
+        @Override
+        protected boolean isStandardConverter( final Converter converter )
+        {
+            return isPlainNumberConverter( converter, DoubleConverter.class );
+        }
+
+        @Override
+        protected boolean writeParsed( final Object bean, final String value )
+            throws Throwable
+        {
+            final double parsed;
+            try
+            {
+                parsed = Double.parseDouble( value.trim() );
+            }
+            catch ( final NumberFormatException e )
+            {
+                return false;
+            }
+            setter.invokeExact( bean, parsed );
+            return true;
+        }
+
+    }
+
+    private static final class BooleanSetterWriter
+        extends PrimitiveSetterWriter
+    {
+
+        BooleanSetterWriter( final Method writeMethod )
+        {
+            super( writeMethod, Boolean.TYPE );
+        }
+
+        @Override
+        protected boolean isStandardConverter( final Converter converter )
+        {
+            return converter.getClass() == BooleanConverter.class
+                && Boolean.TRUE.equals( converter.convert( Boolean.class, "true" ) )
+                && Boolean.FALSE.equals( converter.convert( Boolean.class, "false" ) );
+        }
+
+        @Override
+        protected boolean writeParsed( final Object bean, final String value )
+            throws Throwable
+        {
+            final boolean parsed;
+            if ( "true".equals( value ) )
+            {
+                parsed = true;
+            }
+            else if ( "false".equals( value ) )
+            {
+                parsed = false;
+            }
+            else
+            {
+                return false;
+            }
+            setter.invokeExact( bean, parsed );
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,205 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * The SAX events of the subtree of a record, captured on the parsing thread so that the record can be digested
+ * later, by another thread.
+ * <p>
+ * Events are stored compactly: one byte per event, the names and attributes of the elements, and a single buffer
+ * holding all the text. The names of the ancestors of the record, and the namespaces in scope, are kept as well, so
+ * that replaying the batch restores the context of the record without firing the rules of its ancestors.
+ *
+ * @since 3.3
+ */
+final class RecordBatch
+{
+
+    private static final byte START = 0;
+
+    private static final byte TEXT = 1;
+
+    private static final byte END = 2;
+
+    private static final Attributes NO_ATTRIBUTES = new AttributesImpl();
+
+    /**
+     * The names of the ancestors of the record, outermost first.
+     */
+    private final String[] context;
+
+    /**
+     * The namespaces in scope at the record, keyed by prefix.
+     */
+    private final Map<String, String> namespaces;
+
+    private byte[] types = new byte[16];
+
+    /**
+     * The elements started by the {@link #START} events.
+     */
+    private Element[] elements = new Element[16];
+
+    /**
+     * The end offsets in {@link #text} of the text reported by the {@link #TEXT} events.
+     */
+    private int[] textEnds = new int[16];
+
+    private int size;
+
+    private final StringBuilder text = new StringBuilder();
+
+    RecordBatch( final String[] context, final Map<String, String> namespaces )
+    {
+        this.context = context;
+        this.namespaces = namespaces;
+    }
+
+    void startElement( final String namespaceURI, final String localName, final String qName,
+                       final Attributes attributes )
+    {
+        final Attributes copy = attributes.getLength() == 0 ? NO_ATTRIBUTES : new AttributesImpl( attributes );
+        add( START );
+        elements[size - 1] = new Element( namespaceURI, localName, qName, copy );
+    }
+
+    void characters( final char[] buffer, final int start, final int length )
+    {
+        text.append( buffer, start, length );
+        add( TEXT );
+        textEnds[size - 1] = text.length();
+    }
+
+    void endElement()
+    {
+        add( END );
+    }
+
+    private void add( final byte type )
+    {
+        if ( size == types.length )
+        {
+            types = Arrays.copyOf( types, size * 2 );
+            elements = Arrays.copyOf( elements, size * 2 );
+            textEnds = Arrays.copyOf( textEnds, size * 2 );
+        }
+        types[size++] = type;
+    }
+
+    /**
+     * Replays the captured events, in the context of the record, to the given Digester.
+     *
+     * @param digester the Digester the events are replayed to
+     * @throws SAXException if a rule fails
+     */
+    void replay( final Digester digester )
+        throws SAXException
+    {
+        digester.startDocument();
+        for ( final Map.Entry<String, String> namespace : namespaces.entrySet() )
+        {
+            digester.startPrefixMapping( namespace.getKey(), namespace.getValue() );
+        }
+
+        digester.setContextDepth( context.length );
+        try
+        {
+            for ( final String name : context )
+            {
+                digester.startElement( "", name, name, NO_ATTRIBUTES );
+            }
+
+            final char[] chars = new char[text.length()];
+            text.getChars( 0, chars.length, chars, 0 );
+            final Element[] open = new Element[size];
+            int depth = 0;
+            int textStart = 0;
+            for ( int i = 0; i < size; i++ )
+            {
+                switch ( types[i] )
+                {
+                    case START:
+                        final Element started = elements[i];
+                        open[depth++] = started;
+                        digester.startElement( started.namespaceURI, started.localName, started.qName,
+                                               started.attributes );
+                        break;
+
+                    case TEXT:
+                        digester.characters( chars, textStart, textEnds[i] - textStart );
+                        textStart = textEnds[i];
+                        break;
+
+                    default:
+                        final Element ended = open[--depth];
+                        digester.endElement( ended.namespaceURI, ended.localName, ended.qName );
+                        break;
+                }
+            }
+
+            for ( int i = context.length - 1; i >= 0; i-- )
+            {
+                digester.endElement( "", context[i], context[i] );
+            }
+        }
+        finally
+        {
+            digester.setContextDepth( 0 );
+        }
+
+        for ( final String prefix : namespaces.keySet() )
+        {
+            digester.endPrefixMapping( prefix );
+        }
+        digester.endDocument();
+    }
+
+    /**
+     * An element started in the subtree of the record.
+     */
+    private static final class Element
+    {
+
+        final String namespaceURI;
+
+        final String localName;
+
+        final String qName;
+
+        final Attributes attributes;
+
+        Element( final String namespaceURI, final String localName, final String qName, final Attributes attributes )
+        {
+            this.namespaceURI = namespaceURI;
+            this.localName = localName;
+            this.qName = qName;
+            this.attributes = attributes;
+        }
+
+    }
+
+}
@@ -0,0 +1,42 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Receives the records built by a {@link RecordRule}, as soon as each one has been completely built.
+ *
+ * @param <T> the type of the records
+ * @since 3.3
+ */
+public interface RecordConsumer<T>
+{
+
+    /**
+     * Invoked when the end of the element a record has been built from is reached, while the record is still at the
+     * top of the Digester object stack.
+     *
+     * @param record the completely built record
+     * @throws Exception if the record cannot be consumed. The exception is propagated to the caller of
+     *         {@link Digester#parse(java.io.InputStream)}, and the parse stops.
+     */
+    void consume( T record )
+        throws Exception;
+
+}
@@ -0,0 +1,501 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+
+/**
+ * Iterates lazily over the records built by a Digester at a record pattern.
+ * <p>
+ * When the document is read with a StAX reader, it is parsed by the iterating thread itself, which dispatches the
+ * events of the reader just until the next record has been built. Otherwise, the document is parsed by another
+ * thread, the {@link Digester#getExecutorService() executor service} of the Digester if any, a new daemon thread
+ * otherwise. Records are handed from the parsing thread to the iterating thread through a bounded buffer as soon as
+ * they have been popped from the stack, so the parse never runs more than a few records ahead of the iteration.
+ * Iterations stopped before reaching the last record should be {@link #close() closed} so that the parse is stopped
+ * rather than blocked forever.
+ * <p>
+ * The record rule and the stack action handing the records off are only installed on the Digester for the iteration:
+ * its rules and stack action are restored once the document has been parsed, or once the iterator is closed, so that
+ * the Digester can parse other documents afterwards.
+ * <p>
+ * Errors raised while parsing the document are thrown by {@link #hasNext()} and {@link #next()} as
+ * {@link IllegalStateException}s, with the {@code IOException}, {@code XMLStreamException} or {@code SAXException} as
+ * cause. Iterators are meant to be used by a single thread.
+ *
+ * @param <T> the type of the records
+ * @since 3.3
+ */
+public final class RecordIterator<T>
+    implements Iterator<T>, Closeable
+{
+
+    /**
+     * The maximum number of records the parse can run ahead of the iteration.
+     */
+    private static final int CAPACITY = 16;
+
+    /**
+     * Handed off once the document has been parsed.
+     */
+    private static final Object END = new Object();
+
+    private final Digester digester;
+
+    private final Class<T> recordType;
+
+    /**
+     * The records handed off, then {@link #END} or the {@link Failure} of the parse.
+     */
+    private final BlockingQueue<Object> records;
+
+    /**
+     * The driver dispatching the events of the StAX reader, null if the document is parsed by another thread.
+     */
+    private final StreamReaderDriver driver;
+
+    private final HandOff handOff;
+
+    /**
+     * The rules of the Digester, restored after the iteration.
+     */
+    private final Rules rules;
+
+    /**
+     * Set once the document starts being parsed by another thread, or once the iterator is closed before.
+     */
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    /**
+     * Released once the rules and the stack action of the Digester have been restored by the parsing thread.
+     */
+    private final CountDownLatch restored = new CountDownLatch( 1 );
+
+    private volatile boolean closed;
+
+    /**
+     * The next record, or the failure of the parse, taken from the buffer but not returned yet.
+     */
+    private Object next;
+
+    private boolean done;
+
+    RecordIterator( final Digester digester, final String pattern, final Class<T> recordType,
+                    final InputSource input )
+    {
+        this( digester, pattern, recordType, null, new ArrayBlockingQueue<Object>( CAPACITY ) );
+        digester.resetStopped();
+
+        final Runnable parse = new Runnable()
+        {
+
+            @Override
+            public void run()
+            {
+                if ( !started.compareAndSet( false, true ) )
+                {
+                    // closed before the parse started
+                    return;
+                }
+                Object end = END;
+                try
+                {
+                    // a close() before the parse starts must not be lost
+                    digester.parsePrepared( input );
+                    handOff.flush();
+                }
+                catch ( final Throwable t )
+                {
+                    end = new Failure( t );
+                }
+                restore();
+                restored.countDown();
+                try
+                {
+                    records.put( end );
+                }
+                catch ( final InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+        };
+
+        if ( digester.getExecutorService() != null )
+        {
+            digester.getExecutorService().execute( parse );
+        }
+        else
+        {
+            final Thread thread = new Thread( parse, "Digester record iterator" );
+            thread.setDaemon( true );
+            thread.start();
+        }
+    }
+
+    RecordIterator( final Digester digester, final String pattern, final Class<T> recordType,
+                    final StreamReaderDriver driver )
+    {
+        // records are dispatched one at a time, the buffer never grows beyond a few records
+        this( digester, pattern, recordType, driver, new LinkedBlockingQueue<Object>() );
+    }
+
+    private RecordIterator( final Digester digester, final String pattern, final Class<T> recordType,
+                            final StreamReaderDriver driver, final BlockingQueue<Object> records )
+    {
+        this.digester = digester;
+        this.recordType = recordType;
+        this.driver = driver;
+        this.records = records;
+
+        rules = digester.getRules();
+        handOff = new HandOff( digester.getStackAction() );
+
+        final RulesBase recordRules = new RulesBase();
+        recordRules.setDigester( digester );
+        recordRules.setNamespaceURI( rules.getNamespaceURI() );
+        recordRules.add( pattern, new RecordRule<T>( recordType, handOff ) );
+        digester.setRules( new RecordRules( rules, recordRules ) );
+        digester.setStackAction( handOff );
+    }
+
+    /**
+     * Restores the rules and the stack action of the Digester, once.
+     */
+    private void restore()
+    {
+        if ( digester.getStackAction() == handOff )
+        {
+            digester.setRules( rules );
+            digester.setStackAction( handOff.next );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext()
+    {
+        if ( next == null && !done )
+        {
+            if ( driver != null )
+            {
+                next = pull();
+            }
+            else
+            {
+                try
+                {
+                    next = records.take();
+                }
+                catch ( final InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException( "Interrupted while waiting for the next record", e );
+                }
+            }
+
+            if ( next == END )
+            {
+                next = null;
+                done = true;
+            }
+        }
+
+        if ( next instanceof Failure )
+        {
+            final Throwable cause = ( (Failure) next ).cause;
+            next = null;
+            done = true;
+            if ( cause instanceof Error )
+            {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException( "Error while parsing the records: " + cause.getMessage(), cause );
+        }
+
+        return next != null;
+    }
+
+    /**
+     * Dispatches the events of the StAX reader until the next record has been handed off.
+     *
+     * @return the next record, {@link #END} or the {@link Failure} of the parse
+     */
+    private Object pull()
+    {
+        try
+        {
+            while ( records.isEmpty() )
+            {
+                if ( !driver.step() )
+                {
+                    handOff.flush();
+                    if ( records.isEmpty() )
+                    {
+                        restore();
+                        return END;
+                    }
+                }
+            }
+            return records.remove();
+        }
+        catch ( final Exception e )
+        {
+            restore();
+            return new Failure( e );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T next()
+    {
+        if ( !hasNext() )
+        {
+            throw new NoSuchElementException();
+        }
+        final T record = recordType.cast( next );
+        next = null;
+        return record;
+    }
+
+    /**
+     * Always throws {@code UnsupportedOperationException}, records cannot be removed from the document.
+     */
+    @Override
+    public void remove()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Stops the iteration, and {@link Digester#stop() stops} the parse if it is still running, or as soon as it starts.
+     * The records that have already been built are discarded. Once closed, the Digester has its rules and stack action
+     * restored, and can parse another document: this method waits for the parse, if still running, to stop. StAX
+     * readers are not closed, as they are owned by the caller.
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+        digester.stop();
+        done = true;
+        next = null;
+        // unblocks the parsing thread if the buffer is full
+        records.clear();
+
+        if ( driver != null || started.compareAndSet( false, true ) )
+        {
+            restore();
+            return;
+        }
+        try
+        {
+            restored.await();
+        }
+        catch ( final InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Hands the records off to the iterating thread once the rules are done with them, i.e. once they have been popped.
+     */
+    private final class HandOff
+        implements RecordConsumer<T>, StackAction
+    {
+
+        private final StackAction next;
+
+        /**
+         * The last record consumed, not popped yet.
+         */
+        private Object pending;
+
+        HandOff( final StackAction next )
+        {
+            this.next = next;
+        }
+
+        @Override
+        public void consume( final T record )
+        {
+            // records that are not popped are handed off when the next one is consumed
+            flush();
+            pending = record;
+        }
+
+        @Override
+        public <O> O onPush( final Digester d, final String stackName, final O o )
+        {
+            return next != null ? next.onPush( d, stackName, o ) : o;
+        }
+
+        @Override
+        public <O> O onPop( final Digester d, final String stackName, final O o )
+        {
+            final O popped = next != null ? next.onPop( d, stackName, o ) : o;
+            if ( stackName == null && pending != null && pending == o )
+            {
+                flush();
+            }
+            return popped;
+        }
+
+        void flush()
+        {
+            if ( pending == null )
+            {
+                return;
+            }
+            if ( closed )
+            {
+                // the parse stops at the next event
+                pending = null;
+                return;
+            }
+            try
+            {
+                records.put( pending );
+                pending = null;
+            }
+            catch ( final InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new CancellationException( "Interrupted while handing off a record" );
+            }
+        }
+
+    }
+
+    /**
+     * Matches the rules of the Digester, then the record rule.
+     */
+    private static final class RecordRules
+        implements Rules
+    {
+
+        private final Rules rules;
+
+        private final Rules recordRules;
+
+        RecordRules( final Rules rules, final Rules recordRules )
+        {
+            this.rules = rules;
+            this.recordRules = recordRules;
+        }
+
+        @Override
+        public Digester getDigester()
+        {
+            return rules.getDigester();
+        }
+
+        @Override
+        public void setDigester( final Digester digester )
+        {
+            rules.setDigester( digester );
+        }
+
+        @Override
+        public String getNamespaceURI()
+        {
+            return rules.getNamespaceURI();
+        }
+
+        @Override
+        public void setNamespaceURI( final String namespaceURI )
+        {
+            rules.setNamespaceURI( namespaceURI );
+        }
+
+        @Override
+        public void add( final String pattern, final Rule rule )
+        {
+            rules.add( pattern, rule );
+        }
+
+        @Override
+        public void clear()
+        {
+            rules.clear();
+        }
+
+        @Override
+        public List<Rule> match( final String namespaceURI, final String pattern, final String name,
+                                 final Attributes attributes )
+        {
+            final List<Rule> matches = rules.match( namespaceURI, pattern, name, attributes );
+            final List<Rule> recordMatches = recordRules.match( namespaceURI, pattern, name, attributes );
+            if ( recordMatches.isEmpty() )
+            {
+                return matches;
+            }
+            final List<Rule> allMatches = new ArrayList<Rule>( matches.size() + recordMatches.size() );
+            allMatches.addAll( matches );
+            allMatches.addAll( recordMatches );
+            return allMatches;
+        }
+
+        @Override
+        public List<Rule> rules()
+        {
+            final List<Rule> allRules = new ArrayList<Rule>( rules.rules() );
+            allRules.addAll( recordRules.rules() );
+            return allRules;
+        }
+
+    }
+
+    /**
+     * Wraps the error the parse failed with.
+     */
+    private static final class Failure
+    {
+
+        final Throwable cause;
+
+        Failure( final Throwable cause )
+        {
+            this.cause = cause;
+        }
+
+    }
+
+}
@@ -0,0 +1,134 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static java.lang.String.format;
+
+/**
+ * <p>
+ * Rule implementation that hands the top object on the stack, a record, to a {@link RecordConsumer} once the record
+ * has been completely built. It is important to remember that this rule acts on {@code end}.
+ * </p>
+ * <p>
+ * Unlike {@link SetNextRule}, this rule does not link the record to its parent object, so that the record is no
+ * longer referenced by the Digester once the rule that created it has popped it from the stack. Documents made of a
+ * large number of independent records are then digested in constant memory. The rule must be added to the pattern
+ * after the rule creating the record, so that the record is still at the top of the stack when this rule is fired.
+ * </p>
+ * <p>
+ * If the record is the root object of the Digester, i.e. no object was on the stack when it was pushed, the root
+ * object is reset once the record has been consumed, so that {@link Digester#parse(java.io.InputStream)} does not
+ * retain the first record of the document.
+ * </p>
+ *
+ * @param <T> the type of the records
+ * @since 3.3
+ */
+public class RecordRule<T>
+    extends Rule
+{
+
+    private final Class<T> recordType;
+
+    private final RecordConsumer<? super T> consumer;
+
+    /**
+     * Construct a rule handing the records of the given type to the given consumer.
+     *
+     * @param recordType the type of the records
+     * @param consumer the consumer the records are handed to
+     */
+    public RecordRule( final Class<T> recordType, final RecordConsumer<? super T> consumer )
+    {
+        if ( recordType == null )
+        {
+            throw new IllegalArgumentException( "Parameter 'recordType' must not be null" );
+        }
+        if ( consumer == null )
+        {
+            throw new IllegalArgumentException( "Parameter 'consumer' must not be null" );
+        }
+        this.recordType = recordType;
+        this.consumer = consumer;
+    }
+
+    /**
+     * Returns the type of the records.
+     *
+     * @return the type of the records
+     */
+    public Class<T> getRecordType()
+    {
+        return recordType;
+    }
+
+    /**
+     * Returns the consumer the records are handed to.
+     *
+     * @return the consumer the records are handed to
+     */
+    public RecordConsumer<? super T> getConsumer()
+    {
+        return consumer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void end( final String namespace, final String name )
+        throws Exception
+    {
+        final Object top = getDigester().peek();
+        if ( !recordType.isInstance( top ) )
+        {
+            throw getDigester().createSAXException( format( "[%s]{%s} Expected a record of type %s, found %s",
+                                                            getClass().getSimpleName(),
+                                                            getDigester().getMatch(),
+                                                            recordType.getName(),
+                                                            top ) );
+        }
+
+        if ( getDigester().getLogger().isDebugEnabled() )
+        {
+            getDigester().getLogger().debug( format( "[%s]{%s} Consume %s",
+                                                     getClass().getSimpleName(),
+                                                     getDigester().getMatch(),
+                                                     top ) );
+        }
+
+        consumer.consume( recordType.cast( top ) );
+
+        if ( getDigester().getRoot() == top )
+        {
+            getDigester().resetRoot();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return format( "RecordRule[recordType=%s, consumer=%s]", recordType.getName(), consumer );
+    }
+
+}
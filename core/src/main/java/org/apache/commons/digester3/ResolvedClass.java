@@ -0,0 +1,222 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A class loaded by name, with its public no-arguments constructor bound once.
+ * <p>
+ * Rules creating objects of a class named in the document keep the classes they resolved, rather than asking the
+ * class loader for them on every element. Instances are created with the same semantics than
+ * {@code Class.newInstance()}.
+ *
+ * @since 3.3
+ */
+final class ResolvedClass
+{
+
+    private final Class<?> type;
+
+    /**
+     * The public no-arguments constructor, adapted to return an Object, null if the class has none.
+     */
+    private final MethodHandle constructor;
+
+    private ResolvedClass( final Class<?> type )
+    {
+        this.type = type;
+        this.constructor = findConstructor( type );
+    }
+
+    /**
+     * Binds the constructor of the given class.
+     *
+     * @param type the class
+     * @return the given class, with its constructor bound
+     */
+    static ResolvedClass forClass( final Class<?> type )
+    {
+        return new ResolvedClass( type );
+    }
+
+    private static MethodHandle findConstructor( final Class<?> type )
+    {
+        if ( type.isInterface() || Modifier.isAbstract( type.getModifiers() ) )
+        {
+            return null;
+        }
+        try
+        {
+            return MethodHandles.publicLookup().findConstructor( type, MethodType.methodType( void.class ) )
+                            .asType( MethodType.methodType( Object.class ) );
+        }
+        catch ( final NoSuchMethodException e )
+        {
+            return null;
+        }
+        catch ( final IllegalAccessException e )
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the resolved class.
+     *
+     * @return the resolved class
+     */
+    Class<?> getType()
+    {
+        return type;
+    }
+
+    /**
+     * Creates a new instance of the resolved class with its no-arguments constructor.
+     *
+     * @return the new instance
+     * @throws Exception if the instance cannot be created, or the exception thrown by the constructor
+     */
+    Object newInstance()
+        throws Exception
+    {
+        if ( constructor == null )
+        {
+            // let Class.newInstance() report the errors
+            return type.newInstance();
+        }
+        try
+        {
+            return (Object) constructor.invokeExact();
+        }
+        catch ( final Exception e )
+        {
+            throw e;
+        }
+        catch ( final Error e )
+        {
+            throw e;
+        }
+        catch ( final Throwable t )
+        {
+            throw new InvocationTargetException( t );
+        }
+    }
+
+    /**
+     * The classes resolved by a rule, and the names it failed to resolve, for the class loader of its Digester.
+     * <p>
+     * The cache retains the most recently used classes only. Like the rules owning them, caches are not thread-safe.
+     */
+    static final class Cache
+    {
+
+        /**
+         * The maximum number of class names retained.
+         */
+        private static final int MAX_SIZE = 64;
+
+        /**
+         * The resolved classes, or the names that failed to be resolved, keyed by class name.
+         */
+        private final Map<String, Object> resolved = new LinkedHashMap<String, Object>( 16, 0.75f, true )
+        {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( final Map.Entry<String, Object> eldest )
+            {
+                return size() > MAX_SIZE;
+            }
+
+        };
+
+        /**
+         * The class loader the cached classes have been loaded with.
+         */
+        private ClassLoader classLoader;
+
+        /**
+         * Returns the class of the given name, loading it with the given class loader if needed.
+         *
+         * @param classLoader the class loader of the Digester
+         * @param className the name of the class
+         * @return the class of the given name
+         * @throws ClassNotFoundException if the class has not been found, now or on a previous call, in which case the
+         *         exception thrown by the first lookup is the cause
+         */
+        ResolvedClass get( final ClassLoader classLoader, final String className )
+            throws ClassNotFoundException
+        {
+            if ( classLoader != this.classLoader )
+            {
+                resolved.clear();
+                this.classLoader = classLoader;
+            }
+
+            final Object cached = resolved.get( className );
+            if ( cached instanceof ResolvedClass )
+            {
+                return (ResolvedClass) cached;
+            }
+            if ( cached != null )
+            {
+                // a new exception, so that the stack trace is the one of the current lookup
+                throw new ClassNotFoundException( className, ( (Unresolved) cached ).cause );
+            }
+
+            try
+            {
+                final ResolvedClass resolvedClass = new ResolvedClass( classLoader.loadClass( className ) );
+                resolved.put( className, resolvedClass );
+                return resolvedClass;
+            }
+            catch ( final ClassNotFoundException e )
+            {
+                resolved.put( className, new Unresolved( e ) );
+                throw e;
+            }
+        }
+
+    }
+
+    /**
+     * Marks a class name that failed to be resolved.
+     */
+    private static final class Unresolved
+    {
+
+        final ClassNotFoundException cause;
+
+        Unresolved( final ClassNotFoundException cause )
+        {
+            this.cause = cause;
+        }
+
+    }
+
+}
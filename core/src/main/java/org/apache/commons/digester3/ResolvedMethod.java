@@ -0,0 +1,116 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.apache.commons.beanutils.MethodUtils.getAccessibleMethod;
+import static org.apache.commons.beanutils.MethodUtils.getMatchingAccessibleMethod;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * A method resolved with the same semantics than {@code MethodUtils.invokeExactMethod} and
+ * {@code MethodUtils.invokeMethod}, for a given target class and parameter types.
+ * <p>
+ * Rules invoking methods keep the last resolved method and resolve it again only when the target class or the
+ * parameter types change, rather than looking it up on every invocation. Instances are immutable, so a rule can
+ * safely replace its cached instance even when it is shared by Digester instances running in different threads.
+ *
+ * @since 3.3
+ */
+final class ResolvedMethod
+{
+
+    private final Class<?> targetType;
+
+    private final String methodName;
+
+    private final Class<?>[] paramTypes;
+
+    private final boolean exactMatch;
+
+    private final Method method;
+
+    private ResolvedMethod( final Class<?> targetType, final String methodName, final Class<?>[] paramTypes,
+                            final boolean exactMatch, final Method method )
+    {
+        this.targetType = targetType;
+        this.methodName = methodName;
+        this.paramTypes = paramTypes;
+        this.exactMatch = exactMatch;
+        this.method = method;
+    }
+
+    /**
+     * Returns the given method if it has been resolved for the given arguments, resolves it otherwise.
+     *
+     * @param resolved the previously resolved method, may be null
+     * @param targetType the class of the object the method is invoked on
+     * @param methodName the name of the method
+     * @param paramTypes the parameter types the method must accept
+     * @param exactMatch true, if the parameter types must match exactly as in {@code MethodUtils.invokeExactMethod}
+     * @return the method resolved for the given arguments
+     * @throws NoSuchMethodException if no accessible method matches
+     */
+    static ResolvedMethod resolve( final ResolvedMethod resolved, final Class<?> targetType, final String methodName,
+                                   final Class<?>[] paramTypes, final boolean exactMatch )
+        throws NoSuchMethodException
+    {
+        if ( resolved != null && resolved.targetType == targetType && resolved.exactMatch == exactMatch
+            && resolved.methodName.equals( methodName )
+            && ( resolved.paramTypes == paramTypes || Arrays.equals( resolved.paramTypes, paramTypes ) ) )
+        {
+            return resolved;
+        }
+
+        final Method method;
+        if ( exactMatch )
+        {
+            method = getAccessibleMethod( targetType, methodName, paramTypes );
+        }
+        else
+        {
+            method = getMatchingAccessibleMethod( targetType, methodName, paramTypes );
+        }
+        if ( method == null )
+        {
+            throw new NoSuchMethodException( "No such accessible method: " + methodName + "() on object: "
+                + targetType.getName() );
+        }
+        return new ResolvedMethod( targetType, methodName, paramTypes.clone(), exactMatch, method );
+    }
+
+    /**
+     * Invokes the resolved method.
+     *
+     * @param target the object the method is invoked on, an instance of the resolved target class
+     * @param args the method arguments
+     * @return the value returned by the method
+     * @throws IllegalAccessException if the method is not accessible
+     * @throws InvocationTargetException if the method threw an exception
+     */
+    Object invoke( final Object target, final Object[] args )
+        throws IllegalAccessException, InvocationTargetException
+    {
+        return method.invoke( target, args );
+    }
+
+}
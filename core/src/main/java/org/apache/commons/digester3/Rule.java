@@ -19,6 +19,9 @@ package org.apache.commons.digester3;
  * under the License.
  */
 
+import java.util.EnumMap;
+import java.util.Map;
+
 import org.xml.sax.Attributes;
 
 /**
@@ -52,6 +55,37 @@ import org.xml.sax.Attributes;
  */public abstract class Rule
 {
 
+    /**
+     * The classes declaring the callbacks implementations of each concrete {@code Rule} class.
+     */
+    private static final ClassValue<Map<RuleCallback, Class<?>>> CALLBACK_DECLARING_CLASSES =
+        new ClassValue<Map<RuleCallback, Class<?>>>()
+    {
+
+        @Override
+        protected Map<RuleCallback, Class<?>> computeValue( final Class<?> type )
+        {
+            final Map<RuleCallback, Class<?>> declaringClasses =
+                new EnumMap<RuleCallback, Class<?>>( RuleCallback.class );
+            for ( final RuleCallback callback : RuleCallback.values() )
+            {
+                try
+                {
+                    declaringClasses.put( callback,
+                                          type.getMethod( callback.getMethodName(), callback.getParameterTypes() )
+                                              .getDeclaringClass() );
+                }
+                catch ( final NoSuchMethodException e )
+                {
+                    // cannot happen, the callbacks are public methods of Rule
+                    declaringClasses.put( callback, type );
+                }
+            }
+            return declaringClasses;
+        }
+
+    };
+
     // ----------------------------------------------------- Instance Variables
 
     /**
@@ -64,6 +98,11 @@ import org.xml.sax.Attributes;
      */
     private String namespaceURI = null;
 
+    /**
+     * The classes declaring the callbacks of this Rule, looked up on first use.
+     */
+    private Map<RuleCallback, Class<?>> callbackDeclaringClasses = null;
+
     // ------------------------------------------------------------- Properties
 
     /**
@@ -107,6 +146,56 @@ import org.xml.sax.Attributes;
         this.namespaceURI = namespaceURI;
     }
 
+    /**
+     * Return a new instance of this Rule, with the same configuration and namespace URI, that can be added to another
+     * Digester. The copy does not share any per-parse state with this Rule, and is not associated with any Digester
+     * yet. It may reuse what this Rule already resolved, as long as it is immutable.
+     * <p>
+     * By default, a Rule cannot be copied. Subclasses of rules that can be copied cannot be copied either, unless they
+     * override this method.
+     *
+     * @return a new instance of this Rule, or null if this Rule cannot be copied
+     * @since 3.3
+     */
+    public Rule copy()
+    {
+        return null;
+    }
+
+    /**
+     * Return whether this Rule needs the given callback to be invoked. The {@link Digester} does not need to invoke
+     * callbacks that are not required and, in particular, does not accumulate the body text of elements whose
+     * matching rules do not require {@link RuleCallback#BODY}.
+     * <p>
+     * By default, a callback is required if the class of this Rule overrides the corresponding method. Subclasses
+     * that only use a callback in some configurations may override this method to tell more precisely.
+     *
+     * @param callback the callback to check
+     * @return true, if the callback has to be invoked, false if it would do nothing
+     * @since 3.3
+     */
+    public boolean requires( final RuleCallback callback )
+    {
+        return getCallbackDeclaringClass( callback ) != Rule.class;
+    }
+
+    /**
+     * Return the class declaring the implementation of the given callback that is invoked on this Rule. Subclasses
+     * overriding {@link #requires(RuleCallback)} can use it to make sure the callback was not overridden again.
+     *
+     * @param callback the callback to look up
+     * @return the class declaring the implementation of the given callback
+     * @since 3.3
+     */
+    protected final Class<?> getCallbackDeclaringClass( final RuleCallback callback )
+    {
+        if ( callbackDeclaringClasses == null )
+        {
+            callbackDeclaringClasses = CALLBACK_DECLARING_CLASSES.get( getClass() );
+        }
+        return callbackDeclaringClasses.get( callback );
+    }
+
     // --------------------------------------------------------- Public Methods
 
     /**
@@ -0,0 +1,74 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.xml.sax.Attributes;
+
+/**
+ * The callbacks a {@link Rule} may implement, see {@link Rule#requires(RuleCallback)}.
+ *
+ * @since 3.3
+ */
+public enum RuleCallback
+{
+
+    /** {@link Rule#begin(String, String, Attributes)} */
+    BEGIN( "begin", String.class, String.class, Attributes.class ),
+
+    /** {@link Rule#body(String, String, String)} */
+    BODY( "body", String.class, String.class, String.class ),
+
+    /** {@link Rule#end(String, String)} */
+    END( "end", String.class, String.class ),
+
+    /** {@link Rule#finish()} */
+    FINISH( "finish" );
+
+    private final String methodName;
+
+    private final Class<?>[] parameterTypes;
+
+    private RuleCallback( final String methodName, final Class<?>... parameterTypes )
+    {
+        this.methodName = methodName;
+        this.parameterTypes = parameterTypes;
+    }
+
+    /**
+     * Return the name of the {@link Rule} method implementing this callback.
+     *
+     * @return the name of the {@link Rule} method implementing this callback
+     */
+    String getMethodName()
+    {
+        return methodName;
+    }
+
+    /**
+     * Return the parameter types of the {@link Rule} method implementing this callback.
+     *
+     * @return the parameter types of the {@link Rule} method implementing this callback
+     */
+    Class<?>[] getParameterTypes()
+    {
+        return parameterTypes.clone();
+    }
+
+}
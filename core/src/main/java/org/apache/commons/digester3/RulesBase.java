@@ -21,6 +21,7 @@ package org.apache.commons.digester3;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -51,6 +52,7 @@ import org.xml.sax.Attributes;
 
 public class RulesBase
     extends AbstractRulesImpl
+    implements SkippableRules
 {
 
     // ----------------------------------------------------- Instance Variables
@@ -71,6 +73,28 @@ public class RulesBase
      */
     protected ArrayList<Rule> rules = new ArrayList<Rule>();
 
+    /**
+     * The paths of the elements below which an exact pattern continues.
+     *
+     * @since 3.3
+     */
+    private final HashSet<String> exactPrefixes = new HashSet<String>();
+
+    /**
+     * The leading element names of the wildcard patterns, without their last element name, in the same form as the
+     * keys of the {@code wildcardCache}.
+     *
+     * @since 3.3
+     */
+    private final HashSet<String> wildcardPrefixes = new HashSet<String>();
+
+    /**
+     * The first element names of the wildcard patterns.
+     *
+     * @since 3.3
+     */
+    private final HashSet<String> wildcardStarts = new HashSet<String>();
+
     // ------------------------------------------------------------- Properties
 
     /**
@@ -108,6 +132,19 @@ public class RulesBase
             if ( pattern.startsWith( "*/" ) )
             {
                 wildcardCache.add( pattern.substring( 1 ) );
+                for ( int slash = pattern.indexOf( '/', 2 ); slash >= 0; slash = pattern.indexOf( '/', slash + 1 ) )
+                {
+                    wildcardPrefixes.add( pattern.substring( 1, slash ) );
+                }
+                final int end = pattern.indexOf( '/', 2 );
+                wildcardStarts.add( end < 0 ? pattern.substring( 2 ) : pattern.substring( 2, end ) );
+            }
+            else
+            {
+                for ( int slash = pattern.indexOf( '/' ); slash >= 0; slash = pattern.indexOf( '/', slash + 1 ) )
+                {
+                    exactPrefixes.add( pattern.substring( 0, slash ) );
+                }
             }
             cache.put( pattern, list );
         }
@@ -124,6 +161,9 @@ public class RulesBase
         wildcardCache.clear();
         cache.clear();
         rules.clear();
+        exactPrefixes.clear();
+        wildcardPrefixes.clear();
+        wildcardStarts.clear();
     }
 
     /**
@@ -167,6 +207,42 @@ public class RulesBase
         return ( this.rules );
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Subclasses are assumed to match differently, so this method always returns true for them unless they override
+     * it.
+     *
+     * @since 3.3
+     */
+    @Override
+    public boolean hasMatchesBelow( final String pattern )
+    {
+        if ( getClass() != RulesBase.class || exactPrefixes.contains( pattern ) )
+        {
+            return true;
+        }
+        for ( final String key : wildcardPrefixes )
+        {
+            if ( pattern.equals( key.substring( 1 ) ) || pattern.endsWith( key ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 3.3
+     */
+    @Override
+    public boolean startsWildcardPattern( final String name )
+    {
+        return wildcardStarts.contains( name );
+    }
+
     // ------------------------------------------------------ Protected Methods
 
     /**
@@ -19,7 +19,6 @@ package org.apache.commons.digester3;
  * under the License.
  */
 
-import static org.apache.commons.beanutils.BeanUtils.setProperty;
 import static org.apache.commons.beanutils.PropertyUtils.getPropertyDescriptor;
 
 import static java.lang.String.format;
@@ -31,6 +30,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.commons.beanutils.BeanUtilsBean;
 import org.apache.commons.beanutils.DynaBean;
 import org.apache.commons.beanutils.DynaProperty;
 import org.apache.commons.logging.Log;
@@ -449,6 +449,11 @@ public class SetNestedPropertiesRule
 
         private String currChildElementName = null;
 
+        /**
+         * The resolved writers of the properties set by this rule.
+         */
+        private final PropertyWriter.Cache writers = new PropertyWriter.Cache();
+
         @Override
         public void begin( final String namespaceURI, final String name, final Attributes attributes )
             throws Exception
@@ -481,7 +486,7 @@ public class SetNestedPropertiesRule
             }
 
             // Populate the corresponding properties of the top object
-            final Object top = getDigester().peek();
+            final Object top = getDigester().peekPending();
             if ( debug )
             {
                 if ( top != null )
@@ -500,7 +505,10 @@ public class SetNestedPropertiesRule
                 text = text.trim();
             }
 
-            if ( !allowUnknownChildElements )
+            final PropertyWriter writer =
+                top == null ? null : writers.get( getDigester().getIntrospectionCache(), top.getClass(), propName );
+
+            if ( !allowUnknownChildElements && ( writer == null || !writer.isDescribed() ) )
             {
                 // Force an exception if the property does not exist
                 // (BeanUtils.setProperty() silently returns in this case)
@@ -525,7 +533,15 @@ public class SetNestedPropertiesRule
 
             try
             {
-                setProperty( top, propName, text );
+                final BeanUtilsBean beanUtils = getDigester().getBeanUtils();
+                if ( writer == null )
+                {
+                    beanUtils.setProperty( top, propName, text );
+                }
+                else
+                {
+                    writer.write( beanUtils, top, propName, text );
+                }
             }
             catch ( final NullPointerException e )
             {
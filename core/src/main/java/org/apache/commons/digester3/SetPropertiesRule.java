@@ -20,12 +20,12 @@ package org.apache.commons.digester3;
  */
 
 import static java.lang.String.format;
-import static org.apache.commons.beanutils.BeanUtils.populate;
 import static org.apache.commons.beanutils.PropertyUtils.isWriteable;
 
 import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.commons.beanutils.BeanUtilsBean;
 import org.xml.sax.Attributes;
 
 /**
@@ -143,6 +143,11 @@ public class SetPropertiesRule
      */
     private boolean ignoreMissingProperty = true;
 
+    /**
+     * The resolved writers of the properties set by this rule.
+     */
+    private final PropertyWriter.Cache writers = new PropertyWriter.Cache();
+
     // --------------------------------------------------------- Public Methods
 
     /**
@@ -152,69 +157,38 @@ public class SetPropertiesRule
     public void begin( final String namespace, final String name, final Attributes attributes )
         throws Exception
     {
-        // Build a set of attribute names and corresponding values
-        final Map<String, String> values = new HashMap<String, String>();
-
-        for ( int i = 0; i < attributes.getLength(); i++ )
-        {
-            String attributeName = attributes.getLocalName( i );
-            if ( "".equals( attributeName ) )
-            {
-                attributeName = attributes.getQName( i );
-            }
-            final String value = attributes.getValue( i );
+        final Object top = getDigester().peekPending();
 
-            // alias lookup has complexity O(1)
-            if ( aliases.containsKey( attributeName ) )
-            {
-                attributeName = aliases.get( attributeName );
-            }
-
-            if ( getDigester().getLogger().isDebugEnabled() )
-            {
-                getDigester().getLogger().debug( format( "[SetPropertiesRule]{%s} Setting property '%s' to '%s'",
-                                                         getDigester().getMatch(),
-                                                         attributeName,
-                                                         attributeName ) );
-            }
+        final IntrospectionCache introspection = getDigester().getIntrospectionCache();
 
-            if ( ( !ignoreMissingProperty ) && ( attributeName != null ) )
+        if ( !ignoreMissingProperty )
+        {
+            // check that each attribute has a corresponding property before setting any property
+            for ( int i = 0; i < attributes.getLength(); i++ )
             {
-                // The BeanUtils.populate method silently ignores items in
-                // the map (ie xml entities) which have no corresponding
-                // setter method, so here we check whether each xml attribute
-                // does have a corresponding property before calling the
-                // BeanUtils.populate method.
-                //
-                // Yes having the test and set as separate steps is ugly and
-                // inefficient. But BeanUtils.populate doesn't provide the
-                // functionality we need here, and changing the algorithm which
-                // determines the appropriate setter method to invoke is
-                // considered too risky.
-                //
-                // Using two different classes (PropertyUtils vs BeanUtils) to
-                // do the test and the set is also ugly; the codepaths
-                // are different which could potentially lead to trouble.
-                // However the BeanUtils/ProperyUtils code has been carefully
-                // compared and the PropertyUtils functionality does appear
-                // compatible so we'll accept the risk here.
-
-                final Object top = getDigester().peek();
-                final boolean test = isWriteable( top, attributeName );
-                if ( !test )
+                final String propertyName = getPropertyName( attributes, i );
+                if ( propertyName == null )
                 {
-                    throw new NoSuchMethodException( "Property " + attributeName + " can't be set" );
+                    continue;
+                }
+                final PropertyWriter writer =
+                    top == null ? null : writers.get( introspection, top.getClass(), propertyName );
+                final boolean writeable;
+                if ( writer != null && writer.isDescribed() )
+                {
+                    writeable = writer.isWriteable();
+                }
+                else
+                {
+                    writeable = isWriteable( top, propertyName );
+                }
+                if ( !writeable )
+                {
+                    throw new NoSuchMethodException( "Property " + propertyName + " can't be set" );
                 }
-            }
-
-            if ( attributeName != null )
-            {
-                values.put( attributeName, value );
             }
         }
 
-        // Populate the corresponding properties of the top object
-        final Object top = getDigester().peek();
         if ( getDigester().getLogger().isDebugEnabled() )
         {
             if ( top != null )
@@ -229,7 +203,56 @@ public class SetPropertiesRule
                                                          getDigester().getMatch() ) );
             }
         }
-        populate( top, values );
+
+        // like BeanUtils.populate(), ignore a null top object
+        if ( top == null )
+        {
+            return;
+        }
+
+        final BeanUtilsBean beanUtils = getDigester().getBeanUtils();
+        for ( int i = 0; i < attributes.getLength(); i++ )
+        {
+            final String propertyName = getPropertyName( attributes, i );
+            if ( propertyName == null )
+            {
+                continue;
+            }
+            final String value = attributes.getValue( i );
+
+            if ( getDigester().getLogger().isDebugEnabled() )
+            {
+                getDigester().getLogger().debug( format( "[SetPropertiesRule]{%s} Setting property '%s' to '%s'",
+                                                         getDigester().getMatch(),
+                                                         propertyName,
+                                                         value ) );
+            }
+
+            writers.get( introspection, top.getClass(), propertyName ).write( beanUtils, top, propertyName, value );
+        }
+    }
+
+    /**
+     * Returns the name of the property the given attribute is mapped to.
+     *
+     * @param attributes The attribute list of the current element
+     * @param index The index of the attribute
+     * @return The name of the property, null if the attribute has to be ignored
+     */
+    private String getPropertyName( final Attributes attributes, final int index )
+    {
+        String attributeName = attributes.getLocalName( index );
+        if ( "".equals( attributeName ) )
+        {
+            attributeName = attributes.getQName( index );
+        }
+
+        // alias lookup has complexity O(1)
+        if ( aliases.containsKey( attributeName ) )
+        {
+            attributeName = aliases.get( attributeName );
+        }
+        return attributeName;
     }
 
     /**
@@ -20,7 +20,6 @@ package org.apache.commons.digester3;
  */
 
 import static java.lang.String.format;
-import static org.apache.commons.beanutils.BeanUtils.setProperty;
 import static org.apache.commons.beanutils.PropertyUtils.getPropertyDescriptor;
 
 import java.beans.PropertyDescriptor;
@@ -63,6 +62,11 @@ public class SetPropertyRule
      */
     protected String value = null;
 
+    /**
+     * The resolved writers of the properties set by this rule.
+     */
+    private final PropertyWriter.Cache writers = new PropertyWriter.Cache();
+
     // --------------------------------------------------------- Public Methods
 
     /**
@@ -99,7 +103,7 @@ public class SetPropertyRule
         }
 
         // Get a reference to the top object
-        final Object top = getDigester().peek();
+        final Object top = getDigester().peekPending();
 
         // Log some debugging information
         if ( getDigester().getLogger().isDebugEnabled() )
@@ -116,26 +120,31 @@ public class SetPropertyRule
         //
         // This code should probably use PropertyUtils.isWriteable(),
         // like SetPropertiesRule does.
-        if ( top instanceof DynaBean )
+        final PropertyWriter writer =
+            top == null ? null : writers.get( getDigester().getIntrospectionCache(), top.getClass(), actualName );
+        if ( writer == null || !writer.isDescribed() )
         {
-            final DynaProperty desc = ( (DynaBean) top ).getDynaClass().getDynaProperty( actualName );
-            if ( desc == null )
+            if ( top instanceof DynaBean )
             {
-                throw new NoSuchMethodException( "Bean has no property named " + actualName );
+                final DynaProperty desc = ( (DynaBean) top ).getDynaClass().getDynaProperty( actualName );
+                if ( desc == null )
+                {
+                    throw new NoSuchMethodException( "Bean has no property named " + actualName );
+                }
             }
-        }
-        else
-        /* this is a standard JavaBean */
-        {
-            final PropertyDescriptor desc = getPropertyDescriptor( top, actualName );
-            if ( desc == null )
+            else
+            /* this is a standard JavaBean */
             {
-                throw new NoSuchMethodException( "Bean has no property named " + actualName );
+                final PropertyDescriptor desc = getPropertyDescriptor( top, actualName );
+                if ( desc == null )
+                {
+                    throw new NoSuchMethodException( "Bean has no property named " + actualName );
+                }
             }
         }
 
         // Set the property (with conversion as necessary)
-        setProperty( top, actualName, actualValue );
+        writer.write( getDigester().getBeanUtils(), top, actualName, actualValue );
     }
 
     /**
@@ -0,0 +1,56 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Optional extension of {@link Rules} for implementations that are able to tell when the content of an element does
+ * not need to be matched.
+ * <p>
+ * Below an element for which {@link #hasMatchesBelow(String)} returns false, the {@link Digester} does not match the
+ * descendants: it only keeps track of their names, until it meets one for which {@link #startsWildcardPattern(String)}
+ * returns true. It then matches that element, and its content, as usual.
+ *
+ * @since 3.3
+ */
+public interface SkippableRules
+    extends Rules
+{
+
+    /**
+     * Return whether a registered Rule instance may match an element nested, at any depth, below an element matching
+     * the given pattern, other than through a wildcard pattern whose first element name is the name of such a nested
+     * element.
+     *
+     * @param pattern the slash-separated path of the element
+     * @return false, if the only registered Rule instances that can match below the element are those of wildcard
+     *         patterns starting at a nested element
+     */
+    boolean hasMatchesBelow( String pattern );
+
+    /**
+     * Return whether a wildcard pattern, {@code *&#47;name/...}, whose first element name is the given name is
+     * registered.
+     *
+     * @param name the local name if the parser is namespace aware, or just the element name otherwise
+     * @return true, if a wildcard pattern starts with the given element name
+     */
+    boolean startsWildcardPattern( String name );
+
+}
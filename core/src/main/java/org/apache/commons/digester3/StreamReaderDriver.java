@@ -0,0 +1,340 @@
+package org.apache.commons.digester3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Feeds a {@link Digester} with the events pulled from a StAX {@link XMLStreamReader}, rather than with the events
+ * pushed by a SAX {@code XMLReader}.
+ * <p>
+ * The events are dispatched to the same {@code ContentHandler} methods of the Digester, so the rules are fired
+ * exactly as if the document was parsed with SAX. Unlike {@link Digester#parse(org.xml.sax.InputSource)}, the caller
+ * decides when the parse advances: each call to {@link #step()} dispatches a single event, so the parse can be paused,
+ * resumed later, or given up without reading the rest of the document. {@link #parse()} dispatches all the remaining
+ * events. Once {@link Digester#stop()} has been called, the driver behaves as if the document ended with the event
+ * being dispatched.
+ * <p>
+ * The namespace awareness of the reader should match the one of the Digester. Validation, schemas and entity
+ * resolution are configured on the {@code XMLInputFactory} that created the reader, not on the Digester. Drivers are
+ * not thread-safe.
+ *
+ * @since 3.3
+ */
+public final class StreamReaderDriver
+{
+
+    private final Digester digester;
+
+    private final XMLStreamReader reader;
+
+    /**
+     * The attributes of the current element, reused from an element to the other as SAX parsers do.
+     */
+    private final AttributesImpl attributes = new AttributesImpl();
+
+    private boolean started;
+
+    private boolean finished;
+
+    /**
+     * Creates a driver feeding the given Digester with the events of the given reader, starting from its current
+     * event.
+     *
+     * @param digester the Digester the events are dispatched to
+     * @param reader the reader the events are pulled from
+     */
+    public StreamReaderDriver( final Digester digester, final XMLStreamReader reader )
+    {
+        if ( digester == null )
+        {
+            throw new IllegalArgumentException( "Parameter 'digester' must not be null" );
+        }
+        if ( reader == null )
+        {
+            throw new IllegalArgumentException( "Parameter 'reader' must not be null" );
+        }
+        this.digester = digester;
+        this.reader = reader;
+        // the events are pulled by the thread that may stop the parse, clear any previous request now
+        digester.resetStopped();
+    }
+
+    /**
+     * Returns the Digester the events are dispatched to.
+     *
+     * @return the Digester the events are dispatched to
+     */
+    public Digester getDigester()
+    {
+        return digester;
+    }
+
+    /**
+     * Checks whether the end of the document has been dispatched.
+     *
+     * @return true, if the end of the document has been dispatched
+     */
+    public boolean isFinished()
+    {
+        return finished;
+    }
+
+    /**
+     * Dispatches the current event of the reader to the Digester, and moves the reader to the next event.
+     *
+     * @return true, if there are more events to dispatch, false once the end of the document has been dispatched
+     * @throws XMLStreamException if the reader fails to read the document
+     * @throws SAXException if a rule fails
+     */
+    public boolean step()
+        throws XMLStreamException, SAXException
+    {
+        if ( finished )
+        {
+            return false;
+        }
+
+        boolean dispatched = false;
+        try
+        {
+            final boolean more = dispatch();
+            dispatched = true;
+            return more;
+        }
+        finally
+        {
+            if ( !dispatched )
+            {
+                // the document will not end normally
+                digester.abort();
+            }
+        }
+    }
+
+    /**
+     * Dispatches the current event of the reader to the Digester, and moves the reader to the next event.
+     */
+    private boolean dispatch()
+        throws XMLStreamException, SAXException
+    {
+
+        if ( !started )
+        {
+            started = true;
+            digester.setDocumentLocator( new StreamLocator() );
+            digester.startDocument();
+            if ( reader.getEventType() == XMLStreamConstants.START_DOCUMENT )
+            {
+                reader.next();
+                return true;
+            }
+        }
+
+        if ( digester.isStopped() )
+        {
+            // give up the rest of the document, as if it ended here
+            finished = true;
+            digester.endDocument();
+            digester.cleanup();
+            return false;
+        }
+
+        switch ( reader.getEventType() )
+        {
+            case XMLStreamConstants.START_ELEMENT:
+                startElement();
+                break;
+
+            case XMLStreamConstants.END_ELEMENT:
+                endElement();
+                break;
+
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.CDATA:
+                digester.characters( reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength() );
+                break;
+
+            case XMLStreamConstants.SPACE:
+                digester.ignorableWhitespace( reader.getTextCharacters(), reader.getTextStart(),
+                                              reader.getTextLength() );
+                break;
+
+            case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                digester.processingInstruction( reader.getPITarget(), reader.getPIData() );
+                break;
+
+            case XMLStreamConstants.ENTITY_REFERENCE:
+                digester.skippedEntity( reader.getLocalName() );
+                break;
+
+            case XMLStreamConstants.END_DOCUMENT:
+                finished = true;
+                digester.endDocument();
+                digester.cleanup();
+                return false;
+
+            default:
+                // comments and DTD are not reported to SAX content handlers either
+                break;
+        }
+
+        reader.next();
+        return true;
+    }
+
+    /**
+     * Dispatches all the remaining events of the reader to the Digester.
+     *
+     * @param <T> the type used to auto-cast the returned object to the assigned variable type
+     * @return the root element from the object stack (if any)
+     * @throws XMLStreamException if the reader fails to read the document
+     * @throws SAXException if a rule fails
+     */
+    public <T> T parse()
+        throws XMLStreamException, SAXException
+    {
+        while ( step() )
+        {
+            // keep dispatching
+        }
+        return digester.<T> getRoot();
+    }
+
+    private void startElement()
+        throws SAXException
+    {
+        attributes.clear();
+
+        if ( digester.getNamespaceAware() )
+        {
+            for ( int i = 0; i < reader.getNamespaceCount(); i++ )
+            {
+                digester.startPrefixMapping( emptyIfNull( reader.getNamespacePrefix( i ) ),
+                                             emptyIfNull( reader.getNamespaceURI( i ) ) );
+            }
+            for ( int i = 0; i < reader.getAttributeCount(); i++ )
+            {
+                attributes.addAttribute( emptyIfNull( reader.getAttributeNamespace( i ) ),
+                                         reader.getAttributeLocalName( i ),
+                                         qName( reader.getAttributePrefix( i ), reader.getAttributeLocalName( i ) ),
+                                         reader.getAttributeType( i ),
+                                         reader.getAttributeValue( i ) );
+            }
+            digester.startElement( emptyIfNull( reader.getNamespaceURI() ), reader.getLocalName(),
+                                   qName( reader.getPrefix(), reader.getLocalName() ), attributes );
+        }
+        else
+        {
+            // like non namespace aware SAX parsers, report the namespace declarations as attributes
+            for ( int i = 0; i < reader.getNamespaceCount(); i++ )
+            {
+                final String prefix = reader.getNamespacePrefix( i );
+                attributes.addAttribute( "", "", prefix == null || prefix.isEmpty() ? "xmlns" : "xmlns:" + prefix,
+                                         "CDATA", emptyIfNull( reader.getNamespaceURI( i ) ) );
+            }
+            for ( int i = 0; i < reader.getAttributeCount(); i++ )
+            {
+                attributes.addAttribute( "", "",
+                                         qName( reader.getAttributePrefix( i ), reader.getAttributeLocalName( i ) ),
+                                         reader.getAttributeType( i ),
+                                         reader.getAttributeValue( i ) );
+            }
+            digester.startElement( "", "", qName( reader.getPrefix(), reader.getLocalName() ), attributes );
+        }
+    }
+
+    private void endElement()
+        throws SAXException
+    {
+        final String qName = qName( reader.getPrefix(), reader.getLocalName() );
+        if ( digester.getNamespaceAware() )
+        {
+            digester.endElement( emptyIfNull( reader.getNamespaceURI() ), reader.getLocalName(), qName );
+            for ( int i = 0; i < reader.getNamespaceCount(); i++ )
+            {
+                digester.endPrefixMapping( emptyIfNull( reader.getNamespacePrefix( i ) ) );
+            }
+        }
+        else
+        {
+            digester.endElement( "", "", qName );
+        }
+    }
+
+    private static String qName( final String prefix, final String localName )
+    {
+        if ( prefix == null || prefix.isEmpty() )
+        {
+            return localName;
+        }
+        return prefix + ':' + localName;
+    }
+
+    private static String emptyIfNull( final String value )
+    {
+        return value == null ? "" : value;
+    }
+
+    /**
+     * Reports the location of the current event of the reader.
+     */
+    private final class StreamLocator
+        implements Locator
+    {
+
+        @Override
+        public String getPublicId()
+        {
+            final Location location = reader.getLocation();
+            return location != null ? location.getPublicId() : null;
+        }
+
+        @Override
+        public String getSystemId()
+        {
+            final Location location = reader.getLocation();
+            return location != null ? location.getSystemId() : null;
+        }
+
+        @Override
+        public int getLineNumber()
+        {
+            final Location location = reader.getLocation();
+            return location != null ? location.getLineNumber() : -1;
+        }
+
+        @Override
+        public int getColumnNumber()
+        {
+            final Location location = reader.getLocation();
+            return location != null ? location.getColumnNumber() : -1;
+        }
+
+    }
+
+}
@@ -0,0 +1,317 @@
+package org.apache.commons.digester3.binder;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.commons.digester3.Digester;
+import org.xml.sax.InputSource;
+
+/**
+ * Parses a sequence of documents with a bounded number of workers, each one reusing its own {@link Digester}.
+ * <p>
+ * The workers pull the documents from the sequence one at a time, and hand the outcome of each parse over to the
+ * thread that started the batch through a bounded queue: when the results are not consumed fast enough, the workers
+ * wait and stop pulling documents, so that the sequence can be read lazily.
+ *
+ * @param <T> the type of the root objects of the documents
+ * @since 3.3
+ */
+final class BatchParser<T>
+{
+
+    /**
+     * Receives the outcome of each parse, with the position of the document in the sequence.
+     */
+    interface Sink<T>
+    {
+
+        void accept( int index, InputSource input, T root, Exception error )
+            throws Exception;
+
+    }
+
+    private final DigesterLoader loader;
+
+    private final Iterator<? extends InputSource> inputs;
+
+    private final int maxConcurrency;
+
+    private final BlockingQueue<Outcome<T>> outcomes;
+
+    /**
+     * The Digester instances of the running workers, stopped when the batch is cancelled.
+     */
+    private final List<Digester> digesters = new ArrayList<Digester>();
+
+    /**
+     * The position of the next document, guarded by {@link #inputs}.
+     */
+    private int nextIndex;
+
+    private volatile boolean cancelled;
+
+    BatchParser( final DigesterLoader loader, final Iterable<? extends InputSource> inputs, final int maxConcurrency )
+    {
+        if ( inputs == null )
+        {
+            throw new IllegalArgumentException( "Parameter 'inputs' must not be null" );
+        }
+        if ( maxConcurrency < 1 )
+        {
+            throw new IllegalArgumentException( "The maximum concurrency must be positive, found " + maxConcurrency );
+        }
+        this.loader = loader;
+        this.inputs = inputs.iterator();
+        this.maxConcurrency = maxConcurrency;
+        this.outcomes = new ArrayBlockingQueue<Outcome<T>>( maxConcurrency );
+    }
+
+    /**
+     * Parses all the documents, handing the outcome of each parse over to the given sink on the current thread.
+     *
+     * @param sink receives the outcome of each parse
+     * @throws Exception the first exception thrown by the sink, or by the sequence of documents, or the rejection of
+     *         a worker by the executor
+     */
+    void run( final Sink<T> sink )
+        throws Exception
+    {
+        final Executor executor = loader.getExecutorService();
+        Throwable failure = null;
+        int running = 0;
+        while ( running < maxConcurrency )
+        {
+            final Worker worker = new Worker();
+            if ( executor != null )
+            {
+                try
+                {
+                    executor.execute( worker );
+                }
+                catch ( final RejectedExecutionException e )
+                {
+                    // only wait for the workers already started
+                    failure = e;
+                    cancel();
+                    break;
+                }
+            }
+            else
+            {
+                final Thread thread = new Thread( worker, "Digester batch worker" );
+                thread.setDaemon( true );
+                thread.start();
+            }
+            running++;
+        }
+
+        boolean interrupted = false;
+        while ( running > 0 )
+        {
+            final Outcome<T> outcome;
+            try
+            {
+                outcome = outcomes.take();
+            }
+            catch ( final InterruptedException e )
+            {
+                // keep draining the outcomes, so that no worker stays blocked
+                interrupted = true;
+                if ( failure == null )
+                {
+                    failure = e;
+                    cancel();
+                }
+                continue;
+            }
+
+            if ( outcome.input == null )
+            {
+                running--;
+                if ( outcome.error != null && failure == null )
+                {
+                    failure = outcome.error;
+                    cancel();
+                }
+            }
+            else if ( failure == null )
+            {
+                try
+                {
+                    sink.accept( outcome.index, outcome.input, outcome.root, (Exception) outcome.error );
+                }
+                catch ( final Exception e )
+                {
+                    failure = e;
+                    cancel();
+                }
+            }
+        }
+
+        if ( interrupted )
+        {
+            Thread.currentThread().interrupt();
+        }
+        if ( failure instanceof Error )
+        {
+            throw (Error) failure;
+        }
+        if ( failure != null )
+        {
+            throw (Exception) failure;
+        }
+    }
+
+    private void cancel()
+    {
+        cancelled = true;
+        synchronized ( digesters )
+        {
+            for ( final Digester digester : digesters )
+            {
+                digester.stop();
+            }
+        }
+    }
+
+    /**
+     * Parses documents pulled from the sequence with its own Digester, until the sequence is exhausted.
+     */
+    private final class Worker
+        implements Runnable
+    {
+
+        @Override
+        public void run()
+        {
+            Throwable fatal = null;
+            try
+            {
+                final Digester digester;
+                // neither the SAXParserFactory nor the rule providers of the loader are thread-safe
+                synchronized ( loader )
+                {
+                    digester = loader.newDigester();
+                }
+                synchronized ( digesters )
+                {
+                    digesters.add( digester );
+                }
+
+                while ( !cancelled )
+                {
+                    final InputSource input;
+                    final int index;
+                    synchronized ( inputs )
+                    {
+                        if ( cancelled || !inputs.hasNext() )
+                        {
+                            break;
+                        }
+                        input = inputs.next();
+                        index = nextIndex++;
+                    }
+                    if ( input == null )
+                    {
+                        throw new IllegalArgumentException( "InputSource to parse is null, at index " + index );
+                    }
+
+                    T root = null;
+                    Exception error = null;
+                    try
+                    {
+                        root = digester.<T> parse( input );
+                    }
+                    catch ( final Exception e )
+                    {
+                        error = e;
+                    }
+                    finally
+                    {
+                        digester.reset();
+                    }
+                    outcomes.put( new Outcome<T>( index, input, root, error ) );
+                }
+            }
+            catch ( final Throwable t )
+            {
+                fatal = t;
+            }
+            finally
+            {
+                putUninterruptibly( new Outcome<T>( -1, null, null, fatal ) );
+            }
+        }
+
+        private void putUninterruptibly( final Outcome<T> outcome )
+        {
+            boolean interrupted = false;
+            while ( true )
+            {
+                try
+                {
+                    outcomes.put( outcome );
+                    break;
+                }
+                catch ( final InterruptedException e )
+                {
+                    interrupted = true;
+                }
+            }
+            if ( interrupted )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+    }
+
+    /**
+     * The outcome of a parse, or the end of a worker if the input is null.
+     */
+    private static final class Outcome<T>
+    {
+
+        final int index;
+
+        final InputSource input;
+
+        final T root;
+
+        final Throwable error;
+
+        Outcome( final int index, final InputSource input, final T root, final Throwable error )
+        {
+            this.index = index;
+            this.input = input;
+            this.root = root;
+            this.error = error;
+        }
+
+    }
+
+}
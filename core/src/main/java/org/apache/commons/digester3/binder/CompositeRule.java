@@ -0,0 +1,224 @@
+package org.apache.commons.digester3.binder;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.digester3.Digester;
+import org.apache.commons.digester3.ObjectCreateRule;
+import org.apache.commons.digester3.Rule;
+import org.apache.commons.digester3.RuleCallback;
+import org.apache.commons.digester3.SetNextRule;
+import org.apache.commons.digester3.SetPropertiesRule;
+import org.xml.sax.Attributes;
+
+/**
+ * A chain of rules registered one after the other on the same pattern, dispatched as a single rule.
+ * <p>
+ * The Digester invokes the callbacks of the chained rules in the order they would have been invoked if they had been
+ * registered separately: {@code begin}, {@code body} and {@code finish} in registration order, {@code end} in reverse
+ * order. Only the callbacks the chained rules require are invoked.
+ *
+ * @since 3.3
+ */
+final class CompositeRule
+    extends Rule
+{
+
+    private final Rule[] rules;
+
+    private final Rule[] beginRules;
+
+    private final Rule[] bodyRules;
+
+    /**
+     * The rules requiring the end callback, in reverse registration order.
+     */
+    private final Rule[] endRules;
+
+    private final Rule[] finishRules;
+
+    /**
+     * Creates a new rule dispatching the callbacks to the given rules.
+     *
+     * @param rules the chained rules, in registration order
+     */
+    CompositeRule( final List<Rule> rules )
+    {
+        this.rules = rules.toArray( new Rule[rules.size()] );
+        this.beginRules = requiring( this.rules, RuleCallback.BEGIN );
+        this.bodyRules = requiring( this.rules, RuleCallback.BODY );
+        final Rule[] endRules = requiring( this.rules, RuleCallback.END );
+        for ( int i = 0, j = endRules.length - 1; i < j; i++, j-- )
+        {
+            final Rule rule = endRules[i];
+            endRules[i] = endRules[j];
+            endRules[j] = rule;
+        }
+        this.endRules = endRules;
+        this.finishRules = requiring( this.rules, RuleCallback.FINISH );
+    }
+
+    private static Rule[] requiring( final Rule[] rules, final RuleCallback callback )
+    {
+        final List<Rule> requiring = new ArrayList<Rule>( rules.length );
+        for ( final Rule rule : rules )
+        {
+            if ( rule.requires( callback ) )
+            {
+                requiring.add( rule );
+            }
+        }
+        return requiring.toArray( new Rule[requiring.size()] );
+    }
+
+    /**
+     * Checks whether the given rule can be fused with rules registered just before or after it on the same pattern.
+     * Only the bundled rules that create an object, set its properties and link it to its parent are fused, so that
+     * rules looked up in the {@link org.apache.commons.digester3.Rules} of a Digester are found as registered.
+     *
+     * @param rule the rule to check
+     * @param first true, if the rule would be the first of the chain
+     * @return true, if the rule can be fused
+     */
+    static boolean isFusable( final Rule rule, final boolean first )
+    {
+        if ( rule == null )
+        {
+            return false;
+        }
+        if ( first )
+        {
+            return rule.getClass() == ObjectCreateRule.class;
+        }
+        return rule.getClass() == SetPropertiesRule.class || rule.getClass() == SetNextRule.class;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDigester( final Digester digester )
+    {
+        super.setDigester( digester );
+        for ( final Rule rule : rules )
+        {
+            rule.setDigester( digester );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setNamespaceURI( final String namespaceURI )
+    {
+        super.setNamespaceURI( namespaceURI );
+        for ( final Rule rule : rules )
+        {
+            rule.setNamespaceURI( namespaceURI );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean requires( final RuleCallback callback )
+    {
+        switch ( callback )
+        {
+            case BEGIN:
+                return beginRules.length > 0;
+            case BODY:
+                return bodyRules.length > 0;
+            case END:
+                return endRules.length > 0;
+            case FINISH:
+                return finishRules.length > 0;
+            default:
+                return super.requires( callback );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void begin( final String namespace, final String name, final Attributes attributes )
+        throws Exception
+    {
+        for ( final Rule rule : beginRules )
+        {
+            rule.begin( namespace, name, attributes );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void body( final String namespace, final String name, final String text )
+        throws Exception
+    {
+        for ( final Rule rule : bodyRules )
+        {
+            rule.body( namespace, name, text );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void end( final String namespace, final String name )
+        throws Exception
+    {
+        for ( final Rule rule : endRules )
+        {
+            rule.end( namespace, name );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void finish()
+        throws Exception
+    {
+        for ( final Rule rule : finishRules )
+        {
+            rule.finish();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return "CompositeRule" + Arrays.toString( rules );
+    }
+
+}
@@ -24,7 +24,6 @@ import static java.lang.String.format;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.apache.commons.digester3.RuleSet;
 
 /**
  * The default Digester EDSL implementation.
@@ -214,7 +213,7 @@ final class DefaultRulesBinder
      *
      * @return
      */
-    RuleSet getFromBinderRuleSet()
+    FromBinderRuleSet getFromBinderRuleSet()
     {
         return fromBinderRuleSet;
     }
@@ -21,23 +21,35 @@ package org.apache.commons.digester3.binder;
 
 import static org.apache.commons.digester3.binder.BinderClassLoader.createBinderClassLoader;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Formatter;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 import javax.xml.validation.Schema;
 
+import org.apache.commons.beanutils.ConvertUtilsBean;
 import org.apache.commons.digester3.Digester;
+import org.apache.commons.digester3.IntrospectionCache;
+import org.apache.commons.digester3.PathAutomatonRules;
+import org.apache.commons.digester3.RecordIterator;
 import org.apache.commons.digester3.RuleSet;
 import org.apache.commons.digester3.Rules;
 import org.apache.commons.digester3.RulesBase;
@@ -45,6 +57,7 @@ import org.apache.commons.digester3.StackAction;
 import org.apache.commons.digester3.Substitutor;
 import org.xml.sax.EntityResolver;
 import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
 import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXNotRecognizedException;
@@ -125,6 +138,16 @@ public final class DigesterLoader
      */
     private Substitutor substitutor;
 
+    /**
+     * The registry used by the rules to convert strings, null to use the one of BeanUtils.
+     */
+    private ConvertUtilsBean convertUtils;
+
+    /**
+     * The properties of the bean classes, shared by all the Digester instances created by this loader.
+     */
+    private final IntrospectionCache introspectionCache = new IntrospectionCache();
+
     /**
      * The EntityResolver used by the SAX parser. By default it use this class
      */
@@ -141,6 +164,18 @@ public final class DigesterLoader
      */
     private ExecutorService executorService;
 
+    /**
+     * Whether the documents are parsed on a thread of their own, while the rules are fired on the calling thread.
+     * @since 3.3
+     */
+    private boolean pipelined;
+
+    /**
+     * Whether the rules bound one after the other to the same pattern are added as a single rule.
+     * @since 3.3
+     */
+    private boolean fusingRules;
+
     /**
      * The application-supplied error handler that is notified when parsing warnings, errors, or fatal errors occur.
      * @since 3.2
@@ -153,6 +188,18 @@ public final class DigesterLoader
      */
     private Locator locator = null;
 
+    /**
+     * The rules compiled by {@link #compile()}, used as template by the default {@link Rules} of new Digester
+     * instances.
+     */
+    private volatile PathAutomatonRules compiledRules;
+
+    /**
+     * The Digester instances borrowed by the asynchronous parse tasks, created on first use unless set, guarded by this
+     * loader.
+     */
+    private DigesterPool asyncPool;
+
     /**
      * Creates a new {@link DigesterLoader} instance given a collection of {@link RulesModule} instance.
      *
@@ -207,6 +254,7 @@ public final class DigesterLoader
         {
             rulesModule.configure( rulesBinder );
         }
+        compiledRules = null;
 
         return this;
     }
@@ -224,6 +272,24 @@ public final class DigesterLoader
         return this;
     }
 
+    /**
+     * Sets the registry used by the rules of the Digester instances to convert strings.
+     * <p>
+     * The registry is shared by all the Digester instances created by this loader, which may parse documents in
+     * different threads: converters must be registered before the first parse.
+     *
+     * @param convertUtils the registry used by the rules to convert strings,
+     *        or null to use the one of {@code BeanUtils}.
+     * @return This loader instance, useful to chain methods.
+     * @see Digester#setConvertUtils(ConvertUtilsBean)
+     * @since 3.3
+     */
+    public DigesterLoader setConvertUtils( final ConvertUtilsBean convertUtils )
+    {
+        this.convertUtils = convertUtils;
+        return this;
+    }
+
     /**
      * Set the "namespace aware" flag for parsers we create.
      *
@@ -434,6 +500,96 @@ public final class DigesterLoader
         return this;
     }
 
+    /**
+     * Returns the pool the tasks started by {@link #asyncParse(InputSource, Executor)} borrow their Digester from. By
+     * default, a pool retaining as many idle Digester instances as available processors is created on first use.
+     *
+     * @return the pool the asynchronous parse tasks borrow their Digester from
+     * @since 3.3
+     */
+    public synchronized DigesterPool getAsyncPool()
+    {
+        if ( asyncPool == null )
+        {
+            asyncPool = newDigesterPool( Runtime.getRuntime().availableProcessors() );
+        }
+        return asyncPool;
+    }
+
+    /**
+     * Sets the pool the tasks started by {@link #asyncParse(InputSource, Executor)} borrow their Digester from, for
+     * instance a pool {@link #newDigesterPool(int, int, boolean) bounding} the number of Digester instances, or
+     * retaining more idle instances when the executor runs more threads than available processors. The pool should be
+     * created by this loader.
+     *
+     * @param asyncPool the pool the asynchronous parse tasks borrow their Digester from, null to use the default one
+     * @return This loader instance, useful to chain methods.
+     * @since 3.3
+     */
+    public synchronized DigesterLoader setAsyncPool( final DigesterPool asyncPool )
+    {
+        this.asyncPool = asyncPool;
+        return this;
+    }
+
+    /**
+     * Checks whether the Digester instances created by this loader parse the documents on a thread of their own.
+     *
+     * @return true, if the documents are parsed on a thread of their own
+     * @since 3.3
+     */
+    public boolean isPipelined()
+    {
+        return pipelined;
+    }
+
+    /**
+     * Sets whether the Digester instances created by this loader parse the documents on a thread of their own, while
+     * the rules are fired on the thread calling {@code parse}.
+     *
+     * @param pipelined true, if the documents are parsed on a thread of their own
+     * @return This loader instance, useful to chain methods.
+     * @see Digester#setPipelined(boolean)
+     * @since 3.3
+     */
+    public DigesterLoader setPipelined( final boolean pipelined )
+    {
+        this.pipelined = pipelined;
+        return this;
+    }
+
+    /**
+     * Checks whether the rules bound one after the other to the same pattern are added as a single rule.
+     *
+     * @return true, if the chained rules are added as a single rule
+     * @since 3.3
+     */
+    public boolean isFusingRules()
+    {
+        return fusingRules;
+    }
+
+    /**
+     * Sets whether the rules bound one after the other to the same pattern and namespace, an
+     * {@link org.apache.commons.digester3.ObjectCreateRule} followed by a
+     * {@link org.apache.commons.digester3.SetPropertiesRule} and/or a {@link org.apache.commons.digester3.SetNextRule},
+     * are added to the Digester instances as a single rule, so that the Digester matches and dispatches one rule
+     * rather than each of them. The callbacks of the chained rules are invoked in the same order as if they were added
+     * separately, but {@link Rules#rules()} and {@link Rules#match(String, String, String, org.xml.sax.Attributes)}
+     * return the single rule standing for them instead of the bound rules. Disabled by default; changing it after
+     * {@link #compile()} requires compiling again.
+     *
+     * @param fusingRules true, if the chained rules are added as a single rule
+     * @return This loader instance, useful to chain methods.
+     * @since 3.3
+     */
+    public DigesterLoader setFusingRules( final boolean fusingRules )
+    {
+        this.fusingRules = fusingRules;
+        rulesBinder.getFromBinderRuleSet().setFusingRules( fusingRules );
+        return this;
+    }
+
     /**
      * Return the error handler for this Digester.
      *
@@ -482,6 +638,38 @@ public final class DigesterLoader
         return this;
     }
 
+    /**
+     * Compiles once the rules bound to this loader, for all the {@link Digester} instances this loader creates
+     * afterwards.
+     * <p>
+     * The rules that can be {@link org.apache.commons.digester3.Rule#copy() copied}, such as
+     * {@link org.apache.commons.digester3.CallMethodRule} or
+     * {@link org.apache.commons.digester3.BeanPropertySetterRule}, are built once: each Digester gets its own copies,
+     * with their own per-parse state, instead of instances built again by the rule builders. The other rules are still
+     * built for each Digester. Besides, the Digester instances created with the default {@link Rules} implementation
+     * rely on {@link PathAutomatonRules} rather than {@link RulesBase}: they no longer compile the patterns, nor build
+     * their transition tables, since the compiled automaton is immutable and thread-safe. Compiling again is only
+     * needed when the class loader changes.
+     *
+     * @return This loader instance, useful to chain methods.
+     * @since 3.3
+     */
+    public DigesterLoader compile()
+    {
+        final RuleSet ruleSet = createRuleSet();
+        rulesBinder.getFromBinderRuleSet().compileRules();
+
+        final PathAutomatonRules rules = new PathAutomatonRules();
+        final Digester digester = new Digester();
+        digester.setClassLoader( classLoader.getAdaptedClassLoader() );
+        digester.setRules( rules );
+        ruleSet.addRuleInstances( digester );
+        // compiles the automaton before the template is shared
+        rules.getInitialState();
+        compiledRules = rules;
+        return this;
+    }
+
     /**
      * Creates a new {@link Digester} instance that relies on the default {@link Rules} implementation.
      *
@@ -489,7 +677,7 @@ public final class DigesterLoader
      */
     public Digester newDigester()
     {
-        return this.newDigester( new RulesBase() );
+        return this.newDigester( newDefaultRules() );
     }
 
     /**
@@ -523,7 +711,7 @@ public final class DigesterLoader
      */
     public Digester newDigester( final SAXParser parser )
     {
-        return newDigester( parser, new RulesBase() );
+        return newDigester( parser, newDefaultRules() );
     }
 
     /**
@@ -563,7 +751,7 @@ public final class DigesterLoader
      */
     public Digester newDigester( final XMLReader reader )
     {
-        return this.newDigester( reader, new RulesBase() );
+        return this.newDigester( reader, newDefaultRules() );
     }
 
     /**
@@ -593,11 +781,14 @@ public final class DigesterLoader
         digester.setClassLoader( classLoader.getAdaptedClassLoader() );
         digester.setRules( rules );
         digester.setSubstitutor( substitutor );
+        digester.setConvertUtils( convertUtils );
+        digester.setIntrospectionCache( introspectionCache );
         digester.registerAll( entityValidator );
         digester.setEntityResolver( entityResolver );
         digester.setStackAction( stackAction );
         digester.setNamespaceAware( isNamespaceAware() );
         digester.setExecutorService( executorService );
+        digester.setPipelined( pipelined );
         digester.setErrorHandler( errorHandler );
         digester.setDocumentLocator( locator );
 
@@ -606,6 +797,276 @@ public final class DigesterLoader
         return digester;
     }
 
+    /**
+     * Creates a new {@link DigesterPool} that shares among threads up to {@code maxIdle} idle {@link Digester}
+     * instances created by this loader.
+     *
+     * @param maxIdle The maximum number of idle Digester instances retained by the pool
+     * @return a new {@link DigesterPool} instance
+     * @since 3.3
+     */
+    public DigesterPool newDigesterPool( final int maxIdle )
+    {
+        return newDigesterPool( maxIdle, false );
+    }
+
+    /**
+     * Creates a new {@link DigesterPool} that shares among threads up to {@code maxIdle} idle {@link Digester}
+     * instances created by this loader, optionally keeping aside for each thread the last instance it released.
+     *
+     * @param maxIdle The maximum number of idle Digester instances shared by all the threads
+     * @param threadAffinity True, if each thread should get back the last Digester instance it released
+     * @return a new {@link DigesterPool} instance
+     * @since 3.3
+     */
+    public DigesterPool newDigesterPool( final int maxIdle, final boolean threadAffinity )
+    {
+        return new DigesterPool( this, maxIdle, Integer.MAX_VALUE, threadAffinity );
+    }
+
+    /**
+     * Creates a new {@link DigesterPool} that creates at most {@code maxTotal} {@link Digester} instances with this
+     * loader, and shares among threads up to {@code maxIdle} idle ones. Threads borrowing an instance wait for one to
+     * be released once all the instances have been borrowed.
+     *
+     * @param maxIdle The maximum number of idle Digester instances shared by all the threads
+     * @param maxTotal The maximum number of Digester instances, borrowed and idle ones together
+     * @param threadAffinity True, if each thread should get back the last Digester instance it released
+     * @return a new {@link DigesterPool} instance
+     * @since 3.3
+     */
+    public DigesterPool newDigesterPool( final int maxIdle, final int maxTotal, final boolean threadAffinity )
+    {
+        return new DigesterPool( this, maxIdle, maxTotal, threadAffinity );
+    }
+
+    /**
+     * Parses the given document lazily with a new {@link Digester} instance, returning the records built at the given
+     * pattern as they are iterated over.
+     *
+     * @param <T> the type of the records
+     * @param pattern Element matching pattern of the records
+     * @param recordType the type of the records
+     * @param input Input source containing the XML data to be parsed
+     * @return the iterator over the records, that should be closed if not iterated to the end
+     * @see Digester#iterate(String, Class, InputSource)
+     * @since 3.3
+     */
+    public <T> RecordIterator<T> iterate( final String pattern, final Class<T> recordType, final InputSource input )
+    {
+        return newDigester().iterate( pattern, recordType, input );
+    }
+
+    /**
+     * Parses the given documents concurrently, returning their root objects in the order of the documents.
+     * <p>
+     * At most {@code maxConcurrency} documents are parsed at the same time, by workers running on the
+     * {@link #getExecutorService() executor service} if any, or on threads of their own otherwise. Each worker parses
+     * the documents with its own {@link Digester}, created by this loader and reused from a document to the other.
+     * The documents are pulled from the sequence as workers become available: an {@code InputSource} holding a system
+     * ID only is opened by the worker parsing it.
+     *
+     * @param <T> the type of the root objects of the documents
+     * @param inputs the documents to parse
+     * @param maxConcurrency the maximum number of documents parsed at the same time
+     * @return the root objects of the documents, in the order of the documents
+     * @throws IOException if a document cannot be read, which cancels the remaining documents
+     * @throws SAXException if a document cannot be parsed, which cancels the remaining documents
+     * @since 3.3
+     */
+    public <T> List<T> parseAll( final Iterable<? extends InputSource> inputs, final int maxConcurrency )
+        throws IOException, SAXException
+    {
+        final List<T> roots = new ArrayList<T>();
+        try
+        {
+            new BatchParser<T>( this, inputs, maxConcurrency ).run( new BatchParser.Sink<T>()
+            {
+
+                @Override
+                public void accept( final int index, final InputSource input, final T root, final Exception error )
+                    throws Exception
+                {
+                    if ( error != null )
+                    {
+                        throw error;
+                    }
+                    while ( roots.size() <= index )
+                    {
+                        roots.add( null );
+                    }
+                    roots.set( index, root );
+                }
+
+            } );
+        }
+        catch ( final IOException e )
+        {
+            throw e;
+        }
+        catch ( final SAXException e )
+        {
+            throw e;
+        }
+        catch ( final RuntimeException e )
+        {
+            throw e;
+        }
+        catch ( final InterruptedException e )
+        {
+            throw new InterruptedIOException( "Interrupted while parsing the documents" );
+        }
+        catch ( final Exception e )
+        {
+            throw new SAXException( e );
+        }
+        return roots;
+    }
+
+    /**
+     * Parses the given documents concurrently, handing the outcome of each parse over to the given callback as soon as
+     * it is available.
+     * <p>
+     * At most {@code maxConcurrency} documents are parsed at the same time, by workers running on the
+     * {@link #getExecutorService() executor service} if any, or on threads of their own otherwise. Each worker parses
+     * the documents with its own {@link Digester}, created by this loader and reused from a document to the other.
+     * The documents are pulled from the sequence as workers become available, and the workers wait while the callback
+     * is busy, so that a large sequence of documents, like a directory listing, is read lazily. An
+     * {@code InputSource} holding a system ID only is opened by the worker parsing it.
+     * <p>
+     * Documents that fail to be parsed are reported to the callback, and do not cancel the other documents.
+     *
+     * @param <T> the type of the root objects of the documents
+     * @param inputs the documents to parse
+     * @param maxConcurrency the maximum number of documents parsed at the same time
+     * @param callback receives the outcome of each parse, on the current thread
+     * @throws Exception the first exception thrown by the callback, which cancels the remaining documents
+     * @since 3.3
+     */
+    public <T> void parseAll( final Iterable<? extends InputSource> inputs, final int maxConcurrency,
+                              final ParseCallback<T> callback )
+        throws Exception
+    {
+        if ( callback == null )
+        {
+            throw new IllegalArgumentException( "Parameter 'callback' must not be null" );
+        }
+
+        new BatchParser<T>( this, inputs, maxConcurrency ).run( new BatchParser.Sink<T>()
+        {
+
+            @Override
+            public void accept( final int index, final InputSource input, final T root, final Exception error )
+                throws Exception
+            {
+                if ( error != null )
+                {
+                    callback.failed( input, error );
+                }
+                else
+                {
+                    callback.parsed( input, root );
+                }
+            }
+
+        } );
+    }
+
+    /**
+     * Parses the given document asynchronously on the given executor, with a {@link Digester} borrowed for the task.
+     * <p>
+     * Unlike {@link Digester#asyncParse(InputSource)}, the task does not share a Digester with other tasks: it borrows
+     * one from the {@link #getAsyncPool() pool} of this loader, and gives it back once done, so that any number of
+     * documents can be parsed concurrently. The executor can run each task on a thread of its own, which suits
+     * I/O-bound documents read from slow sources.
+     *
+     * @param <T> the type of the root object of the document
+     * @param input Input source containing the XML data to be parsed
+     * @param executor the executor running the parse task
+     * @return a Future that can be used to track when the parse has been fully processed
+     * @since 3.3
+     */
+    public <T> Future<T> asyncParse( final InputSource input, final Executor executor )
+    {
+        return asyncParse( input, executor, null );
+    }
+
+    /**
+     * Parses the given document asynchronously on the given executor, with a {@link Digester} borrowed for the task,
+     * handing the outcome of the parse over to the given callback once done.
+     * <p>
+     * The callback is invoked by the task, on the thread of the executor that ran it: it must be thread-safe if
+     * several documents are parsed concurrently. If the callback throws an exception, the returned Future fails with
+     * that exception.
+     *
+     * @param <T> the type of the root object of the document
+     * @param input Input source containing the XML data to be parsed
+     * @param executor the executor running the parse task
+     * @param callback receives the outcome of the parse, null if none
+     * @return a Future that can be used to track when the parse, and the callback, have been fully processed
+     * @see #asyncParse(InputSource, Executor)
+     * @since 3.3
+     */
+    public <T> Future<T> asyncParse( final InputSource input, final Executor executor,
+                                     final ParseCallback<? super T> callback )
+    {
+        if ( input == null )
+        {
+            throw new IllegalArgumentException( "InputSource to parse is null" );
+        }
+        if ( executor == null )
+        {
+            throw new IllegalArgumentException( "Parameter 'executor' must not be null" );
+        }
+
+        final DigesterPool pool = getAsyncPool();
+        final FutureTask<T> task = new FutureTask<T>( new Callable<T>()
+        {
+
+            @Override
+            public T call()
+                throws Exception
+            {
+                final T root;
+                try
+                {
+                    root = pool.<T> parse( input );
+                }
+                catch ( final Exception e )
+                {
+                    if ( callback != null )
+                    {
+                        callback.failed( input, e );
+                    }
+                    throw e;
+                }
+                if ( callback != null )
+                {
+                    callback.parsed( input, root );
+                }
+                return root;
+            }
+
+        } );
+        executor.execute( task );
+        return task;
+    }
+
+    /**
+     * Creates the default {@link Rules} implementation, sharing the compiled rules if any.
+     *
+     * @return the default {@link Rules} implementation
+     */
+    private Rules newDefaultRules()
+    {
+        final PathAutomatonRules template = compiledRules;
+        if ( template != null )
+        {
+            return new PathAutomatonRules( template );
+        }
+        return new RulesBase();
+    }
+
     /**
      * Add rules to an already created Digester instance, analyzing the digester annotations in the target class.
      *
@@ -0,0 +1,317 @@
+package org.apache.commons.digester3.binder;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.digester3.Digester;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * A thread-safe pool of {@link Digester} instances created by a {@link DigesterLoader}.
+ * <p>
+ * Digester instances are not thread-safe, and creating one for each document means instantiating all its rules and a
+ * new SAX parser. A pool lets concurrent threads reuse idle instances instead: a thread {@link #borrow()}s a Digester,
+ * parses one document with it and {@link #release(Digester)}s it, which resets it with {@link Digester#reset()}.
+ * <p>
+ * At most {@code maxIdle} released instances are retained, the others being discarded. Unless the pool is bounded,
+ * a new instance is created when no idle instance is available. A bounded pool creates at most {@code maxTotal}
+ * instances, borrowed and idle ones together, and {@link #borrow()} waits for an instance to be released once they
+ * all have been borrowed. With thread affinity enabled, a thread gets back the last Digester it released first, if
+ * no other thread borrowed it in the meantime, so a thread parsing documents in a loop usually gets the same instance.
+ *
+ * @since 3.3
+ */
+public final class DigesterPool
+{
+
+    /**
+     * The loader used to create new Digester instances.
+     */
+    private final DigesterLoader loader;
+
+    /**
+     * The idle Digester instances, shared by all the threads.
+     */
+    private final BlockingQueue<Digester> idle;
+
+    /**
+     * The last Digester instance released by each thread, null if thread affinity is disabled.
+     */
+    private final ThreadLocal<Digester> affinity;
+
+    /**
+     * The maximum number of Digester instances, borrowed and idle ones together.
+     */
+    private final int maxTotal;
+
+    /**
+     * The number of Digester instances created and not discarded yet, guarded by this pool.
+     */
+    private int total;
+
+    /**
+     * Creates a new pool of Digester instances created by the given loader.
+     *
+     * @param loader The loader used to create new Digester instances
+     * @param maxIdle The maximum number of idle Digester instances
+     * @param maxTotal The maximum number of Digester instances, borrowed and idle ones together, or
+     *        {@code Integer.MAX_VALUE} if the pool is not bounded
+     * @param threadAffinity True, if each thread should get back the last Digester instance it released first
+     */
+    DigesterPool( final DigesterLoader loader, final int maxIdle, final int maxTotal, final boolean threadAffinity )
+    {
+        if ( maxIdle < 1 )
+        {
+            throw new IllegalArgumentException( "The maximum number of idle Digester instances must be positive, found "
+                + maxIdle );
+        }
+        if ( maxTotal < maxIdle )
+        {
+            throw new IllegalArgumentException( "The maximum number of Digester instances must not be less than the "
+                + "maximum number of idle instances, found " + maxTotal + " < " + maxIdle );
+        }
+        this.loader = loader;
+        this.idle = new ArrayBlockingQueue<Digester>( maxIdle );
+        this.maxTotal = maxTotal;
+        this.affinity = threadAffinity ? new ThreadLocal<Digester>() : null;
+    }
+
+    /**
+     * Borrows a Digester instance from this pool, creating a new one if no idle instance is available and the pool
+     * is not bounded, or has not created all its instances yet. Otherwise, waits for an instance to be released.
+     * <p>
+     * The Digester must be used by the current thread only, and given back with {@link #release(Digester)} once the
+     * parse is complete.
+     *
+     * @return A Digester instance ready to parse a document
+     * @throws IllegalStateException if the current thread has been interrupted while waiting for an instance
+     */
+    public Digester borrow()
+    {
+        try
+        {
+            return borrow( Long.MAX_VALUE, TimeUnit.NANOSECONDS );
+        }
+        catch ( final InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "Interrupted while waiting for an idle Digester instance", e );
+        }
+    }
+
+    /**
+     * Borrows a Digester instance from this pool, creating a new one if no idle instance is available and the pool
+     * is not bounded, or has not created all its instances yet. Otherwise, waits up to the given time for an
+     * instance to be released.
+     * <p>
+     * The Digester must be used by the current thread only, and given back with {@link #release(Digester)} once the
+     * parse is complete.
+     *
+     * @param timeout The maximum time to wait for an instance to be released
+     * @param unit The unit of the timeout
+     * @return A Digester instance ready to parse a document, or null if the timeout elapsed
+     * @throws InterruptedException if the current thread has been interrupted while waiting for an instance
+     */
+    public Digester borrow( final long timeout, final TimeUnit unit )
+        throws InterruptedException
+    {
+        if ( affinity != null )
+        {
+            final Digester digester = affinity.get();
+            if ( digester != null )
+            {
+                affinity.remove();
+                if ( idle.remove( digester ) )
+                {
+                    return digester;
+                }
+            }
+        }
+
+        final Digester digester = idle.poll();
+        if ( digester != null )
+        {
+            return digester;
+        }
+
+        if ( !reserve() )
+        {
+            return idle.poll( timeout, unit );
+        }
+
+        try
+        {
+            // neither the SAXParserFactory nor the rule providers of the loader are thread-safe
+            synchronized ( loader )
+            {
+                return loader.newDigester();
+            }
+        }
+        catch ( final RuntimeException e )
+        {
+            discarded();
+            throw e;
+        }
+    }
+
+    /**
+     * Gives back a Digester instance borrowed from this pool, whether the parse succeeded or failed.
+     * <p>
+     * The Digester is reset and kept for a later {@link #borrow()}, unless the pool already retains the maximum number
+     * of idle instances. The Digester must not be used by the caller anymore.
+     *
+     * @param digester The Digester instance borrowed from this pool
+     */
+    public void release( final Digester digester )
+    {
+        if ( digester == null )
+        {
+            throw new IllegalArgumentException( "Digester to release is null" );
+        }
+
+        digester.reset();
+
+        if ( idle.offer( digester ) )
+        {
+            if ( affinity != null )
+            {
+                affinity.set( digester );
+            }
+        }
+        else
+        {
+            discarded();
+        }
+    }
+
+    /**
+     * Checks whether this pool creates a bounded number of Digester instances.
+     *
+     * @return true, if this pool creates a bounded number of Digester instances
+     */
+    public boolean isBounded()
+    {
+        return maxTotal != Integer.MAX_VALUE;
+    }
+
+    /**
+     * Counts a new instance, unless the pool already created all its instances.
+     *
+     * @return true, if a new instance can be created
+     */
+    private synchronized boolean reserve()
+    {
+        if ( total < maxTotal )
+        {
+            total++;
+            return true;
+        }
+        return false;
+    }
+
+    private synchronized void discarded()
+    {
+        total--;
+    }
+
+    /**
+     * Returns the number of idle Digester instances shared by all the threads.
+     *
+     * @return The number of idle Digester instances shared by all the threads
+     */
+    public int getIdleCount()
+    {
+        return idle.size();
+    }
+
+    /**
+     * Parses the content of the specified input source with a Digester borrowed from this pool.
+     *
+     * @param <T> the type used to auto-cast the returned object to the assigned variable type
+     * @param input Input source containing the XML data to be parsed
+     * @return the root element from the object stack (if any)
+     * @throws IOException if an input/output error occurs
+     * @throws SAXException if a parsing exception occurs
+     * @see Digester#parse(InputSource)
+     */
+    public <T> T parse( final InputSource input )
+        throws IOException, SAXException
+    {
+        final Digester digester = borrow();
+        try
+        {
+            return digester.<T> parse( input );
+        }
+        finally
+        {
+            release( digester );
+        }
+    }
+
+    /**
+     * Parses the content of the specified input stream with a Digester borrowed from this pool.
+     *
+     * @param <T> the type used to auto-cast the returned object to the assigned variable type
+     * @param input Input stream containing the XML data to be parsed
+     * @return the root element from the object stack (if any)
+     * @throws IOException if an input/output error occurs
+     * @throws SAXException if a parsing exception occurs
+     * @see Digester#parse(InputStream)
+     */
+    public <T> T parse( final InputStream input )
+        throws IOException, SAXException
+    {
+        if ( input == null )
+        {
+            throw new IllegalArgumentException( "InputStream to parse is null" );
+        }
+
+        return this.<T> parse( new InputSource( input ) );
+    }
+
+    /**
+     * Parses the content of the specified reader with a Digester borrowed from this pool.
+     *
+     * @param <T> the type used to auto-cast the returned object to the assigned variable type
+     * @param reader Reader containing the XML data to be parsed
+     * @return the root element from the object stack (if any)
+     * @throws IOException if an input/output error occurs
+     * @throws SAXException if a parsing exception occurs
+     * @see Digester#parse(Reader)
+     */
+    public <T> T parse( final Reader reader )
+        throws IOException, SAXException
+    {
+        if ( reader == null )
+        {
+            throw new IllegalArgumentException( "Reader to parse is null" );
+        }
+
+        return this.<T> parse( new InputSource( reader ) );
+    }
+
+}
@@ -22,7 +22,9 @@ package org.apache.commons.digester3.binder;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.digester3.Digester;
@@ -51,6 +53,16 @@ final class FromBinderRuleSet
     private final Map<Key, Collection<AbstractBackToLinkedRuleBuilder<? extends Rule>>> providersIndex =
         new HashMap<Key, Collection<AbstractBackToLinkedRuleBuilder<? extends Rule>>>();
 
+    /**
+     * The rule instances copied for every Digester, keyed by provider, null unless the rules have been compiled.
+     */
+    private volatile Map<AbstractBackToLinkedRuleBuilder<? extends Rule>, Rule> prototypes;
+
+    /**
+     * Whether the rules bound one after the other to the same pattern are added as a single {@link CompositeRule}.
+     */
+    private volatile boolean fusingRules;
+
     /**
      * Register the given rule builder and returns it.
      *
@@ -120,6 +132,38 @@ final class FromBinderRuleSet
     {
         providers.clear();
         providersIndex.clear();
+        prototypes = null;
+    }
+
+    /**
+     * Sets whether the rules bound one after the other to the same pattern, such as an
+     * {@link org.apache.commons.digester3.ObjectCreateRule} followed by a
+     * {@link org.apache.commons.digester3.SetNextRule}, are added as a single {@link CompositeRule}.
+     *
+     * @param fusingRules true, if the chained rules are added as a single rule
+     */
+    void setFusingRules( final boolean fusingRules )
+    {
+        this.fusingRules = fusingRules;
+    }
+
+    /**
+     * Creates once the rules that can be {@link Rule#copy() copied}, so that the Digester instances the rules are
+     * added to afterwards get copies of them, rather than instances built again by the providers.
+     */
+    void compileRules()
+    {
+        final Map<AbstractBackToLinkedRuleBuilder<? extends Rule>, Rule> compiled =
+            new IdentityHashMap<AbstractBackToLinkedRuleBuilder<? extends Rule>, Rule>();
+        for ( final AbstractBackToLinkedRuleBuilder<? extends Rule> provider : providers )
+        {
+            final Rule rule = provider.get();
+            if ( rule != null && rule.copy() != null )
+            {
+                compiled.put( provider, rule );
+            }
+        }
+        prototypes = compiled;
     }
 
     /**
@@ -128,10 +172,73 @@ final class FromBinderRuleSet
     @Override
     public void addRuleInstances( final Digester digester )
     {
+        final Map<AbstractBackToLinkedRuleBuilder<? extends Rule>, Rule> compiled = prototypes;
+        final boolean fusing = fusingRules;
+        AbstractBackToLinkedRuleBuilder<? extends Rule> chainProvider = null;
+        final List<Rule> chain = new ArrayList<Rule>();
+
         for ( final AbstractBackToLinkedRuleBuilder<? extends Rule> provider : providers )
         {
-            digester.addRule( provider.getPattern(), provider.get() );
+            final Rule prototype = compiled == null ? null : compiled.get( provider );
+            final Rule rule = prototype == null ? provider.get() : prototype.copy();
+
+            // rules bound one after the other to the same pattern are fused when they can, ...
+            if ( chainProvider != null
+                && CompositeRule.isFusable( rule, false )
+                && sameKey( chainProvider, provider ) )
+            {
+                chain.add( rule );
+                continue;
+            }
+
+            // ... otherwise the chain, if any, ends here
+            addChain( digester, chainProvider, chain );
+            chainProvider = null;
+
+            if ( fusing && CompositeRule.isFusable( rule, true ) )
+            {
+                chainProvider = provider;
+                chain.add( rule );
+            }
+            else
+            {
+                digester.addRule( provider.getPattern(), rule );
+            }
+        }
+
+        addChain( digester, chainProvider, chain );
+    }
+
+    private static boolean sameKey( final AbstractBackToLinkedRuleBuilder<? extends Rule> provider,
+                                    final AbstractBackToLinkedRuleBuilder<? extends Rule> other )
+    {
+        return new Key( provider.getPattern(), provider.getNamespaceURI() )
+            .equals( new Key( other.getPattern(), other.getNamespaceURI() ) );
+    }
+
+    /**
+     * Adds the chained rules to the Digester, as a single rule if there are more than one, and empties the chain.
+     */
+    private static void addChain( final Digester digester,
+                                  final AbstractBackToLinkedRuleBuilder<? extends Rule> chainProvider,
+                                  final List<Rule> chain )
+    {
+        if ( chain.isEmpty() )
+        {
+            return;
+        }
+
+        if ( chain.size() == 1 )
+        {
+            digester.addRule( chainProvider.getPattern(), chain.get( 0 ) );
+        }
+        else
+        {
+            final CompositeRule composite = new CompositeRule( chain );
+            composite.setNamespaceURI( chainProvider.getNamespaceURI() );
+            digester.addRule( chainProvider.getPattern(), composite );
         }
+        chain.clear();
     }
 
     /**
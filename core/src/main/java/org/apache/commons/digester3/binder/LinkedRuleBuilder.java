@@ -19,6 +19,7 @@ package org.apache.commons.digester3.binder;
  * under the License.
  */
 
+import org.apache.commons.digester3.RecordConsumer;
 import org.apache.commons.digester3.Rule;
 
 /**
@@ -227,6 +228,33 @@ public final class LinkedRuleBuilder
         return addProvider( new SetRootBuilder( keyPattern, namespaceURI, mainBinder, this, methodName, classLoader ) );
     }
 
+    /**
+     * Hands the top object on the stack, a record, to the given consumer once it has been completely built, without
+     * linking it to its parent object.
+     *
+     * @param <T> the type of the records
+     * @param recordType the type of the records
+     * @param consumer the consumer the records are handed to
+     * @return a new {@link RecordBuilder} instance.
+     * @since 3.3
+     */
+    public <T> RecordBuilder<T> consumeRecord( final Class<T> recordType, final RecordConsumer<? super T> consumer )
+    {
+        if ( recordType == null )
+        {
+            mainBinder.addError( "{ forPattern( \"%s\" ).consumeRecord( Class<?>, RecordConsumer<?> ) } "
+                + "null 'recordType' not allowed", keyPattern );
+        }
+        if ( consumer == null )
+        {
+            mainBinder.addError( "{ forPattern( \"%s\" ).consumeRecord( Class<?>, RecordConsumer<?> ) } "
+                + "null 'consumer' not allowed", keyPattern );
+        }
+
+        return addProvider( new RecordBuilder<T>( keyPattern, namespaceURI, mainBinder, this, recordType,
+                                                  consumer ) );
+    }
+
     /**
      * Calls a "set top" method on the top (child) object, passing the (top-1) (parent) object as an argument.
      *
@@ -54,6 +54,13 @@ public final class ObjectCreateBuilder
      */
     private Object[] defaultConstructorArguments;
 
+    /**
+     * Whether a proxy stands for the object until its constructor arguments are known.
+     *
+     * @since 3.3
+     */
+    private boolean useProxy = true;
+
     ObjectCreateBuilder( final String keyPattern, final String namespaceURI, final RulesBinder mainBinder, final LinkedRuleBuilder mainBuilder,
                          final ClassLoader classLoader )
     {
@@ -194,6 +201,20 @@ public final class ObjectCreateBuilder
 
     }
 
+    /**
+     * Allows users to specify whether a proxy stands for the object until its constructor arguments are known.
+     *
+     * @param useProxy true, if a proxy should stand for the object until its constructor arguments are known
+     * @return this builder instance
+     * @see ObjectCreateRule#setUseProxy(boolean)
+     * @since 3.3
+     */
+    public ObjectCreateBuilder usingProxy( final boolean useProxy )
+    {
+        this.useProxy = useProxy;
+        return this;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -210,6 +231,7 @@ public final class ObjectCreateBuilder
         {
             objectCreateRule.setDefaultConstructorArguments( defaultConstructorArguments );
         }
+        objectCreateRule.setUseProxy( useProxy );
 
         return objectCreateRule;
     }
@@ -0,0 +1,58 @@
+package org.apache.commons.digester3.binder;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.xml.sax.InputSource;
+
+/**
+ * Receives the outcome of each document parsed by {@link DigesterLoader#parseAll(Iterable, int, ParseCallback)} or
+ * {@link DigesterLoader#asyncParse(InputSource, java.util.concurrent.Executor, ParseCallback)}.
+ * <p>
+ * When given to {@code parseAll}, the callback is invoked on the thread that called {@code parseAll}, one document at
+ * a time, in the order the documents have been parsed: it does not need to be thread-safe. While the callback is busy,
+ * at most as many parsed documents as the maximum concurrency wait for it, and no more documents are read.
+ *
+ * @param <T> the type of the root objects of the documents
+ * @since 3.3
+ */
+public interface ParseCallback<T>
+{
+
+    /**
+     * Receives the root object of a document that has been parsed.
+     *
+     * @param input the parsed document
+     * @param root the root object of the document, null if none
+     * @throws Exception if the root object cannot be processed, which cancels the remaining documents
+     */
+    void parsed( InputSource input, T root )
+        throws Exception;
+
+    /**
+     * Receives the error a document failed to be parsed with.
+     *
+     * @param input the document that failed to be parsed
+     * @param error the error, usually an {@code IOException} or a {@code SAXException}
+     * @throws Exception if the failure is fatal, which cancels the remaining documents
+     */
+    void failed( InputSource input, Exception error )
+        throws Exception;
+
+}
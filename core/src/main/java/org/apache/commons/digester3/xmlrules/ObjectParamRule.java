@@ -20,7 +20,6 @@ package org.apache.commons.digester3.xmlrules;
  */
 
 import static java.lang.Integer.parseInt;
-import static org.apache.commons.beanutils.ConvertUtils.convert;
 
 import org.apache.commons.digester3.binder.LinkedRuleBuilder;
 import org.apache.commons.digester3.binder.ObjectParamBuilder;
@@ -63,7 +62,7 @@ final class ObjectParamRule
         Object param;
         if ( value != null )
         {
-            param = convert( value, clazz );
+            param = getDigester().getConvertUtils().convert( value, clazz );
         }
         else
         {
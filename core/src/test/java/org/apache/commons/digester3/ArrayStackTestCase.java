@@ -0,0 +1,93 @@
+/* $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.digester3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.EmptyStackException;
+
+import org.junit.Test;
+
+/**
+ * Test Case for {@link ArrayStack}.
+ */
+public class ArrayStackTestCase
+{
+
+    @Test
+    public void testPushPeekPop()
+    {
+        final ArrayStack<String> stack = new ArrayStack<String>();
+        assertTrue( stack.empty() );
+
+        assertEquals( "a", stack.push( "a" ) );
+        stack.push( "b" );
+        stack.push( null );
+        assertFalse( stack.empty() );
+        assertEquals( 3, stack.size() );
+
+        assertEquals( null, stack.peek() );
+        assertEquals( "b", stack.peek( 1 ) );
+        assertEquals( "a", stack.peek( 2 ) );
+        assertEquals( "a", stack.get( 0 ) );
+
+        assertEquals( null, stack.pop() );
+        assertEquals( "b", stack.pop() );
+        assertEquals( "a", stack.pop() );
+        assertTrue( stack.empty() );
+    }
+
+    @Test
+    public void testEmptyStack()
+    {
+        final ArrayStack<String> stack = new ArrayStack<String>();
+        try
+        {
+            stack.pop();
+            fail( "pop() on an empty stack must throw EmptyStackException" );
+        }
+        catch ( final EmptyStackException e )
+        {
+            // expected
+        }
+        try
+        {
+            stack.peek();
+            fail( "peek() on an empty stack must throw EmptyStackException" );
+        }
+        catch ( final EmptyStackException e )
+        {
+            // expected
+        }
+        stack.push( "a" );
+        try
+        {
+            stack.peek( 1 );
+            fail( "peek(1) on a stack with one element must throw EmptyStackException" );
+        }
+        catch ( final EmptyStackException e )
+        {
+            // expected
+        }
+    }
+
+}
@@ -20,7 +20,11 @@ package org.apache.commons.digester3;
 
 import static org.apache.commons.digester3.binder.DigesterLoader.newLoader;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -31,6 +35,8 @@ import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.commons.beanutils.ConvertUtils;
+import org.apache.commons.beanutils.Converter;
 import org.apache.commons.digester3.binder.AbstractRulesModule;
 import org.junit.Test;
 import org.xml.sax.SAXException;
@@ -287,6 +293,93 @@ public class BeanPropertySetterRuleTestCase
         assertEquals( expected.getLastName(), actual.getLastName() );
     }
 
+    /**
+     * Test a copy of a rule, which must be configured like the original one, but associated with its own Digester.
+     */
+    @Test
+    public void testCopy()
+        throws Exception
+    {
+        final BeanPropertySetterRule rule = new BeanPropertySetterRule( "alpha" );
+        rule.setNamespaceURI( "urn:test" );
+        final Digester first = new Digester();
+        first.addObjectCreate( "root", SimpleTestBean.class );
+        first.addRule( "root/value", rule );
+
+        final BeanPropertySetterRule copy = rule.copy();
+        assertNotSame( rule, copy );
+        assertEquals( "alpha", copy.getPropertyName() );
+        assertEquals( "urn:test", copy.getNamespaceURI() );
+        assertNull( copy.getDigester() );
+
+        final Digester second = new Digester();
+        second.addObjectCreate( "root", SimpleTestBean.class );
+        second.addRule( "root/value", copy );
+        assertSame( first, rule.getDigester() );
+        assertSame( second, copy.getDigester() );
+
+        final SimpleTestBean firstBean = first.parse( new StringReader( "<root><value>FIRST</value></root>" ) );
+        final SimpleTestBean secondBean = second.parse( new StringReader( "<root><value>SECOND</value></root>" ) );
+        assertEquals( "FIRST", firstBean.getAlpha() );
+        assertEquals( "SECOND", secondBean.getAlpha() );
+
+        // subclasses may add state of their own
+        assertNull( new BeanPropertySetterRule( "alpha" )
+        {
+        }.copy() );
+    }
+
+    /**
+     * Test setting primitive properties, with the standard and with custom converters.
+     */
+    @Test
+    public void testSetPrimitiveProperties()
+        throws Exception
+    {
+        final Digester digester = new Digester();
+        digester.setRules( new ExtendedBaseRules() );
+        digester.addObjectCreate( "root", TestBean.class );
+        digester.addBeanPropertySetter( "root/?" );
+
+        final String xml = "<root><intProperty> 12 </intProperty><longProperty>-3</longProperty>"
+            + "<doubleProperty>1e3</doubleProperty><booleanProperty>false</booleanProperty>"
+            + "<falseProperty>yes</falseProperty><floatProperty>2.5</floatProperty></root>";
+
+        TestBean bean = digester.parse( new StringReader( xml ) );
+        assertEquals( 12, bean.getIntProperty() );
+        assertEquals( -3, bean.getLongProperty() );
+        assertEquals( 1000, bean.getDoubleProperty(), 0 );
+        assertFalse( bean.getBooleanProperty() );
+        assertTrue( bean.getFalseProperty() );
+        assertEquals( 2.5f, bean.getFloatProperty(), 0 );
+
+        // invalid values are handled by the converter
+        bean = digester.parse( new StringReader( "<root><intProperty>twelve</intProperty></root>" ) );
+        assertEquals( 0, bean.getIntProperty() );
+
+        final Converter standard = ConvertUtils.lookup( Integer.TYPE );
+        ConvertUtils.register( new Converter()
+        {
+
+            @Override
+            @SuppressWarnings( "unchecked" )
+            public <T> T convert( final Class<T> type, final Object value )
+            {
+                return (T) Integer.valueOf( value.toString().trim(), 16 );
+            }
+
+        }, Integer.TYPE );
+        try
+        {
+            bean = digester.parse( new StringReader( xml ) );
+            assertEquals( 0x12, bean.getIntProperty() );
+        }
+        finally
+        {
+            ConvertUtils.register( standard, Integer.TYPE );
+        }
+    }
+
     /**
      * Get input stream from {@link #TEST_XML}.
      */
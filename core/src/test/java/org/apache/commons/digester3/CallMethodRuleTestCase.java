@@ -28,8 +28,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.Set;
+import java.util.TreeSet;
 
 import org.apache.commons.digester3.binder.AbstractRulesModule;
 import org.junit.Test;
@@ -699,6 +702,39 @@ public class CallMethodRuleTestCase
         assertEquals( "OfZip", office.getZipCode() );
     }
 
+    /**
+     * Test invoking the same method on targets of alternating classes.
+     */
+    @Test
+    public void testTargetClassChanges()
+        throws Exception
+    {
+        final Digester digester = new Digester();
+        digester.addObjectCreate( "list", ArrayList.class );
+        digester.addObjectCreate( "list/array", ArrayList.class );
+        digester.addObjectCreate( "list/linked", LinkedList.class );
+        digester.addObjectCreate( "list/tree", TreeSet.class );
+        digester.addSetNext( "list/array", "add" );
+        digester.addSetNext( "list/linked", "add" );
+        digester.addSetNext( "list/tree", "add" );
+        digester.addCallMethod( "*/value", "add", 1, new Class<?>[] { Object.class } );
+        digester.addCallParam( "*/value", 0 );
+
+        final ArrayList<Collection<?>> list =
+            digester.parse( new StringReader( "<list><array><value>a</value></array>"
+                + "<linked><value>b</value><value>c</value></linked>"
+                + "<tree><value>d</value></tree><array><value>e</value></array></list>" ) );
+
+        assertEquals( 4, list.size() );
+        assertEquals( ArrayList.class, list.get( 0 ).getClass() );
+        assertEquals( "[a]", list.get( 0 ).toString() );
+        assertEquals( LinkedList.class, list.get( 1 ).getClass() );
+        assertEquals( "[b, c]", list.get( 1 ).toString() );
+        assertEquals( TreeSet.class, list.get( 2 ).getClass() );
+        assertEquals( "[d]", list.get( 2 ).toString() );
+        assertEquals( "[e]", list.get( 3 ).toString() );
+    }
+
     // ------------------------------------------------ Utility Support Methods
 
     /**
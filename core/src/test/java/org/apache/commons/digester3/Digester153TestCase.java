@@ -24,11 +24,16 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.commons.digester3.annotations.FromAnnotationsRuleModule;
 import org.apache.commons.digester3.binder.AbstractRulesModule;
 import org.apache.commons.digester3.binder.RulesModule;
 import org.apache.commons.digester3.xmlrules.FromXmlRulesModule;
 import org.junit.Test;
+import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
 /**
@@ -88,6 +93,158 @@ public final class Digester153TestCase
         assertEquals( Float.valueOf( 5.5f ), Float.valueOf( bean.getFloatProperty() ) );
     }
 
+    @Test
+    public void constructorWithAttributeAndElementWithoutProxy()
+        throws Exception
+    {
+        final ObjectCreateRule createRule = new ObjectCreateRule( TestBean.class );
+        createRule.setConstructorArgumentTypes( boolean.class, double.class );
+        createRule.setUseProxy( false );
+
+        final Digester digester = new Digester();
+        digester.addRule( "toplevel/bean", createRule );
+        digester.addCallParam( "toplevel/bean", 0, "boolean" );
+        digester.addCallParam( "toplevel/bean/double", 1 );
+        digester.addBeanPropertySetter( "toplevel/bean/float", "floatProperty" );
+
+        for ( int i = 0; i < 2; i++ )
+        {
+            final TestBean bean =
+                digester.parse( getClass().getResourceAsStream( "ConstructorWithAttributeAndElement.xml" ) );
+
+            assertEquals( TestBean.class, bean.getClass() );
+            assertTrue( bean.getBooleanProperty() );
+            assertEquals( 9.99D, bean.getDoubleProperty(), 0 );
+            assertEquals( Float.valueOf( 5.5f ), Float.valueOf( bean.getFloatProperty() ) );
+        }
+    }
+
+    @Test
+    public void constructorWithBodyWithoutProxy()
+        throws Exception
+    {
+        final ObjectCreateRule createRule = new ObjectCreateRule( TestBean.class );
+        createRule.setConstructorArgumentTypes( boolean.class, double.class );
+        createRule.setUseProxy( false );
+
+        final Digester digester = new Digester();
+        digester.addRule( "toplevel/bean", createRule );
+        digester.addCallParam( "toplevel/bean", 0 );
+        digester.addCallParam( "toplevel/bean", 1, "double" );
+        digester.addSetProperties( "toplevel/bean" );
+
+        final TestBean bean = digester.parse( new StringReader( "<toplevel><bean double='9.99' intProperty='7'>true"
+            + "</bean></toplevel>" ) );
+
+        assertTrue( bean.getBooleanProperty() );
+        assertEquals( 9.99D, bean.getDoubleProperty(), 0 );
+        assertEquals( 7, bean.getIntProperty() );
+    }
+
+    @Test( expected = SAXException.class )
+    public void missingAttributePropertyWithoutProxy()
+        throws Exception
+    {
+        final ObjectCreateRule createRule = new ObjectCreateRule( TestBean.class );
+        createRule.setConstructorArgumentTypes( boolean.class, double.class );
+        createRule.setUseProxy( false );
+        final SetPropertiesRule setPropertiesRule = new SetPropertiesRule();
+        setPropertiesRule.setIgnoreMissingProperty( false );
+
+        final Digester digester = new Digester();
+        digester.addRule( "toplevel/bean", createRule );
+        digester.addRule( "toplevel/bean", setPropertiesRule );
+
+        digester.parse( new StringReader( "<toplevel><bean missingProperty='1'/></toplevel>" ) );
+    }
+
+    @Test( expected = SAXException.class )
+    public void missingElementPropertyWithoutProxy()
+        throws Exception
+    {
+        final ObjectCreateRule createRule = new ObjectCreateRule( TestBean.class );
+        createRule.setConstructorArgumentTypes( boolean.class, double.class );
+        createRule.setUseProxy( false );
+
+        final Digester digester = new Digester();
+        digester.addRule( "toplevel/bean", createRule );
+        digester.addBeanPropertySetter( "toplevel/bean/missingProperty" );
+
+        digester.parse( new StringReader( "<toplevel><bean><missingProperty>1</missingProperty></bean></toplevel>" ) );
+    }
+
+    @Test
+    public void constructorWithSetNextWithoutProxy()
+        throws Exception
+    {
+        final ObjectCreateRule createRule = new ObjectCreateRule( TestBean.class );
+        createRule.setConstructorArgumentTypes( boolean.class, double.class );
+        createRule.setUseProxy( false );
+
+        final Digester digester = new Digester();
+        digester.addObjectCreate( "toplevel", ArrayList.class );
+        digester.addRule( "toplevel/bean", createRule );
+        digester.addCallParam( "toplevel/bean", 0, "boolean" );
+        digester.addCallParam( "toplevel/bean", 1, "double" );
+        digester.addSetProperties( "toplevel/bean" );
+        digester.addSetNext( "toplevel/bean", "add" );
+        digester.addCallMethod( "toplevel/bean/float", "setFloatProperty", 0, new Class<?>[] { float.class } );
+
+        final List<TestBean> beans = digester.parse( new StringReader( "<toplevel>"
+            + "<bean boolean='true' double='9.99' intProperty='7'/>"
+            + "<bean double='1.5'><float>5.5</float></bean>"
+            + "</toplevel>" ) );
+
+        assertEquals( 2, beans.size() );
+        assertEquals( TestBean.class, beans.get( 0 ).getClass() );
+        assertTrue( beans.get( 0 ).getBooleanProperty() );
+        assertEquals( 9.99D, beans.get( 0 ).getDoubleProperty(), 0 );
+        assertEquals( 7, beans.get( 0 ).getIntProperty() );
+        assertEquals( TestBean.class, beans.get( 1 ).getClass() );
+        assertFalse( beans.get( 1 ).getBooleanProperty() );
+        assertEquals( 1.5D, beans.get( 1 ).getDoubleProperty(), 0 );
+        assertEquals( Float.valueOf( 5.5f ), Float.valueOf( beans.get( 1 ).getFloatProperty() ) );
+    }
+
+    @Test( expected = SAXException.class )
+    public void constructorArgumentAfterCreationWithoutProxy()
+        throws Exception
+    {
+        final ObjectCreateRule createRule = new ObjectCreateRule( TestBean.class );
+        createRule.setConstructorArgumentTypes( boolean.class, double.class );
+        createRule.setUseProxy( false );
+
+        final Digester digester = new Digester();
+        digester.addRule( "toplevel/bean", createRule );
+        digester.addCallParam( "toplevel/bean/double", 1 );
+        digester.addCallMethod( "toplevel/bean/float", "setFloatProperty", 0, new Class<?>[] { float.class } );
+
+        digester.parse( new StringReader( "<toplevel><bean><float>5.5</float><double>9.99</double></bean>"
+            + "</toplevel>" ) );
+    }
+
+    @Test
+    public void basicConstructorWithoutProxyViaBinder()
+        throws Exception
+    {
+        succesfullConstructor( new AbstractRulesModule()
+        {
+
+            @Override
+            protected void configure()
+            {
+                forPattern( "toplevel/bean" )
+                    .createObject().ofType( TestBean.class ).usingConstructor( boolean.class, double.class )
+                        .usingProxy( false )
+                    .then()
+                    .callParam().fromAttribute( "boolean" ).ofIndex( 0 )
+                    .then()
+                    .callParam().fromAttribute( "double" ).ofIndex( 1 );
+            }
+
+        } );
+    }
+
     @Test
     public void basicConstructorViaBinder()
         throws Exception
@@ -27,16 +27,25 @@ import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.InputStream;
 import java.io.Reader;
 import java.io.StringReader;
 import java.math.BigDecimal;
 import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.EmptyStackException;
 import java.util.Map;
 
+import org.apache.commons.beanutils.BeanUtilsBean;
+import org.apache.commons.beanutils.ConvertUtils;
+import org.apache.commons.beanutils.ConvertUtilsBean;
+import org.apache.commons.beanutils.Converter;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -709,4 +718,187 @@ public class DigesterTestCase
         assertEquals( "pop:stack1:obj9", action.events.get( 10 ) );
         assertEquals( "pop:stack1:obj8", action.events.get( 11 ) );
     }
+
+    /**
+     * The match path and the current element name must be available to rules in every event, while the path of
+     * deeply nested documents is only built on demand.
+     */
+    @Test
+    public void testMatchPath()
+        throws Exception
+    {
+        final ArrayList<String> events = new ArrayList<String>();
+        digester.addRule( "*/c", new Rule()
+        {
+
+            @Override
+            public void begin( final String namespace, final String name, final Attributes attributes )
+            {
+                events.add( "begin:" + getDigester().getMatch() + ":" + getDigester().getCurrentElementName() );
+            }
+
+            @Override
+            public void end( final String namespace, final String name )
+            {
+                events.add( "end:" + getDigester().getMatch() + ":" + getDigester().getCurrentElementName() );
+            }
+
+        } );
+
+        assertEquals( "", digester.getMatch() );
+        digester.parse( new StringReader( "<a><b><c/></b><c><x/><c/></c></a>" ) );
+
+        assertEquals( 6, events.size() );
+        assertEquals( "begin:a/b/c:c", events.get( 0 ) );
+        assertEquals( "end:a/b/c:c", events.get( 1 ) );
+        assertEquals( "begin:a/c:c", events.get( 2 ) );
+        assertEquals( "begin:a/c/c:c", events.get( 3 ) );
+        assertEquals( "end:a/c/c:c", events.get( 4 ) );
+        assertEquals( "end:a/c:c", events.get( 5 ) );
+        assertEquals( "", digester.getMatch() );
+        assertEquals( "", digester.getCurrentElementName() );
+    }
+
+    @Test
+    public void testConvertUtils()
+        throws Exception
+    {
+        final ConvertUtilsBean convertUtils = new ConvertUtilsBean();
+        convertUtils.register( new Converter()
+        {
+
+            @Override
+            @SuppressWarnings( "unchecked" )
+            public <T> T convert( final Class<T> type, final Object value )
+            {
+                return (T) Integer.valueOf( value.toString().trim(), 16 );
+            }
+
+        }, Integer.TYPE );
+
+        final Digester digester = new Digester();
+        assertSame( BeanUtilsBean.getInstance().getConvertUtils(), digester.getConvertUtils() );
+        digester.setConvertUtils( convertUtils );
+        assertSame( convertUtils, digester.getConvertUtils() );
+        digester.addObjectCreate( "root", TestBean.class );
+        digester.addSetProperties( "root" );
+        digester.addCallMethod( "root/int", "setIntProperty", 0, new Class<?>[] { Integer.TYPE } );
+
+        TestBean bean = digester.parse( new StringReader( "<root intProperty='1f'/>" ) );
+        assertEquals( 0x1f, bean.getIntProperty() );
+        bean = digester.parse( new StringReader( "<root><int>20</int></root>" ) );
+        assertEquals( 0x20, bean.getIntProperty() );
+
+        // the global registry is left untouched
+        assertEquals( Integer.valueOf( 20 ), ConvertUtils.convert( "20", Integer.TYPE ) );
+        digester.setConvertUtils( null );
+        bean = digester.parse( new StringReader( "<root><int>20</int></root>" ) );
+        assertEquals( 20, bean.getIntProperty() );
+    }
+
+    @Test
+    public void testParsePath()
+        throws Exception
+    {
+        final Path path = Files.createTempFile( "digester", ".xml" );
+        try
+        {
+            Files.write( path, "<?xml version='1.0' encoding='UTF-8'?><root id='\u00e9t\u00e9'><item/></root>"
+                .getBytes( "UTF-8" ) );
+            final Digester digester = new Digester();
+            digester.addObjectCreate( "root", Box.class );
+            digester.addSetProperties( "root" );
+            digester.addObjectCreate( "root/item", Box.class );
+            digester.addSetNext( "root/item", "addChild" );
+
+            final Box root = digester.parse( path );
+
+            assertEquals( "\u00e9t\u00e9", root.getId() );
+            assertEquals( 1, root.getChildren().size() );
+        }
+        finally
+        {
+            Files.delete( path );
+        }
+    }
+
+    @Test
+    public void testParseChannel()
+        throws Exception
+    {
+        final Digester digester = new Digester();
+        digester.addObjectCreate( "root", Box.class );
+        digester.addSetProperties( "root" );
+        final byte[] document = "<root id='channel'/>".getBytes( "UTF-8" );
+
+        final Box root = digester.parse( Channels.newChannel( new ByteArrayInputStream( document ) ) );
+        assertEquals( "channel", root.getId() );
+
+        // file channels are read from their position, and left open
+        final Path path = Files.createTempFile( "digester", ".xml" );
+        try
+        {
+            Files.write( path, "garbage<root id='file'/>".getBytes( "UTF-8" ) );
+            final FileChannel channel = FileChannel.open( path );
+            try
+            {
+                channel.position( 7 );
+                digester.clear();
+                final Box fromFile = digester.parse( channel );
+                assertEquals( "file", fromFile.getId() );
+                assertTrue( channel.isOpen() );
+            }
+            finally
+            {
+                channel.close();
+            }
+        }
+        finally
+        {
+            Files.delete( path );
+        }
+    }
+
+    @Test
+    public void testStop()
+        throws Exception
+    {
+        final int[] finished = new int[1];
+        final Digester digester = new Digester();
+        digester.addObjectCreate( "root", Box.class );
+        digester.addSetProperties( "root" );
+        digester.addObjectCreate( "root/item", Box.class );
+        digester.addSetNext( "root/item", "addChild" );
+        digester.addRule( "root/header", new Rule()
+        {
+
+            @Override
+            public void end( final String namespace, final String name )
+            {
+                getDigester().stop();
+            }
+
+            @Override
+            public void finish()
+            {
+                finished[0]++;
+            }
+
+        } );
+
+        // the rest of the document is neither digested nor even read
+        final Box root = digester.parse( new StringReader( "<root id='r'><header/><item/><item/></broken>" ) );
+
+        assertEquals( "r", root.getId() );
+        assertTrue( root.getChildren().isEmpty() );
+        assertTrue( digester.isStopped() );
+        assertEquals( 1, finished[0] );
+        assertEquals( 0, digester.getCount() );
+
+        // the next parse is not stopped
+        final Box other = digester.parse( new StringReader( "<root id='o'><item/></root>" ) );
+        assertEquals( 1, other.getChildren().size() );
+        assertFalse( digester.isStopped() );
+    }
+
 }
@@ -0,0 +1,181 @@
+/* $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.digester3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * <p>
+ * Test case for the pipelined parse of {@code Digester}.
+ * </p>
+ */
+public class EventPipelineTestCase
+{
+
+    private static String document( final int items )
+    {
+        final StringBuilder xml = new StringBuilder( "<?xml version='1.0'?><root>" );
+        for ( int i = 0; i < items; i++ )
+        {
+            xml.append( "<item alpha='a" ).append( i ).append( "'><beta>b" ).append( i ).append( "</beta></item>" );
+        }
+        return xml.append( "</root>" ).toString();
+    }
+
+    private static Digester newDigester()
+    {
+        final Digester digester = new Digester();
+        digester.setPipelined( true );
+        digester.addObjectCreate( "root", ArrayList.class );
+        digester.addObjectCreate( "root/item", SimpleTestBean.class );
+        digester.addSetProperties( "root/item" );
+        digester.addBeanPropertySetter( "root/item/beta" );
+        digester.addSetNext( "root/item", "add", "java.lang.Object" );
+        return digester;
+    }
+
+    /**
+     * Documents with more events than the buffer holds are digested as if parsed on a single thread.
+     */
+    @Test
+    public void testPipelinedParse()
+        throws Exception
+    {
+        final Digester digester = newDigester();
+
+        for ( int run = 0; run < 3; run++ )
+        {
+            final List<SimpleTestBean> items = digester.parse( new StringReader( document( 2000 ) ) );
+
+            assertEquals( 2000, items.size() );
+            for ( int i = 0; i < items.size(); i++ )
+            {
+                assertEquals( "a" + i, items.get( i ).getAlpha() );
+                assertEquals( "b" + i, items.get( i ).getBeta() );
+            }
+        }
+    }
+
+    /**
+     * Errors of the parser are reported by the thread calling parse.
+     */
+    @Test
+    public void testParserFailure()
+        throws Exception
+    {
+        final Digester digester = newDigester();
+
+        try
+        {
+            digester.parse( new StringReader( document( 2000 ).replace( "</root>", "</toor>" ) ) );
+            fail( "Expected SAXParseException" );
+        }
+        catch ( final SAXParseException e )
+        {
+            // expected
+        }
+
+        // the reader is not busy anymore
+        digester.clear();
+        final List<SimpleTestBean> items = digester.parse( new StringReader( document( 5 ) ) );
+        assertEquals( 5, items.size() );
+    }
+
+    /**
+     * Errors of the rules abort the parser.
+     */
+    @Test
+    public void testRuleFailure()
+        throws Exception
+    {
+        final Digester digester = newDigester();
+        digester.addRule( "root/item/beta", new Rule()
+        {
+
+            @Override
+            public void body( final String namespace, final String name, final String text )
+                throws Exception
+            {
+                if ( "b10".equals( text ) )
+                {
+                    throw new IllegalStateException( text );
+                }
+            }
+
+        } );
+
+        try
+        {
+            digester.parse( new StringReader( document( 5000 ) ) );
+            fail( "Expected SAXException" );
+        }
+        catch ( final SAXException e )
+        {
+            assertTrue( e.getException() instanceof IllegalStateException );
+        }
+    }
+
+    /**
+     * Stopping a pipelined parse aborts the parser, and still finishes the rules.
+     */
+    @Test
+    public void testStop()
+        throws Exception
+    {
+        final Digester digester = newDigester();
+        final int[] finished = new int[1];
+        digester.addRule( "root/item", new Rule()
+        {
+
+            @Override
+            public void begin( final String namespace, final String name, final Attributes attributes )
+            {
+                if ( "a3".equals( attributes.getValue( "alpha" ) ) )
+                {
+                    getDigester().stop();
+                }
+            }
+
+            @Override
+            public void finish()
+            {
+                finished[0]++;
+            }
+
+        } );
+
+        final List<SimpleTestBean> items = digester.parse( new StringReader( document( 5000 ) ) );
+
+        assertTrue( digester.isStopped() );
+        assertEquals( 3, items.size() );
+        assertEquals( 1, finished[0] );
+    }
+
+}
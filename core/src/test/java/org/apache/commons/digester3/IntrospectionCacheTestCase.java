@@ -0,0 +1,96 @@
+/* $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.digester3;
+
+
+import static org.apache.commons.digester3.binder.DigesterLoader.newLoader;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+
+import org.apache.commons.digester3.binder.AbstractRulesModule;
+import org.apache.commons.digester3.binder.DigesterLoader;
+import org.junit.Test;
+
+/**
+ * Tests for {@link IntrospectionCache}.
+ */
+public class IntrospectionCacheTestCase
+{
+
+    @Test
+    public void testPropertyDescriptors()
+    {
+        final IntrospectionCache cache = new IntrospectionCache();
+
+        assertEquals( Integer.TYPE, cache.getPropertyDescriptor( TestBean.class, "intProperty" ).getPropertyType() );
+        assertNull( cache.getPropertyDescriptor( TestBean.class, "missingProperty" ) );
+        assertNull( cache.getPropertyDescriptor( TestBean.class, "nested.intProperty" ) );
+    }
+
+    @Test
+    public void testWritersResolvedOnce()
+    {
+        final IntrospectionCache cache = new IntrospectionCache();
+
+        final PropertyWriter writer = cache.getWriter( TestBean.class, "intProperty" );
+        assertTrue( writer.isDescribed() );
+        assertTrue( writer.isWriteable() );
+        assertSame( writer, cache.getWriter( TestBean.class, "intProperty" ) );
+
+        final PropertyWriter readOnly = cache.getWriter( ArrayList.class, "empty" );
+        assertTrue( readOnly.isDescribed() );
+        assertFalse( readOnly.isWriteable() );
+
+        assertFalse( cache.getWriter( TestBean.class, "nested.intProperty" ).isDescribed() );
+    }
+
+    @Test
+    public void testSharedByLoader()
+        throws Exception
+    {
+        final DigesterLoader loader = newLoader( new AbstractRulesModule()
+        {
+
+            @Override
+            protected void configure()
+            {
+                forPattern( "root" ).createObject().ofType( TestBean.class ).then().setProperties();
+            }
+
+        } );
+
+        final Digester first = loader.newDigester();
+        final Digester second = loader.newDigester();
+        assertSame( first.getIntrospectionCache(), second.getIntrospectionCache() );
+        assertNotSame( IntrospectionCache.getDefault(), first.getIntrospectionCache() );
+        assertSame( IntrospectionCache.getDefault(), new Digester().getIntrospectionCache() );
+
+        final TestBean bean = first.parse( new StringReader( "<root intProperty='3' longProperty='4'/>" ) );
+        assertEquals( 3, bean.getIntProperty() );
+        assertEquals( 4, bean.getLongProperty() );
+    }
+
+}
@@ -0,0 +1,317 @@
+/* $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.digester3;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+/**
+ * <p>
+ * Test case for {@code ParallelRecordRule}.
+ * </p>
+ */
+public class ParallelRecordRuleTestCase
+{
+
+    private static final int RECORDS = 500;
+
+    private ExecutorService executor;
+
+    private final RuleSet recordRules = new RuleSetBase()
+    {
+
+        @Override
+        public void addRuleInstances( final Digester digester )
+        {
+            digester.addObjectCreate( "catalog/items/item", SimpleTestBean.class );
+            digester.addSetProperties( "catalog/items/item" );
+            digester.addBeanPropertySetter( "catalog/items/item/beta" );
+            digester.addCallMethod( "catalog/items/item/gamma", "setGamma", 0 );
+        }
+
+    };
+
+    private final List<SimpleTestBean> records = Collections.synchronizedList( new ArrayList<SimpleTestBean>() );
+
+    private final RecordConsumer<SimpleTestBean> consumer = new RecordConsumer<SimpleTestBean>()
+    {
+
+        @Override
+        public void consume( final SimpleTestBean record )
+        {
+            records.add( record );
+        }
+
+    };
+
+    @Before
+    public void setUp()
+    {
+        executor = Executors.newFixedThreadPool( 4 );
+    }
+
+    @After
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    private static String catalog( final int count )
+    {
+        final StringBuilder xml = new StringBuilder( "<catalog name='c'><items>" );
+        for ( int i = 0; i < count; i++ )
+        {
+            xml.append( "<item alpha='" ).append( i ).append( "'><beta>" ).append( -i ).append( "</beta><gamma>g" )
+               .append( i ).append( "</gamma></item>" );
+        }
+        return xml.append( "</items></catalog>" ).toString();
+    }
+
+    private Digester newDigester( final ParallelRecordRule<SimpleTestBean> rule )
+    {
+        final Digester digester = new Digester();
+        digester.addObjectCreate( "catalog", NamedBean.class );
+        digester.addSetProperties( "catalog" );
+        digester.addRule( "catalog/items/item", rule );
+        return digester;
+    }
+
+    @Test
+    public void testOrdered()
+        throws Exception
+    {
+        final ParallelRecordRule<SimpleTestBean> rule =
+            new ParallelRecordRule<SimpleTestBean>( SimpleTestBean.class, recordRules, executor, consumer );
+        rule.setMaxPending( 8 );
+
+        final NamedBean catalog = newDigester( rule ).parse( new StringReader( catalog( RECORDS ) ) );
+
+        assertEquals( "c", catalog.getName() );
+        assertEquals( RECORDS, records.size() );
+        for ( int i = 0; i < RECORDS; i++ )
+        {
+            final SimpleTestBean record = records.get( i );
+            assertEquals( String.valueOf( i ), record.getAlpha() );
+            assertEquals( String.valueOf( -i ), record.getBeta() );
+            assertEquals( "g" + i, record.getGamma() );
+        }
+    }
+
+    @Test
+    public void testFinishRecordRules()
+        throws Exception
+    {
+        final AtomicInteger finished = new AtomicInteger();
+        final RuleSet finishingRules = new RuleSetBase()
+        {
+
+            @Override
+            public void addRuleInstances( final Digester digester )
+            {
+                recordRules.addRuleInstances( digester );
+                digester.addRule( "catalog/items/item", new Rule()
+                {
+
+                    @Override
+                    public void finish()
+                    {
+                        finished.incrementAndGet();
+                    }
+
+                } );
+            }
+
+        };
+        final ParallelRecordRule<SimpleTestBean> rule =
+            new ParallelRecordRule<SimpleTestBean>( SimpleTestBean.class, finishingRules, executor, consumer );
+
+        newDigester( rule ).parse( new StringReader( catalog( RECORDS ) ) );
+
+        assertEquals( RECORDS, records.size() );
+        assertEquals( RECORDS, finished.get() );
+    }
+
+    @Test
+    public void testConfigurationOfEachDocument()
+        throws Exception
+    {
+        final ParallelRecordRule<SimpleTestBean> rule =
+            new ParallelRecordRule<SimpleTestBean>( SimpleTestBean.class, recordRules, executor, consumer );
+        final Digester digester = newDigester( rule );
+
+        digester.parse( new StringReader( catalog( 10 ) ) );
+        digester.setSubstitutor( new Substitutor()
+        {
+
+            @Override
+            public Attributes substitute( final Attributes attributes )
+            {
+                return attributes;
+            }
+
+            @Override
+            public String substitute( final String bodyText )
+            {
+                return bodyText + "!";
+            }
+
+        } );
+        digester.parse( new StringReader( catalog( 10 ) ) );
+
+        assertEquals( 20, records.size() );
+        for ( int i = 0; i < 10; i++ )
+        {
+            assertEquals( String.valueOf( -i ), records.get( i ).getBeta() );
+            assertEquals( -i + "!", records.get( 10 + i ).getBeta() );
+        }
+    }
+
+    @Test
+    public void testUnordered()
+        throws Exception
+    {
+        final ParallelRecordRule<SimpleTestBean> rule =
+            new ParallelRecordRule<SimpleTestBean>( SimpleTestBean.class, recordRules, executor, consumer );
+        rule.setOrdered( false );
+
+        newDigester( rule ).parse( new StringReader( catalog( RECORDS ) ) );
+
+        final Set<String> alphas = new HashSet<String>();
+        for ( final SimpleTestBean record : records )
+        {
+            alphas.add( record.getAlpha() );
+        }
+        assertEquals( RECORDS, alphas.size() );
+    }
+
+    @Test
+    public void testConsumerError()
+        throws Exception
+    {
+        final ParallelRecordRule<SimpleTestBean> rule =
+            new ParallelRecordRule<SimpleTestBean>( SimpleTestBean.class, recordRules, executor,
+                                                    new RecordConsumer<SimpleTestBean>()
+            {
+
+                @Override
+                public void consume( final SimpleTestBean record )
+                    throws Exception
+                {
+                    if ( "3".equals( record.getAlpha() ) )
+                    {
+                        throw new IllegalStateException( "Rejected record" );
+                    }
+                    records.add( record );
+                }
+
+            } );
+
+        try
+        {
+            newDigester( rule ).parse( new StringReader( catalog( RECORDS ) ) );
+            fail( "Expected SAXException" );
+        }
+        catch ( final SAXException e )
+        {
+            assertTrue( e.getMessage().contains( "Rejected record" ) );
+        }
+        assertEquals( 3, records.size() );
+    }
+
+    @Test
+    public void testMalformedDocument()
+        throws Exception
+    {
+        // the records are only digested once the parse has failed
+        final CountDownLatch gate = new CountDownLatch( 1 );
+        final Executor gated = new Executor()
+        {
+
+            @Override
+            public void execute( final Runnable task )
+            {
+                executor.execute( new Runnable()
+                {
+
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            gate.await();
+                        }
+                        catch ( final InterruptedException e )
+                        {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        task.run();
+                    }
+
+                } );
+            }
+
+        };
+        final ParallelRecordRule<SimpleTestBean> rule =
+            new ParallelRecordRule<SimpleTestBean>( SimpleTestBean.class, recordRules, gated, consumer );
+        final Digester digester = newDigester( rule );
+
+        final String truncated = catalog( 10 ).replace( "</items></catalog>", "" );
+        try
+        {
+            digester.parse( new StringReader( truncated ) );
+            fail( "Expected SAXException" );
+        }
+        catch ( final SAXException e )
+        {
+            // expected
+        }
+        gate.countDown();
+        digester.reset();
+
+        // the records of the failed parse are neither consumed nor mixed with those of the next one
+        digester.parse( new StringReader( catalog( RECORDS ) ) );
+        assertEquals( RECORDS, records.size() );
+        for ( int i = 0; i < RECORDS; i++ )
+        {
+            assertEquals( String.valueOf( i ), records.get( i ).getAlpha() );
+        }
+    }
+
+}
@@ -0,0 +1,271 @@
+/* $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.digester3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * <p>
+ * Runs standard tests for RulesBase against {@link PathAutomatonRules}, as well as tests of the incremental matching.
+ */
+public class PathAutomatonRulesTestCase
+    extends RulesBaseTestCase
+{
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Rules createMatchingRulesForTest()
+    {
+        return new PathAutomatonRules();
+    }
+
+    /**
+     * Incremental matching must select the same rules than whole path matching.
+     */
+    @Test
+    public void testIncrementalMatching()
+    {
+        final PathAutomatonRules rules = (PathAutomatonRules) digester.getRules();
+        rules.clear();
+
+        digester.addRule( "a/b/c/d", new TestRule( "a/b/c/d" ) );
+        digester.addRule( "*/d", new TestRule( "*/d" ) );
+        digester.addRule( "*/c/d", new TestRule( "*/c/d" ) );
+        digester.addRule( "*/b/x/c", new TestRule( "*/b/x/c" ) );
+
+        final String[][] paths = { { "a", "b", "c", "d" }, { "a", "b", "d" }, { "x", "c", "d" },
+            { "b", "x", "c", "d" }, { "a", "b", "x", "c" }, { "c", "d" }, { "d" }, { "q", "r" } };
+        for ( final String[] path : paths )
+        {
+            int state = rules.getInitialState();
+            final StringBuilder pattern = new StringBuilder();
+            for ( final String name : path )
+            {
+                state = rules.nextState( state, name );
+                if ( pattern.length() > 0 )
+                {
+                    pattern.append( '/' );
+                }
+                pattern.append( name );
+                assertEquals( "Incremental match of " + pattern,
+                              rules.match( null, pattern.toString(), null, null ),
+                              rules.match( null, state ) );
+            }
+        }
+    }
+
+    /**
+     * States obtained before new rules are registered must be rejected.
+     */
+    @Test
+    public void testStaleState()
+    {
+        final PathAutomatonRules rules = (PathAutomatonRules) digester.getRules();
+        rules.clear();
+
+        digester.addRule( "a", new TestRule( "a" ) );
+        final int state = rules.nextState( rules.getInitialState(), "a" );
+        assertEquals( 1, rules.match( null, state ).size() );
+
+        digester.addRule( "a/b", new TestRule( "a/b" ) );
+        assertEquals( IncrementalRules.UNKNOWN_STATE, rules.nextState( state, "b" ) );
+        assertEquals( 1, rules.match( null, rules.nextState( rules.nextState( rules.getInitialState(), "a" ), "b" ) )
+                           .size() );
+    }
+
+    /**
+     * The Digester must fire the same rules than with {@link RulesBase} while parsing.
+     */
+    @Test
+    public void testParse()
+        throws Exception
+    {
+        digester.getRules().clear();
+
+        final List<Rule> order = new ArrayList<Rule>();
+        final String[] patterns = { "root", "root/item", "*/item/name", "*/name", "root/group/item/name" };
+        for ( final String pattern : patterns )
+        {
+            final TestRule rule = new TestRule( pattern );
+            rule.setOrder( order );
+            digester.addRule( pattern, rule );
+        }
+
+        final String xml = "<root><item><name>a</name></item><group><item><name>b</name></item>"
+            + "<other><name>c</name></other></group></root>";
+        digester.parse( new StringReader( xml ) );
+
+        final List<String> fired = new ArrayList<String>();
+        for ( final Rule rule : order )
+        {
+            fired.add( ( (TestRule) rule ).getIdentifier() );
+        }
+
+        // begin, body and end events for each matched element
+        final String[] expected = { "root", "root/item", "*/item/name", "*/item/name", "*/item/name", "root/item",
+            "root/item", "root/group/item/name", "root/group/item/name", "root/group/item/name", "*/name",
+            "*/name", "*/name", "root", "root" };
+        assertEquals( expected.length, fired.size() );
+        for ( int i = 0; i < expected.length; i++ )
+        {
+            assertEquals( "Event " + i, expected[i], fired.get( i ) );
+        }
+        assertTrue( digester.getRules() instanceof IncrementalRules );
+    }
+
+    /**
+     * The content of elements below which nothing can match must be skipped, except for their own body text.
+     */
+    @Test
+    public void testSkipUnmatchedSubtrees()
+        throws Exception
+    {
+        final List<String> visited = new ArrayList<String>();
+        digester.setRules( new PathAutomatonRules()
+        {
+
+            @Override
+            public int nextState( final int state, final String name )
+            {
+                visited.add( name );
+                return super.nextState( state, name );
+            }
+
+        } );
+
+        final TestRule a = new TestRule( "a" );
+        final TestRule c = new TestRule( "a/c" );
+        final TestRule b = new TestRule( "a/b" );
+        digester.addRule( "a", a );
+        digester.addRule( "a/c", c );
+        digester.addRule( "a/b", b );
+
+        digester.parse( new StringReader( "<a>x<c>y<b>ignored<d/></b>z</c>w<b>v</b></a>" ) );
+
+        assertEquals( "xw", a.getBodyText() );
+        assertEquals( "yz", c.getBodyText() );
+        assertEquals( "v", b.getBodyText() );
+        assertEquals( "[a, c, b]", visited.toString() );
+    }
+
+    /**
+     * Instances created from a template must match their own rules, whether or not they share its automaton.
+     */
+    @Test
+    public void testSharedAutomaton()
+    {
+        final String[] patterns = { "a", "a/b", "*/b", "*/c/b" };
+        final PathAutomatonRules template = new PathAutomatonRules();
+        for ( final String pattern : patterns )
+        {
+            template.add( pattern, new TestRule( pattern ) );
+        }
+
+        final PathAutomatonRules shared = new PathAutomatonRules( template );
+        final PathAutomatonRules other = new PathAutomatonRules( template );
+        for ( final String pattern : patterns )
+        {
+            shared.add( pattern, new TestRule( "shared " + pattern ) );
+            other.add( pattern, new TestRule( "other " + pattern ) );
+        }
+        other.add( "a/c", new TestRule( "other a/c" ) );
+
+        assertEquals( "shared a/b", ( (TestRule) shared.match( null, "a/b", null, null ).get( 0 ) ).getIdentifier() );
+        assertEquals( "shared */c/b",
+                      ( (TestRule) shared.match( null, "x/c/b", null, null ).get( 0 ) ).getIdentifier() );
+        assertEquals( 0, shared.match( null, "a/c", null, null ).size() );
+        assertEquals( "other a/c", ( (TestRule) other.match( null, "a/c", null, null ).get( 0 ) ).getIdentifier() );
+        assertEquals( "other */b", ( (TestRule) other.match( null, "a/c/x/b", null, null ).get( 0 ) ).getIdentifier() );
+        assertEquals( "a", ( (TestRule) template.match( null, "a", null, null ).get( 0 ) ).getIdentifier() );
+    }
+
+
+    /**
+     * A subtree must only be skipped until an element starting a wildcard pattern is met.
+     */
+    @Test
+    public void testSkipUntilWildcardPattern()
+        throws Exception
+    {
+        final List<String> visited = new ArrayList<String>();
+        digester.setRules( new PathAutomatonRules()
+        {
+
+            @Override
+            public int nextState( final int state, final String name )
+            {
+                visited.add( name );
+                return super.nextState( state, name );
+            }
+
+        } );
+
+        final TestRule c = new TestRule( "a/c" );
+        final TestRule e = new TestRule( "*/d/e" );
+        digester.addRule( "a/c", c );
+        digester.addRule( "*/d/e", e );
+
+        digester.parse( new StringReader( "<a><c>y<b><f><g/></f><d><e>t</e></d></b>z</c></a>" ) );
+
+        assertEquals( "yz", c.getBodyText() );
+        assertEquals( "t", e.getBodyText() );
+        assertFalse( visited.contains( "f" ) );
+        assertFalse( visited.contains( "g" ) );
+    }
+
+    /**
+     * Only exact patterns continuing below an element, and wildcard patterns partially matched at it, must prevent
+     * skipping its content.
+     */
+    @Test
+    public void testHasMatchesBelow()
+    {
+        for ( final SkippableRules rules : new SkippableRules[] { new RulesBase(), new PathAutomatonRules() } )
+        {
+            rules.add( "a/b/c", new TestRule( "exact" ) );
+            rules.add( "*/d/e", new TestRule( "wildcard" ) );
+            rules.add( "*/f", new TestRule( "short wildcard" ) );
+
+            assertTrue( rules.hasMatchesBelow( "a" ) );
+            assertTrue( rules.hasMatchesBelow( "a/b" ) );
+            assertFalse( rules.hasMatchesBelow( "a/b/c" ) );
+            assertFalse( rules.hasMatchesBelow( "a/x" ) );
+            assertTrue( rules.hasMatchesBelow( "a/x/d" ) );
+            assertTrue( rules.hasMatchesBelow( "d" ) );
+            assertFalse( rules.hasMatchesBelow( "a/x/d/e" ) );
+            assertFalse( rules.hasMatchesBelow( "a/f" ) );
+
+            assertTrue( rules.startsWildcardPattern( "d" ) );
+            assertTrue( rules.startsWildcardPattern( "f" ) );
+            assertFalse( rules.startsWildcardPattern( "e" ) );
+            assertFalse( rules.startsWildcardPattern( "a" ) );
+        }
+    }
+
+}
@@ -0,0 +1,333 @@
+/* $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.digester3;
+
+
+import static org.apache.commons.digester3.binder.DigesterLoader.newLoader;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.digester3.binder.AbstractRulesModule;
+import org.apache.commons.digester3.binder.DigesterLoader;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * <p>
+ * Test case for {@code RecordIterator}.
+ * </p>
+ */
+public class RecordIteratorTestCase
+{
+
+    private final DigesterLoader loader = newLoader( new AbstractRulesModule()
+    {
+
+        @Override
+        protected void configure()
+        {
+            forPattern( "root/item" ).createObject().ofType( SimpleTestBean.class ).then().setProperties();
+            forPattern( "root/item/beta" ).setBeanProperty();
+        }
+
+    } );
+
+    private static InputSource items( final int count, final String trailer )
+    {
+        final StringBuilder xml = new StringBuilder( "<root>" );
+        for ( int i = 0; i < count; i++ )
+        {
+            xml.append( "<item alpha='" ).append( i ).append( "'><beta>" ).append( -i ).append( "</beta></item>" );
+        }
+        xml.append( trailer );
+        return new InputSource( new StringReader( xml.toString() ) );
+    }
+
+    /**
+     * Counts the characters read from a document.
+     */
+    private static final class CountingReader
+        extends FilterReader
+    {
+
+        final long length;
+
+        volatile long count;
+
+        CountingReader( final InputSource input )
+            throws IOException
+        {
+            super( input.getCharacterStream() );
+            long length = 0;
+            in.mark( Integer.MAX_VALUE );
+            while ( in.read() != -1 )
+            {
+                length++;
+            }
+            in.reset();
+            this.length = length;
+        }
+
+        @Override
+        public int read()
+            throws IOException
+        {
+            final int c = super.read();
+            if ( c != -1 )
+            {
+                count++;
+            }
+            return c;
+        }
+
+        @Override
+        public int read( final char[] cbuf, final int off, final int len )
+            throws IOException
+        {
+            final int n = super.read( cbuf, off, len );
+            if ( n > 0 )
+            {
+                count += n;
+            }
+            return n;
+        }
+
+    }
+
+    /**
+     * Records are returned in document order, once completely built.
+     */
+    @Test
+    public void testIterate()
+    {
+        final RecordIterator<SimpleTestBean> records =
+            loader.iterate( "root/item", SimpleTestBean.class, items( 100, "</root>" ) );
+
+        int count = 0;
+        while ( records.hasNext() )
+        {
+            final SimpleTestBean record = records.next();
+            assertEquals( String.valueOf( count ), record.getAlpha() );
+            assertEquals( String.valueOf( -count ), record.getBeta() );
+            count++;
+        }
+        assertEquals( 100, count );
+        assertFalse( records.hasNext() );
+    }
+
+    /**
+     * The document is parsed on the executor service of the loader, when one is set.
+     */
+    @Test
+    public void testIterateOnLoaderExecutor()
+        throws Exception
+    {
+        final AtomicInteger threads = new AtomicInteger();
+        final ExecutorService executor = Executors.newSingleThreadExecutor( new ThreadFactory()
+        {
+
+            @Override
+            public Thread newThread( final Runnable runnable )
+            {
+                threads.incrementAndGet();
+                return new Thread( runnable );
+            }
+
+        } );
+        try
+        {
+            final RecordIterator<SimpleTestBean> records =
+                loader.setExecutorService( executor ).iterate( "root/item", SimpleTestBean.class,
+                                                               items( 3, "</root>" ) );
+            assertEquals( "0", records.next().getAlpha() );
+            assertEquals( 1, threads.get() );
+            records.close();
+        }
+        finally
+        {
+            loader.setExecutorService( null );
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Closing the iterator stops the iteration, and the parse without reading the rest of the document.
+     */
+    @Test
+    public void testClose()
+        throws Exception
+    {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            final CountingReader reader = new CountingReader( items( 100000, "</root>" ) );
+            final RecordIterator<SimpleTestBean> records =
+                loader.setExecutorService( executor ).iterate( "root/item", SimpleTestBean.class,
+                                                               new InputSource( reader ) );
+
+            assertTrue( records.hasNext() );
+            assertEquals( "0", records.next().getAlpha() );
+            records.close();
+            assertFalse( records.hasNext() );
+
+            executor.shutdown();
+            assertTrue( executor.awaitTermination( 10, TimeUnit.SECONDS ) );
+            assertTrue( reader.count < reader.length / 10 );
+        }
+        finally
+        {
+            loader.setExecutorService( null );
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Closing the iterator before the parse started still stops the parse.
+     */
+    @Test
+    public void testCloseBeforeParse()
+        throws Exception
+    {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            // hold the parse back until the iterator has been closed
+            final CountDownLatch closed = new CountDownLatch( 1 );
+            executor.execute( new Runnable()
+            {
+
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        closed.await();
+                    }
+                    catch ( final InterruptedException e )
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+            } );
+
+            final CountingReader reader = new CountingReader( items( 100000, "</root>" ) );
+            final RecordIterator<SimpleTestBean> records =
+                loader.setExecutorService( executor ).iterate( "root/item", SimpleTestBean.class,
+                                                               new InputSource( reader ) );
+            records.close();
+            closed.countDown();
+
+            executor.shutdown();
+            assertTrue( executor.awaitTermination( 10, TimeUnit.SECONDS ) );
+            assertFalse( records.hasNext() );
+            assertTrue( reader.count < reader.length / 10 );
+        }
+        finally
+        {
+            loader.setExecutorService( null );
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * The Digester can parse other documents once iterated to the end, without the record rule.
+     */
+    @Test( timeout = 10000 )
+    public void testReuseAfterIteration()
+        throws Exception
+    {
+        final Digester digester = loader.newDigester();
+        final RecordIterator<SimpleTestBean> records =
+            digester.iterate( "root/item", SimpleTestBean.class, items( 3, "</root>" ) );
+        int count = 0;
+        while ( records.hasNext() )
+        {
+            records.next();
+            count++;
+        }
+        assertEquals( 3, count );
+
+        assertEquals( 2, digester.getRules().match( null, "root/item", "item", null ).size() );
+        assertNull( digester.getStackAction() );
+        final SimpleTestBean root = digester.parse( items( 2, "</root>" ).getCharacterStream() );
+        assertEquals( "1", root.getAlpha() );
+    }
+
+    /**
+     * The Digester can iterate again over another document once the iterator is closed.
+     */
+    @Test( timeout = 10000 )
+    public void testReuseAfterClose()
+        throws Exception
+    {
+        final Digester digester = loader.newDigester();
+        RecordIterator<SimpleTestBean> records =
+            digester.iterate( "root/item", SimpleTestBean.class, items( 100000, "</root>" ) );
+        assertEquals( "0", records.next().getAlpha() );
+        records.close();
+
+        assertEquals( 2, digester.getRules().match( null, "root/item", "item", null ).size() );
+        assertNull( digester.getStackAction() );
+
+        records = digester.iterate( "root/item", SimpleTestBean.class, items( 3, "</root>" ) );
+        assertEquals( "0", records.next().getAlpha() );
+        assertEquals( "1", records.next().getAlpha() );
+        assertEquals( "2", records.next().getAlpha() );
+        assertFalse( records.hasNext() );
+    }
+
+    /**
+     * Parse errors are reported once the records parsed before have been returned.
+     */
+    @Test
+    public void testParseError()
+    {
+        final RecordIterator<SimpleTestBean> records =
+            loader.iterate( "root/item", SimpleTestBean.class, items( 2, "<item></root>" ) );
+
+        assertEquals( "0", records.next().getAlpha() );
+        assertEquals( "1", records.next().getAlpha() );
+        try
+        {
+            records.hasNext();
+            fail( "Expected IllegalStateException" );
+        }
+        catch ( final IllegalStateException e )
+        {
+            assertTrue( e.getCause() instanceof SAXException );
+        }
+        assertFalse( records.hasNext() );
+    }
+
+}
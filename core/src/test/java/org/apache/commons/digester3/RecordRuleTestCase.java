@@ -0,0 +1,144 @@
+/* $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.digester3;
+
+
+import static org.apache.commons.digester3.binder.DigesterLoader.newLoader;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.digester3.binder.AbstractRulesModule;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+/**
+ * <p>
+ * Test case for {@code RecordRule}.
+ * </p>
+ */
+public class RecordRuleTestCase
+{
+
+    /**
+     * Consumes the records, checking they are still at the top of the stack.
+     */
+    private static final class Records
+        implements RecordConsumer<SimpleTestBean>
+    {
+
+        final List<SimpleTestBean> records = new ArrayList<SimpleTestBean>();
+
+        Digester digester;
+
+        @Override
+        public void consume( final SimpleTestBean record )
+        {
+            assertSame( record, digester.peek() );
+            records.add( record );
+        }
+
+    }
+
+    /**
+     * Records pushed on an empty stack are consumed, and not retained as root.
+     */
+    @Test
+    public void testConsumeRootRecords()
+        throws Exception
+    {
+        final Records records = new Records();
+        final Digester digester = newLoader( new AbstractRulesModule()
+        {
+
+            @Override
+            protected void configure()
+            {
+                forPattern( "root/item" )
+                    .createObject().ofType( SimpleTestBean.class )
+                    .then()
+                    .setProperties()
+                    .then()
+                    .consumeRecord( SimpleTestBean.class, records );
+            }
+
+        } ).newDigester();
+        records.digester = digester;
+
+        final Object root =
+            digester.parse( new StringReader( "<root><item alpha='a1'/><item alpha='a2'/><item alpha='a3'/></root>" ) );
+
+        assertNull( root );
+        assertEquals( 3, records.records.size() );
+        assertEquals( "a1", records.records.get( 0 ).getAlpha() );
+        assertEquals( "a3", records.records.get( 2 ).getAlpha() );
+        assertEquals( 0, digester.getCount() );
+    }
+
+    /**
+     * Records are consumed without being linked to their parent object.
+     */
+    @Test
+    public void testConsumeNestedRecords()
+        throws Exception
+    {
+        final Records records = new Records();
+        final Digester digester = new Digester();
+        digester.addObjectCreate( "root", Box.class );
+        digester.addObjectCreate( "root/item", SimpleTestBean.class );
+        digester.addSetProperties( "root/item" );
+        digester.addRecord( "root/item", SimpleTestBean.class, records );
+        records.digester = digester;
+
+        final Box root = digester.parse( new StringReader( "<root><item beta='b1'/><item beta='b2'/></root>" ) );
+
+        assertTrue( root.getChildren().isEmpty() );
+        assertEquals( 2, records.records.size() );
+        assertEquals( "b2", records.records.get( 1 ).getBeta() );
+    }
+
+    /**
+     * Objects that are not records of the expected type are reported.
+     */
+    @Test
+    public void testUnexpectedRecordType()
+        throws Exception
+    {
+        final Digester digester = new Digester();
+        digester.addObjectCreate( "root/item", Box.class );
+        digester.addRecord( "root/item", SimpleTestBean.class, new Records() );
+
+        try
+        {
+            digester.parse( new StringReader( "<root><item/></root>" ) );
+            fail( "Expected SAXException" );
+        }
+        catch ( final SAXException e )
+        {
+            // expected
+        }
+    }
+
+}
@@ -19,14 +19,19 @@
 package org.apache.commons.digester3;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.After;
 import org.junit.Before;
@@ -377,6 +382,49 @@ public class RuleTestCase
 
     }
 
+    /**
+     * Test object creation with a class name which varies from an element to the other, including names of classes
+     * that do not exist.
+     */
+    @Test
+    public void testObjectCreateClassNameAttribute()
+        throws SAXException, IOException
+    {
+        digester.addObjectCreate( "root", ArrayList.class );
+        digester.addObjectCreate( "root/bean", "org.apache.commons.digester3.AlphaBean", "class" );
+        digester.addSetNext( "root/bean", "add" );
+
+        final ArrayList<?> root =
+            digester.parse( new StringReader( "<root><bean/><bean class='org.apache.commons.digester3.BetaBean'/>"
+                + "<bean class='org.apache.commons.digester3.AlphaBean'/>"
+                + "<bean class='org.apache.commons.digester3.BetaBean'/></root>" ) );
+        assertEquals( 4, root.size() );
+        assertEquals( AlphaBean.class, root.get( 0 ).getClass() );
+        assertEquals( BetaBean.class, root.get( 1 ).getClass() );
+        assertEquals( AlphaBean.class, root.get( 2 ).getClass() );
+        assertEquals( BetaBean.class, root.get( 3 ).getClass() );
+
+        final List<Exception> errors = new ArrayList<Exception>();
+        for ( int i = 0; i < 2; i++ )
+        {
+            try
+            {
+                digester.parse( new StringReader(
+                    "<root><bean class='org.apache.commons.digester3.Missing'/></root>" ) );
+                fail( "The class does not exist" );
+            }
+            catch ( final SAXException e )
+            {
+                assertTrue( e.getException() instanceof ClassNotFoundException );
+                errors.add( e.getException() );
+            }
+            digester.reset();
+        }
+        // the failure is cached, but each lookup throws its own exception
+        assertNotSame( errors.get( 0 ), errors.get( 1 ) );
+        assertSame( errors.get( 0 ), errors.get( 1 ).getCause() );
+    }
+
     @Test
     public void testSetNext()
         throws SAXException, IOException
@@ -566,4 +614,42 @@ public class RuleTestCase
 
     }
 
+    /**
+     * Rules must report the callbacks they implement, and body text must only be delivered to rules requiring it.
+     */
+    @Test
+    public void testRequiredCallbacks()
+        throws Exception
+    {
+        assertFalse( new ObjectCreateRule( Employee.class ).requires( RuleCallback.BODY ) );
+        assertTrue( new ObjectCreateRule( Employee.class ).requires( RuleCallback.BEGIN ) );
+        assertTrue( new BeanPropertySetterRule().requires( RuleCallback.BODY ) );
+        assertTrue( new CallMethodRule( "setFirstName" ).requires( RuleCallback.BODY ) );
+        assertFalse( new CallMethodRule( "setFirstName", 1 ).requires( RuleCallback.BODY ) );
+        assertTrue( new CallParamRule( 0 ).requires( RuleCallback.BODY ) );
+        assertFalse( new CallParamRule( 0, "name" ).requires( RuleCallback.BODY ) );
+        assertTrue( new CallMethodRule( "setFirstName", 1 )
+        {
+
+            @Override
+            public void body( final String namespace, final String name, final String text )
+            {
+            }
+
+        }.requires( RuleCallback.BODY ) );
+
+        final TestRule bodyRule = new TestRule( "body" );
+        digester.addObjectCreate( "employee", Employee.class );
+        digester.addRule( "employee/firstName", bodyRule );
+        digester.addCallMethod( "employee/lastName", "setLastName", 0 );
+        digester.addSetProperties( "employee/address" );
+
+        final Employee employee =
+            digester.parse( new StringReader( "<employee>ignored<firstName>First<x/> Name</firstName>"
+                + "<lastName>  Last </lastName><address city='Here'>ignored too</address></employee>" ) );
+
+        assertEquals( "First Name", bodyRule.getBodyText() );
+        assertEquals( "Last", employee.getLastName() );
+    }
+
 }
@@ -20,6 +20,7 @@ package org.apache.commons.digester3;
 
 import static org.junit.Assert.assertEquals;
 
+import java.io.StringReader;
 import java.util.Iterator;
 import java.util.List;
 
@@ -270,4 +271,25 @@ public class RulesBaseTestCase
         // clean up
         digester.getRules().clear();
     }
+
+    /**
+     * Wildcard patterns must still match inside subtrees where no exact pattern continues.
+     */
+    @Test
+    public void testWildcardMatchInUnmatchedSubtree()
+        throws Exception
+    {
+        final TestRule a = new TestRule( "a" );
+        final TestRule c = new TestRule( "a/c" );
+        final TestRule e = new TestRule( "*/d/e" );
+        digester.addRule( "a", a );
+        digester.addRule( "a/c", c );
+        digester.addRule( "*/d/e", e );
+
+        digester.parse( new StringReader( "<a>x<c>y<b><e>no</e><d><e>yes</e></d></b>z</c>w<e>no</e></a>" ) );
+
+        assertEquals( "xw", a.getBodyText() );
+        assertEquals( "yz", c.getBodyText() );
+        assertEquals( "yes", e.getBodyText() );
+    }
 }
@@ -19,13 +19,19 @@
 package org.apache.commons.digester3;
 
 import static org.apache.commons.digester3.binder.DigesterLoader.newLoader;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.digester3.binder.AbstractRulesModule;
 import org.junit.Test;
@@ -214,6 +220,41 @@ public class SetPropertiesRuleTestCase
         assertEquals( "delta property set", "DELTA VALUE", bean.getDeltaValue() );
     }
 
+    /**
+     * Test converting values and setting nested properties on beans of alternating classes.
+     */
+    @Test
+    public void testAlternatingBeanClasses()
+        throws Exception
+    {
+        final Digester digester = new Digester();
+        digester.addObjectCreate( "root", ArrayList.class );
+        digester.addObjectCreate( "root/bean", TestBean.class );
+        digester.addObjectCreate( "root/map", HashMap.class );
+        final SetPropertiesRule rule = new SetPropertiesRule();
+        digester.addRule( "root/bean", rule );
+        digester.addRule( "root/map", rule );
+        digester.addSetNext( "root/bean", "add" );
+        digester.addSetNext( "root/map", "add" );
+
+        final List<Object> beans =
+            digester.parse( xmlTestReader( "<root><bean intProperty='7' doubleProperty='2.5' booleanProperty='false'"
+                + " intArray='1,2,3' nested.stringProperty='nested' unknown='ignored'/>"
+                + "<map alpha='ALPHA VALUE'/><bean intProperty='8' stringProperty='string'/></root>" ) );
+
+        assertEquals( 3, beans.size() );
+        final TestBean first = (TestBean) beans.get( 0 );
+        assertEquals( 7, first.getIntProperty() );
+        assertEquals( 2.5, first.getDoubleProperty(), 0 );
+        assertFalse( first.getBooleanProperty() );
+        assertArrayEquals( new int[] { 1, 2, 3 }, first.getIntArray() );
+        assertEquals( "nested", first.getNested().getStringProperty() );
+        assertEquals( "ALPHA VALUE", ( (Map<?, ?>) beans.get( 1 ) ).get( "alpha" ) );
+        final TestBean second = (TestBean) beans.get( 2 );
+        assertEquals( 8, second.getIntProperty() );
+        assertEquals( "string", second.getStringProperty() );
+    }
+
     /**
      * Get input stream from specified String containing XML data.
      */
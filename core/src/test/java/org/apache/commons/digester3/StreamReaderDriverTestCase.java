@@ -0,0 +1,174 @@
+/* $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.digester3;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+
+import org.junit.Test;
+
+/**
+ * <p>
+ * Test case for {@code StreamReaderDriver}.
+ * </p>
+ */
+public class StreamReaderDriverTestCase
+{
+
+    private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+
+    private static Digester newEmployeeDigester()
+    {
+        final Digester digester = new Digester();
+        digester.addObjectCreate( "employee", Employee.class );
+        digester.addSetProperties( "employee" );
+        digester.addObjectCreate( "employee/address", Address.class );
+        digester.addSetProperties( "employee/address" );
+        digester.addSetNext( "employee/address", "addAddress" );
+        return digester;
+    }
+
+    /**
+     * The rules are fired as with SAX.
+     */
+    @Test
+    public void testParse()
+        throws Exception
+    {
+        final XMLStreamReader reader =
+            FACTORY.createXMLStreamReader( getClass().getResourceAsStream( "Test1.xml" ) );
+        final Employee employee = newEmployeeDigester().parse( reader );
+
+        assertEquals( "First Name", employee.getFirstName() );
+        assertEquals( "Last Name", employee.getLastName() );
+        assertEquals( "Home City", employee.getAddress( "home" ).getCity() );
+        assertEquals( "OfZip", employee.getAddress( "office" ).getZipCode() );
+    }
+
+    /**
+     * The parse advances only when events are dispatched.
+     */
+    @Test
+    public void testStep()
+        throws Exception
+    {
+        final Digester digester = newEmployeeDigester();
+        final StreamReaderDriver driver =
+            new StreamReaderDriver( digester,
+                                    FACTORY.createXMLStreamReader( new StringReader( "<employee firstName='F'>"
+                                        + "<address type='home' city='C'/></employee>" ) ) );
+
+        // start of the document, then start of the employee element
+        assertTrue( driver.step() );
+        assertEquals( 0, digester.getCount() );
+        assertTrue( driver.step() );
+        assertEquals( 1, digester.getCount() );
+        assertEquals( "F", digester.<Employee> peek().getFirstName() );
+        assertNull( digester.<Employee> peek().getAddress( "home" ) );
+
+        final Employee employee = driver.parse();
+        assertTrue( driver.isFinished() );
+        assertFalse( driver.step() );
+        assertEquals( "C", employee.getAddress( "home" ).getCity() );
+    }
+
+    /**
+     * Stopping the Digester ends the document.
+     */
+    @Test
+    public void testStop()
+        throws Exception
+    {
+        final Digester digester = newEmployeeDigester();
+        digester.addRule( "employee/address", new Rule()
+        {
+
+            @Override
+            public void end( final String namespace, final String name )
+            {
+                getDigester().stop();
+            }
+
+        } );
+
+        final Employee employee = digester.parse( FACTORY.createXMLStreamReader(
+            new StringReader( "<employee firstName='F'><address type='home'/><address type='office'/></broken>" ) ) );
+
+        assertEquals( "F", employee.getFirstName() );
+        assertEquals( "home", employee.getAddress( "home" ).getType() );
+        assertNull( employee.getAddress( "office" ) );
+    }
+
+    /**
+     * Namespaces and body texts are reported as with SAX.
+     */
+    @Test
+    public void testNamespaces()
+        throws Exception
+    {
+        final Digester digester = new Digester();
+        digester.setNamespaceAware( true );
+        digester.setRuleNamespaceURI( "http://commons.apache.org/digester/Foo" );
+        digester.addObjectCreate( "root/bean", SimpleTestBean.class );
+        digester.addBeanPropertySetter( "root/bean/alpha" );
+        digester.setRuleNamespaceURI( null );
+        digester.addSetProperties( "root/bean" );
+
+        final XMLStreamReader reader =
+            FACTORY.createXMLStreamReader( new StringReader( "<f:root xmlns:f='http://commons.apache.org/digester/Foo'>"
+                + "<f:bean beta='B'><f:alpha>A<![CDATA[&]]>A</f:alpha></f:bean></f:root>" ) );
+        final SimpleTestBean bean = digester.parse( reader );
+
+        assertEquals( "A&A", bean.getAlpha() );
+        assertEquals( "B", bean.getBeta() );
+    }
+
+    /**
+     * Records are built as they are iterated over.
+     */
+    @Test
+    public void testIterate()
+        throws Exception
+    {
+        final Digester digester = new Digester();
+        digester.addObjectCreate( "root/item", SimpleTestBean.class );
+        digester.addSetProperties( "root/item" );
+
+        final XMLStreamReader reader = FACTORY.createXMLStreamReader(
+            new StringReader( "<root><item alpha='1'/><item alpha='2'/><item alpha='3'/></root>" ) );
+        final RecordIterator<SimpleTestBean> records = digester.iterate( "root/item", SimpleTestBean.class, reader );
+
+        assertEquals( "1", records.next().getAlpha() );
+        // the parse has stopped right after the first record
+        assertTrue( reader.isStartElement() );
+        assertEquals( "2", reader.getAttributeValue( null, "alpha" ) );
+        assertEquals( "2", records.next().getAlpha() );
+        assertEquals( "3", records.next().getAlpha() );
+        assertFalse( records.hasNext() );
+    }
+
+}
@@ -19,10 +19,20 @@ package org.apache.commons.digester3.binder;
  * under the License.
  */
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.apache.commons.digester3.binder.DigesterLoader.newLoader;
 
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.commons.digester3.Digester;
+import org.apache.commons.digester3.ObjectCreateRule;
+import org.apache.commons.digester3.Rule;
+import org.apache.commons.digester3.SetNextRule;
+import org.apache.commons.digester3.SetPropertiesRule;
 import org.junit.Test;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.Locator;
@@ -152,4 +162,73 @@ public final class DigesterLoaderTestCase
         assertSame( expected, actual );
     }
 
+    @Test
+    public void fuseObjectCreateChains()
+        throws Exception
+    {
+        final Digester digester = newLoader( new AbstractRulesModule()
+        {
+
+            @Override
+            protected void configure()
+            {
+                forPattern( "entities/entity" )
+                    .createObject().ofType( Entity.class )
+                    .then()
+                    .setProperties()
+                    .then()
+                    .setNext( "add" );
+            }
+
+        } ).setFusingRules( true ).newDigester();
+
+        final List<Rule> rules = digester.getRules().match( null, "entities/entity", "entity", null );
+        assertEquals( 1, rules.size() );
+        assertTrue( rules.get( 0 ) instanceof CompositeRule );
+        assertSame( digester, rules.get( 0 ).getDigester() );
+
+        final List<Entity> entities = new ArrayList<Entity>();
+        digester.push( entities );
+        digester.parse( new StringReader( "<entities><entity author=\"foo\"/><entity author=\"bar\"/></entities>" ) );
+
+        assertEquals( 2, entities.size() );
+        assertEquals( "foo", entities.get( 0 ).getAuthor() );
+        assertEquals( "bar", entities.get( 1 ).getAuthor() );
+    }
+
+    @Test
+    public void boundRulesAreNotFusedByDefault()
+        throws Exception
+    {
+        final Digester digester = newLoader( new AbstractRulesModule()
+        {
+
+            @Override
+            protected void configure()
+            {
+                forPattern( "entities/entity" )
+                    .createObject().ofType( Entity.class )
+                    .then()
+                    .setProperties()
+                    .then()
+                    .setNext( "add" );
+            }
+
+        } ).newDigester();
+
+        final List<Rule> rules = digester.getRules().match( null, "entities/entity", "entity", null );
+        assertEquals( 3, rules.size() );
+        assertTrue( rules.get( 0 ) instanceof ObjectCreateRule );
+        assertTrue( rules.get( 1 ) instanceof SetPropertiesRule );
+        assertTrue( rules.get( 2 ) instanceof SetNextRule );
+        assertEquals( 3, digester.getRules().rules().size() );
+
+        final List<Entity> entities = new ArrayList<Entity>();
+        digester.push( entities );
+        digester.parse( new StringReader( "<entities><entity author=\"foo\"/></entities>" ) );
+
+        assertEquals( 1, entities.size() );
+        assertEquals( "foo", entities.get( 0 ).getAuthor() );
+    }
+
 }
@@ -0,0 +1,589 @@
+package org.apache.commons.digester3.binder;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.apache.commons.digester3.binder.DigesterLoader.newLoader;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.digester3.CallMethodRule;
+import org.apache.commons.digester3.Digester;
+import org.apache.commons.digester3.PathAutomatonRules;
+import org.apache.commons.digester3.Rule;
+import org.apache.commons.digester3.Rules;
+import org.apache.commons.digester3.SimpleTestBean;
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+public final class DigesterPoolTestCase
+{
+
+    private final DigesterLoader loader = newLoader( new AbstractRulesModule()
+    {
+
+        @Override
+        protected void configure()
+        {
+            forPattern( "list" ).createObject().ofType( ArrayList.class );
+            forPattern( "list/item" ).callMethod( "add" ).usingElementBodyAsArgument();
+        }
+
+    } );
+
+    @Test
+    public void reuseReleasedDigester()
+        throws Exception
+    {
+        final DigesterPool pool = loader.newDigesterPool( 2 );
+
+        final Digester digester = pool.borrow();
+        assertEquals( Arrays.asList( "a", "b" ),
+                      digester.parse( new StringReader( "<list><item>a</item><item>b</item></list>" ) ) );
+        pool.release( digester );
+        assertEquals( 1, pool.getIdleCount() );
+
+        final Digester reused = pool.borrow();
+        assertSame( digester, reused );
+        assertEquals( 0, pool.getIdleCount() );
+        assertEquals( Arrays.asList( "c" ), reused.parse( new StringReader( "<list><item>c</item></list>" ) ) );
+        pool.release( reused );
+    }
+
+    @Test
+    public void reuseAfterFailedParse()
+        throws Exception
+    {
+        final DigesterPool pool = loader.newDigesterPool( 1 );
+
+        final Digester digester = pool.borrow();
+        try
+        {
+            digester.parse( new StringReader( "<list><item>a</item><item>b" ) );
+            fail( "The document is not well formed" );
+        }
+        catch ( final SAXException e )
+        {
+            // expected
+        }
+        pool.release( digester );
+
+        assertEquals( Arrays.asList( "c" ), pool.parse( new StringReader( "<list><item>c</item></list>" ) ) );
+        assertEquals( 1, pool.getIdleCount() );
+    }
+
+    @Test
+    public void finishRulesOfFailedParse()
+        throws Exception
+    {
+        final List<Integer> counts = new ArrayList<Integer>();
+        final Rule countItems = new Rule()
+        {
+
+            private int count;
+
+            @Override
+            public void begin( final String namespace, final String name, final Attributes attributes )
+            {
+                count++;
+            }
+
+            @Override
+            public void finish()
+            {
+                counts.add( count );
+                count = 0;
+            }
+
+        };
+        final DigesterPool pool = newLoader( new AbstractRulesModule()
+        {
+
+            @Override
+            protected void configure()
+            {
+                forPattern( "list/item" ).addRule( countItems );
+            }
+
+        } ).newDigesterPool( 1 );
+
+        final Digester digester = pool.borrow();
+        try
+        {
+            digester.parse( new StringReader( "<list><item>a</item><item>b" ) );
+            fail( "The document is not well formed" );
+        }
+        catch ( final SAXException e )
+        {
+            // expected
+        }
+        pool.release( digester );
+        assertEquals( Arrays.asList( 2 ), counts );
+
+        pool.parse( new StringReader( "<list><item>c</item></list>" ) );
+        assertEquals( Arrays.asList( 2, 1 ), counts );
+    }
+
+    @Test
+    public void retainAtMostMaxIdle()
+    {
+        final DigesterPool pool = loader.newDigesterPool( 1 );
+
+        final Digester first = pool.borrow();
+        final Digester second = pool.borrow();
+        assertNotSame( first, second );
+
+        pool.release( first );
+        pool.release( second );
+        assertEquals( 1, pool.getIdleCount() );
+        assertSame( first, pool.borrow() );
+    }
+
+    @Test
+    public void threadAffinity()
+    {
+        final DigesterPool pool = loader.newDigesterPool( 2, true );
+
+        final Digester first = pool.borrow();
+        final Digester second = pool.borrow();
+        pool.release( first );
+        pool.release( second );
+
+        // the last released instance is handed back to this thread first, and counts as an idle instance
+        assertEquals( 2, pool.getIdleCount() );
+        assertSame( second, pool.borrow() );
+        assertSame( first, pool.borrow() );
+    }
+
+    @Test
+    public void threadAffinityRetainsAtMostMaxIdle()
+    {
+        final DigesterPool pool = loader.newDigesterPool( 1, true );
+
+        final Digester first = pool.borrow();
+        final Digester second = pool.borrow();
+        pool.release( first );
+        pool.release( second );
+
+        assertEquals( 1, pool.getIdleCount() );
+        assertSame( first, pool.borrow() );
+        assertNotSame( second, pool.borrow() );
+    }
+
+    @Test
+    public void boundedPool()
+        throws Exception
+    {
+        final DigesterPool pool = loader.newDigesterPool( 1, 2, false );
+        assertTrue( pool.isBounded() );
+
+        final Digester first = pool.borrow();
+        final Digester second = pool.borrow();
+        assertNull( pool.borrow( 50, TimeUnit.MILLISECONDS ) );
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            final Future<Digester> waiting = executor.submit( new Callable<Digester>()
+            {
+
+                @Override
+                public Digester call()
+                {
+                    return pool.borrow();
+                }
+
+            } );
+            pool.release( second );
+            assertSame( second, waiting.get( 5, TimeUnit.SECONDS ) );
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        // the idle instances are released first, then the discarded ones can be created again
+        pool.release( first );
+        assertEquals( 1, pool.getIdleCount() );
+    }
+
+    @Test
+    public void releaseAfterFailedNestedPropertiesParse()
+        throws Exception
+    {
+        final DigesterPool pool = newLoader( new AbstractRulesModule()
+        {
+
+            @Override
+            protected void configure()
+            {
+                forPattern( "root" ).createObject().ofType( SimpleTestBean.class ).then().setNestedProperties();
+            }
+
+        } ).newDigesterPool( 1 );
+
+        final Digester digester = pool.borrow();
+        final Rules rules = digester.getRules();
+        try
+        {
+            digester.parse( new StringReader( "<root><alpha>a</root>" ) );
+            fail( "The document is not well formed" );
+        }
+        catch ( final SAXException e )
+        {
+            // expected, while the nested properties rule replaced the rules
+        }
+        pool.release( digester );
+
+        assertSame( rules, digester.getRules() );
+        final SimpleTestBean bean = pool.parse( new StringReader( "<root><alpha>a</alpha><beta>b</beta></root>" ) );
+        assertEquals( "a", bean.getAlpha() );
+        assertEquals( "b", bean.getBeta() );
+    }
+
+    @Test
+    public void concurrentParses()
+        throws Exception
+    {
+        assertConcurrentParses( loader.newDigesterPool( 4, true ) );
+    }
+
+    @Test
+    public void concurrentParsesWithCompiledRules()
+        throws Exception
+    {
+        final DigesterPool pool = loader.compile().newDigesterPool( 4 );
+        final Digester digester = pool.borrow();
+        assertTrue( digester.getRules() instanceof PathAutomatonRules );
+        pool.release( digester );
+
+        assertConcurrentParses( pool );
+    }
+
+    @Test
+    public void compiledRulesAreCopiedPerDigester()
+        throws Exception
+    {
+        final List<Digester> finishedBy = Collections.synchronizedList( new ArrayList<Digester>() );
+        final DigesterPool pool = newLoader( new AbstractRulesModule()
+        {
+
+            @Override
+            protected void configure()
+            {
+                forPattern( "list" ).createObject().ofType( ArrayList.class );
+                forPattern( "list/item" ).callMethod( "add" ).usingElementBodyAsArgument();
+                forPattern( "list/item" ).addRule( new FinishRecorder( finishedBy ) );
+            }
+
+        } ).compile().newDigesterPool( 2 );
+        final Digester first = pool.borrow();
+        final Digester second = pool.borrow();
+
+        final Rule firstCallMethod = first.getRules().match( null, "list/item", "item", null ).get( 0 );
+        final Rule secondCallMethod = second.getRules().match( null, "list/item", "item", null ).get( 0 );
+        assertTrue( firstCallMethod instanceof CallMethodRule );
+        assertNotSame( firstCallMethod, secondCallMethod );
+
+        // each copy keeps its own Digester, even outside of the callbacks and on other threads
+        assertSame( first, firstCallMethod.getDigester() );
+        assertSame( second, secondCallMethod.getDigester() );
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            assertSame( first, executor.submit( new Callable<Digester>()
+            {
+
+                @Override
+                public Digester call()
+                {
+                    return firstCallMethod.getDigester();
+                }
+
+            } ).get() );
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        try
+        {
+            first.parse( new StringReader( "<list><item>a" ) );
+            fail( "The document is not well formed" );
+        }
+        catch ( final SAXException e )
+        {
+            // expected
+        }
+        // the finish events fired by reset() reach the copy of the first Digester
+        pool.release( first );
+        assertEquals( Arrays.asList( first ), finishedBy );
+
+        assertEquals( Arrays.asList( "b" ), second.parse( new StringReader( "<list><item>b</item></list>" ) ) );
+        assertEquals( Arrays.asList( first, second ), finishedBy );
+        pool.release( second );
+    }
+
+    @Test
+    public void concurrentParsesWithCopiedRules()
+        throws Exception
+    {
+        final DigesterLoader beanLoader = newLoader( new AbstractRulesModule()
+        {
+
+            @Override
+            protected void configure()
+            {
+                forPattern( "bean" ).createObject().ofType( SimpleTestBean.class );
+                forPattern( "bean/alpha" ).setBeanProperty();
+                forPattern( "bean/beta" ).callMethod( "setBeta" ).usingElementBodyAsArgument();
+            }
+
+        } );
+        final DigesterPool pool = beanLoader.compile().newDigesterPool( 4 );
+
+        final ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        try
+        {
+            final List<Future<SimpleTestBean>> results = new ArrayList<Future<SimpleTestBean>>();
+            for ( int i = 0; i < 200; i++ )
+            {
+                final String xml = "<bean><alpha>a" + i + "</alpha><beta>b" + i + "</beta></bean>";
+                results.add( executor.submit( new Callable<SimpleTestBean>()
+                {
+
+                    @Override
+                    public SimpleTestBean call()
+                        throws Exception
+                    {
+                        return pool.parse( new StringReader( xml ) );
+                    }
+
+                } ) );
+            }
+            for ( int i = 0; i < results.size(); i++ )
+            {
+                final SimpleTestBean bean = results.get( i ).get();
+                assertEquals( "a" + i, bean.getAlpha() );
+                assertEquals( "b" + i, bean.getBeta() );
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    private static void assertConcurrentParses( final DigesterPool pool )
+        throws Exception
+    {
+        final ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        try
+        {
+            final List<Future<List<String>>> results = new ArrayList<Future<List<String>>>();
+            for ( int i = 0; i < 200; i++ )
+            {
+                final String item = String.valueOf( i );
+                results.add( executor.submit( new Callable<List<String>>()
+                {
+
+                    @Override
+                    public List<String> call()
+                        throws Exception
+                    {
+                        return pool.parse( new StringReader( "<list><item>" + item + "</item></list>" ) );
+                    }
+
+                } ) );
+            }
+            for ( int i = 0; i < results.size(); i++ )
+            {
+                assertEquals( Arrays.asList( String.valueOf( i ) ), results.get( i ).get() );
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void loaderAsyncParse()
+        throws Exception
+    {
+        // a thread per task, like a virtual-thread-per-task executor
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        try
+        {
+            final List<Future<List<String>>> results = new ArrayList<Future<List<String>>>();
+            for ( int i = 0; i < 100; i++ )
+            {
+                final InputSource input =
+                    new InputSource( new StringReader( "<list><item>" + i + "</item></list>" ) );
+                results.add( loader.<List<String>> asyncParse( input, executor ) );
+            }
+            for ( int i = 0; i < results.size(); i++ )
+            {
+                assertEquals( Arrays.asList( String.valueOf( i ) ), results.get( i ).get() );
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void loaderAsyncPool()
+        throws Exception
+    {
+        final DigesterPool pool = loader.newDigesterPool( 1, 1, false );
+        assertSame( loader, loader.setAsyncPool( pool ) );
+        assertSame( pool, loader.getAsyncPool() );
+
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        try
+        {
+            final List<Future<List<String>>> results = new ArrayList<Future<List<String>>>();
+            for ( int i = 0; i < 20; i++ )
+            {
+                final InputSource input =
+                    new InputSource( new StringReader( "<list><item>" + i + "</item></list>" ) );
+                results.add( loader.<List<String>> asyncParse( input, executor ) );
+            }
+            for ( int i = 0; i < results.size(); i++ )
+            {
+                assertEquals( Arrays.asList( String.valueOf( i ) ), results.get( i ).get() );
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        // all the tasks shared the single Digester of the pool
+        final Digester digester = pool.borrow( 0, TimeUnit.MILLISECONDS );
+        assertNotNull( digester );
+        assertNull( pool.borrow( 0, TimeUnit.MILLISECONDS ) );
+        pool.release( digester );
+
+        loader.setAsyncPool( null );
+        assertNotSame( pool, loader.getAsyncPool() );
+    }
+
+    @Test
+    public void loaderAsyncParseCallback()
+        throws Exception
+    {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            final List<Object> outcomes = Collections.synchronizedList( new ArrayList<Object>() );
+            final ParseCallback<List<String>> callback = new ParseCallback<List<String>>()
+            {
+
+                @Override
+                public void parsed( final InputSource input, final List<String> root )
+                {
+                    outcomes.add( root );
+                }
+
+                @Override
+                public void failed( final InputSource input, final Exception error )
+                {
+                    outcomes.add( error );
+                }
+
+            };
+
+            final Future<List<String>> parsed =
+                loader.asyncParse( new InputSource( new StringReader( "<list><item>a</item></list>" ) ), executor,
+                                   callback );
+            final Future<List<String>> failed =
+                loader.asyncParse( new InputSource( new StringReader( "<list><item>" ) ), executor, callback );
+
+            assertEquals( Arrays.asList( "a" ), parsed.get() );
+            try
+            {
+                failed.get();
+                fail( "The document is not well formed" );
+            }
+            catch ( final ExecutionException e )
+            {
+                assertTrue( e.getCause() instanceof SAXException );
+            }
+            assertEquals( 2, outcomes.size() );
+            assertEquals( Arrays.asList( "a" ), outcomes.get( 0 ) );
+            assertTrue( outcomes.get( 1 ) instanceof SAXException );
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Records the Digester instances the rule is finished by, and copies itself.
+     */
+    private static final class FinishRecorder
+        extends Rule
+    {
+
+        private final List<Digester> finishedBy;
+
+        FinishRecorder( final List<Digester> finishedBy )
+        {
+            this.finishedBy = finishedBy;
+        }
+
+        @Override
+        public void finish()
+        {
+            finishedBy.add( getDigester() );
+        }
+
+        @Override
+        public Rule copy()
+        {
+            return new FinishRecorder( finishedBy );
+        }
+
+    }
+
+}
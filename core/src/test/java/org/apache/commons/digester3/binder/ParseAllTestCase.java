@@ -0,0 +1,259 @@
+package org.apache.commons.digester3.binder;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.apache.commons.digester3.binder.DigesterLoader.newLoader;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+public final class ParseAllTestCase
+{
+
+    private final DigesterLoader loader = newLoader( new AbstractRulesModule()
+    {
+
+        @Override
+        protected void configure()
+        {
+            forPattern( "list" ).createObject().ofType( ArrayList.class );
+            forPattern( "list/item" ).callMethod( "add" ).usingElementBodyAsArgument();
+        }
+
+    } );
+
+    private static List<InputSource> documents( final int count )
+    {
+        final List<InputSource> inputs = new ArrayList<InputSource>();
+        for ( int i = 0; i < count; i++ )
+        {
+            inputs.add( new InputSource( new StringReader( "<list><item>" + i + "</item></list>" ) ) );
+        }
+        return inputs;
+    }
+
+    @Test
+    public void parseAllInOrder()
+        throws Exception
+    {
+        final List<List<String>> roots = loader.parseAll( documents( 200 ), 4 );
+
+        assertEquals( 200, roots.size() );
+        for ( int i = 0; i < roots.size(); i++ )
+        {
+            assertEquals( Arrays.asList( String.valueOf( i ) ), roots.get( i ) );
+        }
+    }
+
+    @Test
+    public void parseAllFailure()
+        throws Exception
+    {
+        final List<InputSource> inputs = documents( 50 );
+        inputs.set( 20, new InputSource( new StringReader( "<list><item>" ) ) );
+
+        try
+        {
+            loader.parseAll( inputs, 4 );
+            fail( "Expected SAXException" );
+        }
+        catch ( final SAXException e )
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void callbackReceivesFailures()
+        throws Exception
+    {
+        final List<InputSource> inputs = documents( 50 );
+        final InputSource broken = new InputSource( new StringReader( "<list><item>" ) );
+        inputs.set( 20, broken );
+        final List<String> items = new ArrayList<String>();
+        final List<InputSource> failed = new ArrayList<InputSource>();
+
+        loader.parseAll( inputs, 3, new ParseCallback<List<String>>()
+        {
+
+            @Override
+            public void parsed( final InputSource input, final List<String> root )
+            {
+                items.addAll( root );
+            }
+
+            @Override
+            public void failed( final InputSource input, final Exception error )
+            {
+                assertTrue( error instanceof SAXException );
+                failed.add( input );
+            }
+
+        } );
+
+        assertEquals( 49, items.size() );
+        assertEquals( Arrays.asList( broken ), failed );
+    }
+
+    @Test
+    public void callbackExceptionCancels()
+        throws Exception
+    {
+        final IllegalStateException thrown = new IllegalStateException();
+        try
+        {
+            loader.parseAll( documents( 100 ), 2, new ParseCallback<List<String>>()
+            {
+
+                @Override
+                public void parsed( final InputSource input, final List<String> root )
+                {
+                    throw thrown;
+                }
+
+                @Override
+                public void failed( final InputSource input, final Exception error )
+                {
+                }
+
+            } );
+            fail( "Expected IllegalStateException" );
+        }
+        catch ( final IllegalStateException e )
+        {
+            assertSame( thrown, e );
+        }
+    }
+
+    @Test
+    public void slowCallbackHoldsBackInputs()
+        throws Exception
+    {
+        final int maxConcurrency = 2;
+        final List<InputSource> documents = documents( 100 );
+        final AtomicInteger pulled = new AtomicInteger();
+        final Iterable<InputSource> inputs = new Iterable<InputSource>()
+        {
+
+            @Override
+            public Iterator<InputSource> iterator()
+            {
+                final Iterator<InputSource> iterator = documents.iterator();
+                return new Iterator<InputSource>()
+                {
+
+                    @Override
+                    public boolean hasNext()
+                    {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public InputSource next()
+                    {
+                        pulled.incrementAndGet();
+                        return iterator.next();
+                    }
+
+                    @Override
+                    public void remove()
+                    {
+                        throw new UnsupportedOperationException();
+                    }
+
+                };
+            }
+
+        };
+        final int[] pulledWhileBusy = new int[1];
+
+        loader.parseAll( inputs, maxConcurrency, new ParseCallback<List<String>>()
+        {
+
+            private boolean first = true;
+
+            @Override
+            public void parsed( final InputSource input, final List<String> root )
+                throws Exception
+            {
+                if ( first )
+                {
+                    first = false;
+                    Thread.sleep( 200 );
+                    pulledWhileBusy[0] = pulled.get();
+                }
+            }
+
+            @Override
+            public void failed( final InputSource input, final Exception error )
+            {
+            }
+
+        } );
+
+        // the document being handled, the queued outcomes, and one blocked outcome per worker
+        assertTrue( pulledWhileBusy[0] <= 2 * maxConcurrency + 1 );
+        assertEquals( 100, pulled.get() );
+    }
+
+    @Test
+    public void rejectedWorkerCancels()
+        throws Exception
+    {
+        // a single thread, and no queue: only the first worker is started
+        final ThreadPoolExecutor executor =
+            new ThreadPoolExecutor( 1, 1, 0, TimeUnit.SECONDS, new SynchronousQueue<Runnable>() );
+        loader.setExecutorService( executor );
+        try
+        {
+            loader.parseAll( documents( 100 ), 4 );
+            fail( "Expected RejectedExecutionException" );
+        }
+        catch ( final RejectedExecutionException e )
+        {
+            // expected
+        }
+        finally
+        {
+            loader.setExecutorService( null );
+            executor.shutdown();
+        }
+
+        // the started worker did not stay blocked
+        assertTrue( executor.awaitTermination( 5, TimeUnit.SECONDS ) );
+    }
+
+}